@@ -129,6 +129,11 @@ CREATE INDEX idx_notifications_is_read ON notifications(is_read);
 CREATE INDEX idx_notifications_sent_at ON notifications(sent_at DESC);
 CREATE INDEX idx_notifications_expires_at ON notifications(expires_at);
 CREATE INDEX idx_notifications_related_order ON notifications(related_order_id);
+-- Keyset pagination of a staff member's notifications (priority, sent_at, notification_id)
+CREATE INDEX idx_notifications_recipient_page ON notifications(recipient_staff_id, priority DESC, sent_at DESC, notification_id DESC);
+CREATE INDEX idx_notifications_recipient_unread_page ON notifications(recipient_staff_id, priority DESC, sent_at DESC, notification_id DESC) WHERE is_read = false;
+-- Retention purge of read notifications
+CREATE INDEX idx_notifications_read_purge ON notifications(read_at, notification_id) WHERE is_read = true;
 
 -- ================================
 -- KITCHEN MANAGEMENT TABLES
@@ -36,8 +36,14 @@ public class AdminController {
     @Autowired
     private JwtService jwtService;
     
+    @Autowired
+    private JwtKeyRing jwtKeyRing;
+    
     @Autowired
     private SessionService sessionService;
+    
+    @Autowired
+    private StockService stockService;
 
     // Note: AuditService已整合到AdminService中
     
@@ -158,16 +164,20 @@ public class AdminController {
     // ============ DASHBOARD APIs ============
     
     @GetMapping("/dashboard/overview")
-    public ResponseEntity<?> getDashboardOverview(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getDashboardOverview(@RequestHeader("Authorization") String authHeader,
+                                                  @RequestParam(defaultValue = "today") String popularWindow) {
         try {
             if (!isValidAdminToken(authHeader)) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(createErrorResponse("需要管理員權限", 401));
             }
             
-            DashboardOverview overview = adminService.getDashboardOverview();
+            DashboardOverview overview = adminService.getDashboardOverview(
+                    PopularityTracker.Window.fromKey(popularWindow));
             return ResponseEntity.ok(createSuccessResponse(overview, "儀表板數據獲取成功"));
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage(), 400));
         } catch (Exception e) {
             System.err.println("Dashboard overview failed: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -360,12 +370,53 @@ public class AdminController {
             Map<String, Object> result = menuService.bulkUpdateMenuItems(request);
             return ResponseEntity.ok(createSuccessResponse(result, "批量操作執行成功"));
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage(), 400));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(createErrorResponse("批量操作失敗：" + e.getMessage(), 500));
         }
     }
     
+    @GetMapping("/menu/stock")
+    public ResponseEntity<?> getMenuStock(@RequestHeader("Authorization") String authHeader) {
+        if (!isValidAdminToken(authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(createErrorResponse("需要管理員權限", 401));
+        }
+        return ResponseEntity.ok(createSuccessResponse(stockService.getStockLevels(), "庫存獲取成功"));
+    }
+    
+    /**
+     * Set the stock of a limited dish; a null quantity stops tracking it
+     */
+    @PutMapping("/menu/items/{itemId}/stock")
+    public ResponseEntity<?> setMenuItemStock(
+            @RequestHeader("Authorization") String authHeader,
+            @PathVariable String itemId,
+            @RequestBody MenuStockRequest request) {
+        
+        try {
+            if (!isValidAdminToken(authHeader)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("需要管理員權限", 401));
+            }
+            if (menuService.findMenuItemById(itemId).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            stockService.setStock(itemId, request.getQuantity());
+            return ResponseEntity.ok(createSuccessResponse(
+                    Map.of("itemId", itemId, "tracked", request.getQuantity() != null), "庫存更新成功"));
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage(), 400));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("庫存更新失敗：" + e.getMessage(), 500));
+        }
+    }
+    
     // ============ ORDER MANAGEMENT APIs ============
     
     @GetMapping("/orders")
@@ -505,6 +556,50 @@ public class AdminController {
         }
     }
     
+    // ============ SECURITY APIs ============
+    
+    @GetMapping("/security/jwt-keys")
+    public ResponseEntity<?> getJwtKeys(@RequestHeader("Authorization") String authHeader) {
+        try {
+            if (!isValidAdminToken(authHeader)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("需要管理員權限", 401));
+            }
+            
+            return ResponseEntity.ok(createSuccessResponse(jwtKeyRing.describe(), "JWT密鑰環獲取成功"));
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("JWT密鑰環獲取失敗", 500));
+        }
+    }
+    
+    @PostMapping("/security/jwt-keys/rotate")
+    public ResponseEntity<?> rotateJwtKey(@RequestHeader("Authorization") String authHeader) {
+        try {
+            if (!isValidAdminToken(authHeader)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("需要管理員權限", 401));
+            }
+            
+            String newKeyId = jwtKeyRing.rotate();
+            
+            String adminId = getCurrentAdminId(authHeader);
+            String adminName = getCurrentAdminName(authHeader);
+            adminService.logSuccess(adminId, adminName, "JWT_KEY_ROTATE", "JWT_KEY", newKeyId,
+                                  getClientIpAddress(null), "Admin Panel");
+            
+            return ResponseEntity.ok(createSuccessResponse(jwtKeyRing.describe(), "JWT密鑰已輪替"));
+            
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(createErrorResponse(e.getMessage(), 409));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("JWT密鑰輪替失敗", 500));
+        }
+    }
+    
     // ============ AUDIT LOG APIs ============
     
     @GetMapping("/audit/logs")
@@ -594,6 +689,11 @@ public class AdminController {
             if (token != null) {
                 JwtService.TokenInfo tokenInfo = jwtService.validateToken(token);
                 if (tokenInfo != null) {
+                    // 會話必須仍然有效; Redis 無法使用時的降級驗證無法確認撤銷, 管理端點不接受
+                    SessionService.SessionData sessionData = sessionService.validateSession(tokenInfo);
+                    if (sessionData == null || sessionData.isDegraded()) {
+                        return false;
+                    }
                     Optional<User> userOpt = userService.findUserById(tokenInfo.getUserId());
                     return userOpt.isPresent() && userOpt.get().getRole() == UserRole.ADMIN;
                 }
@@ -734,8 +834,9 @@ public class AdminController {
     
     public static class BulkMenuUpdateRequest {
         private List<String> itemIds;
-        private String operation; // "price_increase", "price_decrease", "set_available", "set_unavailable"
+        private String operation; // "price_increase", "price_decrease", "set_available", "set_unavailable", "move_category", "delete"
         private Double value; // For price operations
+        private String category; // For move_category
         
         // Getters and setters
         public List<String> getItemIds() { return itemIds; }
@@ -746,5 +847,15 @@ public class AdminController {
         
         public Double getValue() { return value; }
         public void setValue(Double value) { this.value = value; }
+        
+        public String getCategory() { return category; }
+        public void setCategory(String category) { this.category = category; }
+    }
+    
+    public static class MenuStockRequest {
+        private Integer quantity; // null stops tracking the item
+        
+        public Integer getQuantity() { return quantity; }
+        public void setQuantity(Integer quantity) { this.quantity = quantity; }
     }
 }
\ No newline at end of file
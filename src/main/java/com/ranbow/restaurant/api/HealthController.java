@@ -1,15 +1,27 @@
 package com.ranbow.restaurant.api;
 
+import com.ranbow.restaurant.config.MenuWebSocketHandler;
+import com.ranbow.restaurant.services.JwtService;
+import com.ranbow.restaurant.services.MenuCatalog;
+import com.ranbow.restaurant.services.MenuResponseCache;
+import com.ranbow.restaurant.services.MenuSearchIndex;
+import com.ranbow.restaurant.services.NotificationRetentionService;
+import com.ranbow.restaurant.services.PasswordService;
+import com.ranbow.restaurant.services.PopularityTracker;
+import com.ranbow.restaurant.services.SessionService;
+import com.ranbow.restaurant.services.StockService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -19,6 +31,36 @@ public class HealthController {
     
     @Autowired
     private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private MenuResponseCache menuResponseCache;
+
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    @Autowired
+    private PopularityTracker popularityTracker;
+
+    @Autowired
+    private MenuWebSocketHandler menuWebSocketHandler;
+
+    @Autowired
+    private StockService stockService;
     
     @GetMapping
     public ResponseEntity<Map<String, Object>> getHealth() {
@@ -103,6 +145,95 @@ public class HealthController {
         }
     }
     
+    @GetMapping("/notification-retention")
+    public ResponseEntity<Map<String, Object>> getNotificationRetentionStats() {
+        return ResponseEntity.ok(notificationRetentionService.getStats());
+    }
+    
+    @GetMapping("/session-cache")
+    public ResponseEntity<Map<String, Object>> getSessionCacheStats() {
+        return ResponseEntity.ok(sessionService.getNearCacheStats());
+    }
+    
+    /**
+     * Redis circuit breaker state and degraded (JWT-only) authentication counters
+     */
+    @GetMapping("/session-auth")
+    public ResponseEntity<Map<String, Object>> getSessionAuthStats() {
+        return ResponseEntity.ok(sessionService.getDegradedModeStats());
+    }
+    
+    /**
+     * Version and reload counters of the in-memory menu catalog
+     */
+    @GetMapping("/menu-catalog")
+    public ResponseEntity<Map<String, Object>> getMenuCatalogStats() {
+        return ResponseEntity.ok(menuCatalog.getStats());
+    }
+    
+    /**
+     * Sizes and hit counters of the pre-serialized menu responses
+     */
+    @GetMapping("/menu-responses")
+    public ResponseEntity<Map<String, Object>> getMenuResponseStats() {
+        return ResponseEntity.ok(menuResponseCache.getStats());
+    }
+    
+    /**
+     * Connected menu push clients and delta counters
+     */
+    @GetMapping("/menu-push")
+    public ResponseEntity<Map<String, Object>> getMenuPushStats() {
+        return ResponseEntity.ok(menuWebSocketHandler.getStats());
+    }
+    
+    /**
+     * Stock reservation counters (reserved, rejected, released, fail-open, auto switches)
+     */
+    @GetMapping("/menu-stock")
+    public ResponseEntity<Map<String, Object>> getMenuStockStats() {
+        return ResponseEntity.ok(stockService.getStats());
+    }
+    
+    /**
+     * Search index size and the match count of a sample query
+     */
+    @GetMapping("/menu-search")
+    public ResponseEntity<Map<String, Object>> getMenuSearchStats(@RequestParam(defaultValue = "雞") String q) {
+        Map<String, Object> result = new LinkedHashMap<>(menuSearchIndex.getStats());
+        result.put("query", q);
+        result.put("matches", menuSearchIndex.search(q).size());
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Sliding-window popularity counters and the current top items of a window
+     */
+    @GetMapping("/menu-popularity")
+    public ResponseEntity<Map<String, Object>> getMenuPopularityStats(@RequestParam(defaultValue = "today") String window) {
+        try {
+            PopularityTracker.Window popularityWindow = PopularityTracker.Window.fromKey(window);
+            Map<String, Object> result = new LinkedHashMap<>(popularityTracker.getStats());
+            result.put("window", popularityWindow.getKey());
+            result.put("top", popularityTracker.top(popularityWindow, 5, null));
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordService.getStats());
+    }
+    
+    @GetMapping("/token-cache")
+    public ResponseEntity<Map<String, Object>> getTokenCacheStats() {
+        return ResponseEntity.ok(jwtService.getVerifiedCacheStats());
+    }
+    
     @GetMapping("/info")
     public ResponseEntity<Map<String, Object>> getApplicationInfo() {
         Map<String, Object> info = new HashMap<>();
@@ -2,6 +2,7 @@ package com.ranbow.restaurant.api;
 
 import com.ranbow.restaurant.models.MenuCategory;
 import com.ranbow.restaurant.models.MenuItem;
+import com.ranbow.restaurant.services.MenuResponseCache;
 import com.ranbow.restaurant.services.MenuService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -13,7 +14,6 @@ import jakarta.validation.Valid;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/menu")
@@ -23,6 +23,10 @@ public class MenuController {
     @Autowired
     private MenuService menuService;
     
+    // 菜單讀取回應以預先序列化、壓縮的位元組提供 (ETag / 304)
+    @Autowired
+    private MenuResponseCache menuResponseCache;
+    
     @PostMapping
     public ResponseEntity<?> addMenuItem(@Valid @RequestBody CreateMenuItemRequest request) {
         try {
@@ -38,52 +42,40 @@ public class MenuController {
     }
     
     @GetMapping("/{itemId}")
-    public ResponseEntity<?> getMenuItem(@PathVariable String itemId) {
-        Optional<MenuItem> item = menuService.findMenuItemById(itemId);
-        if (item.isPresent()) {
-            return ResponseEntity.ok(item.get());
-        }
-        return ResponseEntity.notFound().build();
+    public ResponseEntity<byte[]> getMenuItem(@PathVariable String itemId,
+                                              HttpServletRequest request) {
+        return menuResponseCache.respond(MenuResponseCache.itemView(itemId), request);
     }
     
     @GetMapping
-    public ResponseEntity<List<MenuItem>> getAllMenuItems(@RequestParam(name = "category", required = false) String category) {
-        System.out.println("DEBUG: Received category parameter: " + category);
-        List<MenuItem> items;
+    public ResponseEntity<byte[]> getAllMenuItems(@RequestParam(name = "category", required = false) String category,
+                                                  HttpServletRequest request) {
         if (category != null && !category.isEmpty()) {
             try {
                 MenuCategory categoryEnum = MenuCategory.valueOf(category.toUpperCase());
-                System.out.println("DEBUG: Converting to enum: " + categoryEnum);
-                items = menuService.getMenuItemsByCategory(categoryEnum);
-                System.out.println("DEBUG: Found " + items.size() + " items for category: " + categoryEnum);
+                return menuResponseCache.respond(MenuResponseCache.categoryView(categoryEnum), request);
             } catch (IllegalArgumentException e) {
-                System.out.println("DEBUG: Invalid category: " + category);
                 return ResponseEntity.badRequest().build();
             }
-        } else {
-            items = menuService.getAllMenuItems();
-            System.out.println("DEBUG: Returning all " + items.size() + " items");
         }
-        return ResponseEntity.ok(items);
+        return menuResponseCache.respond(MenuResponseCache.VIEW_ALL, request);
     }
     
     @GetMapping("/items")
-    public ResponseEntity<List<MenuItem>> getMenuItems() {
+    public ResponseEntity<byte[]> getMenuItems(HttpServletRequest request) {
         // Frontend compatibility endpoint - simplified version
-        List<MenuItem> items = menuService.getAllMenuItems();
-        return ResponseEntity.ok(items);
+        return menuResponseCache.respond(MenuResponseCache.VIEW_ALL, request);
     }
     
     @GetMapping("/available")
-    public ResponseEntity<List<MenuItem>> getAvailableMenuItems() {
-        List<MenuItem> items = menuService.getAvailableMenuItems();
-        return ResponseEntity.ok(items);
+    public ResponseEntity<byte[]> getAvailableMenuItems(HttpServletRequest request) {
+        return menuResponseCache.respond(MenuResponseCache.VIEW_AVAILABLE, request);
     }
     
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<MenuItem>> getMenuItemsByCategory(@PathVariable MenuCategory category) {
-        List<MenuItem> items = menuService.getMenuItemsByCategory(category);
-        return ResponseEntity.ok(items);
+    public ResponseEntity<byte[]> getMenuItemsByCategory(@PathVariable MenuCategory category,
+                                                         HttpServletRequest request) {
+        return menuResponseCache.respond(MenuResponseCache.categoryView(category), request);
     }
     
     @GetMapping("/search")
@@ -106,9 +98,14 @@ public class MenuController {
     }
     
     @GetMapping("/popular")
-    public ResponseEntity<List<MenuItem>> getPopularItems() {
-        List<MenuItem> items = menuService.getPopularItems();
-        return ResponseEntity.ok(items);
+    public ResponseEntity<?> getPopularItems(@RequestParam(required = false) String window,
+                                             @RequestParam(required = false) Integer limit) {
+        try {
+            Integer size = limit != null ? Math.max(1, Math.min(limit, 50)) : null;
+            return ResponseEntity.ok(menuService.getPopularItems(window, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     @PutMapping("/{itemId}")
@@ -3,10 +3,17 @@ package com.ranbow.restaurant.api;
 import com.ranbow.restaurant.models.Order;
 import com.ranbow.restaurant.models.OrderStatus;
 import com.ranbow.restaurant.services.OrderService;
+import com.ranbow.restaurant.services.JwtService;
+import com.ranbow.restaurant.services.OrderTrackingService;
+import com.ranbow.restaurant.services.SessionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -22,6 +29,17 @@ public class OrderController {
     
     @Autowired
     private OrderService orderService;
+
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    private static final String STREAM_TOKEN_COOKIE = "stream_token";
     
     @PostMapping
     public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> request) {
@@ -63,6 +81,72 @@ public class OrderController {
         return ResponseEntity.notFound().build();
     }
     
+    /**
+     * Short-lived token for opening the order streams
+     * EventSource cannot send an Authorization header, so the client exchanges its Bearer
+     * token here and passes the result as ?token= (or the stream_token cookie).
+     */
+    @PostMapping("/stream-token")
+    public ResponseEntity<?> createStreamToken(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        JwtService.TokenInfo tokenInfo = authHeader != null && authHeader.startsWith("Bearer ")
+            ? jwtService.validateToken(authHeader.substring(7)) : null;
+        if (tokenInfo == null || sessionService.validateSession(tokenInfo) == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authentication required"));
+        }
+        String token = jwtService.generateStreamToken(tokenInfo.getUserId(), tokenInfo.getSessionId());
+        ResponseCookie cookie = ResponseCookie.from(STREAM_TOKEN_COOKIE, token)
+            .httpOnly(true)
+            .path("/api/orders")
+            .maxAge(jwtService.getStreamTokenTtlSeconds())
+            .sameSite("Strict")
+            .build();
+        return ResponseEntity.ok()
+            .header(HttpHeaders.SET_COOKIE, cookie.toString())
+            .body(Map.of("token", token, "expiresIn", jwtService.getStreamTokenTtlSeconds()));
+    }
+
+    /**
+     * SSE stream of status and ETA updates for one order (replaces polling GET /orders/{orderId})
+     * Only the customer who placed the order may subscribe.
+     */
+    @GetMapping(value = "/{orderId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOrder(@PathVariable("orderId") String orderId,
+                                                  @RequestParam(value = "token", required = false) String token,
+                                                  @CookieValue(value = STREAM_TOKEN_COOKIE, required = false) String cookieToken,
+                                                  @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String userId = authenticateStream(token != null ? token : cookieToken);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Optional<Order> order = orderService.findOrderById(orderId);
+        if (order.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!userId.equals(order.get().getCustomerId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(orderTrackingService.subscribeOrder(orderId, lastEventId));
+    }
+
+    /**
+     * SSE stream of status and ETA updates for all active orders of a customer
+     * Only the customer themself may subscribe.
+     */
+    @GetMapping(value = "/customer/{customerId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamCustomerOrders(@PathVariable("customerId") String customerId,
+                                                           @RequestParam(value = "token", required = false) String token,
+                                                           @CookieValue(value = STREAM_TOKEN_COOKIE, required = false) String cookieToken,
+                                                           @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String userId = authenticateStream(token != null ? token : cookieToken);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!userId.equals(customerId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(orderTrackingService.subscribeCustomer(customerId, lastEventId));
+    }
+    
     @GetMapping
     public ResponseEntity<List<Order>> getAllOrders() {
         List<Order> orders = orderService.getAllOrders();
@@ -302,6 +386,15 @@ public class OrderController {
         public void setReason(String reason) { this.reason = reason; }
     }
     
+    // Helper method to resolve the user of a stream request; null if the token or its session is invalid
+    private String authenticateStream(String token) {
+        JwtService.TokenInfo tokenInfo = jwtService.validateStreamToken(token);
+        if (tokenInfo == null || sessionService.validateSession(tokenInfo) == null) {
+            return null;
+        }
+        return tokenInfo.getUserId();
+    }
+
     // Helper method to map request to CreateCompleteOrderRequest
     private CreateCompleteOrderRequest mapToCompleteOrderRequest(Map<String, Object> request) {
         CreateCompleteOrderRequest completeRequest = new CreateCompleteOrderRequest();
@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -99,6 +100,11 @@ public class StaffController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "登入失敗", "message", "帳號或密碼錯誤"));
                 
+        } catch (PasswordService.HashingBusyException e) {
+            // 登入尖峰: 快速拒絕, 請客戶端稍後重試
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "登入繁忙", "message", "目前登入人數過多，請稍後再試"));
         } catch (Exception e) {
             System.err.println("Error in staff login: " + e.getMessage());
             e.printStackTrace();
@@ -355,10 +361,12 @@ public class StaffController {
      * GET /api/staff/orders/pending
      */
     @GetMapping("/orders/pending")
-    public ResponseEntity<?> getPendingOrders() {
+    public ResponseEntity<?> getPendingOrders(@RequestHeader(value = "Accept", required = false) String accept,
+                                              @RequestParam(defaultValue = "false") boolean compact) {
         try {
-            List<Map<String, Object>> pendingOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.PENDING);
-            List<Map<String, Object>> confirmedOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.CONFIRMED);
+            boolean legacyAliases = useLegacyAliases(accept, compact);
+            List<Map<String, Object>> pendingOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.PENDING, legacyAliases);
+            List<Map<String, Object>> confirmedOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.CONFIRMED, legacyAliases);
             
             return ResponseEntity.ok(Map.of(
                 "pending", pendingOrders,
@@ -378,10 +386,12 @@ public class StaffController {
      * GET /api/staff/orders/in-progress
      */
     @GetMapping("/orders/in-progress")
-    public ResponseEntity<?> getInProgressOrders() {
+    public ResponseEntity<?> getInProgressOrders(@RequestHeader(value = "Accept", required = false) String accept,
+                                                 @RequestParam(defaultValue = "false") boolean compact) {
         try {
-            List<Map<String, Object>> preparingOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.PREPARING);
-            List<Map<String, Object>> readyOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.READY);
+            boolean legacyAliases = useLegacyAliases(accept, compact);
+            List<Map<String, Object>> preparingOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.PREPARING, legacyAliases);
+            List<Map<String, Object>> readyOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.READY, legacyAliases);
             
             return ResponseEntity.ok(Map.of(
                 "preparing", preparingOrders,
@@ -401,10 +411,12 @@ public class StaffController {
      * GET /api/staff/orders/completed
      */
     @GetMapping("/orders/completed")
-    public ResponseEntity<?> getCompletedOrders() {
+    public ResponseEntity<?> getCompletedOrders(@RequestHeader(value = "Accept", required = false) String accept,
+                                                @RequestParam(defaultValue = "false") boolean compact) {
         try {
-            List<Map<String, Object>> deliveredOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.DELIVERED);
-            List<Map<String, Object>> completedOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.COMPLETED);
+            boolean legacyAliases = useLegacyAliases(accept, compact);
+            List<Map<String, Object>> deliveredOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.DELIVERED, legacyAliases);
+            List<Map<String, Object>> completedOrders = orderService.getOrdersWithCompleteDataByStatus(OrderStatus.COMPLETED, legacyAliases);
             
             return ResponseEntity.ok(Map.of(
                 "delivered", deliveredOrders,
@@ -419,6 +431,13 @@ public class StaffController {
         }
     }
 
+    /**
+     * Compact clients (CBOR or ?compact=true) get each field once, without snake_case duplicates
+     */
+    private boolean useLegacyAliases(String accept, boolean compact) {
+        return !compact && (accept == null || !accept.contains("application/cbor"));
+    }
+
     /**
      * Update order status
      * PUT /api/staff/orders/{orderId}/status
@@ -772,20 +791,24 @@ public class StaffController {
      */
     @GetMapping("/notifications/{staffId}")
     public ResponseEntity<?> getStaffNotifications(@PathVariable String staffId,
-                                                  @RequestParam(defaultValue = "false") boolean unreadOnly) {
+                                                  @RequestParam(defaultValue = "false") boolean unreadOnly,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "20") int limit) {
         try {
-            List<Notification> notifications = unreadOnly ? 
-                notificationService.getUnreadNotifications(staffId) :
-                notificationService.getStaffNotifications(staffId);
+            NotificationPage page = notificationService.getNotificationPage(staffId, unreadOnly, cursor, limit);
             
             int unreadCount = notificationService.countUnreadNotifications(staffId);
             
-            return ResponseEntity.ok(Map.of(
-                "notifications", notifications,
-                "unreadCount", unreadCount,
-                "totalCount", notifications.size()
-            ));
+            Map<String, Object> response = new HashMap<>();
+            response.put("notifications", page.getNotifications());
+            response.put("unreadCount", unreadCount);
+            response.put("totalCount", page.getNotifications().size());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.isHasMore());
+            return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "無效的分頁游標"));
         } catch (Exception e) {
             System.err.println("Error getting staff notifications: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -892,4 +915,4 @@ public class StaffController {
         public String getNotificationId() { return notificationId; }
         public void setNotificationId(String notificationId) { this.notificationId = notificationId; }
     }
-}
\ No newline at end of file
+}
@@ -69,8 +69,8 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
             return false;
         }
 
-        // 驗證Redis會話
-        SessionService.SessionData sessionData = sessionService.validateSession(tokenInfo.getSessionId());
+        // 驗證Redis會話 (Redis 無法使用時降級為僅驗證JWT)
+        SessionService.SessionData sessionData = sessionService.validateSession(tokenInfo);
         if (sessionData == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.setContentType("application/json");
@@ -82,9 +82,13 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
         request.setAttribute("userId", tokenInfo.getUserId());
         request.setAttribute("sessionId", tokenInfo.getSessionId());
         request.setAttribute("deviceInfo", tokenInfo.getDeviceInfo());
+        if (sessionData.isDegraded()) {
+            request.setAttribute("authDegraded", true);
+            response.setHeader("X-Auth-Degraded", "true");
+        }
 
-        // 檢查token是否即將過期，設置刷新提示
-        if (jwtService.isTokenExpiringSoon(token)) {
+        // 檢查token是否即將過期，設置刷新提示 (沿用同一次驗證結果)
+        if (tokenInfo.isExpiringSoon()) {
             response.setHeader("X-Token-Refresh-Needed", "true");
         }
 
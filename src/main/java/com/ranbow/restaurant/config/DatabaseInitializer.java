@@ -35,6 +35,9 @@ public class DatabaseInitializer implements CommandLineRunner {
                 logger.info("✅ Database tables already exist, skipping initialization");
             }
             
+            // Indexes added after the initial schema
+            ensureIndexes();
+            
             // Verify data integrity
             verifyData();
             
@@ -108,6 +111,25 @@ public class DatabaseInitializer implements CommandLineRunner {
         }
     }
     
+    private void ensureIndexes() {
+        String[] indexes = {
+            // Keyset pagination of staff notifications
+            "CREATE INDEX IF NOT EXISTS idx_notifications_recipient_page ON notifications(recipient_staff_id, priority DESC, sent_at DESC, notification_id DESC)",
+            "CREATE INDEX IF NOT EXISTS idx_notifications_recipient_unread_page ON notifications(recipient_staff_id, priority DESC, sent_at DESC, notification_id DESC) WHERE is_read = false",
+            // Retention purge of read notifications
+            "CREATE INDEX IF NOT EXISTS idx_notifications_read_purge ON notifications(read_at, notification_id) WHERE is_read = true"
+        };
+        
+        for (String index : indexes) {
+            try {
+                jdbcTemplate.execute(index);
+            } catch (Exception e) {
+                // Table may not exist yet (staff schema not loaded)
+                logger.warn("Could not create index: {}", e.getMessage());
+            }
+        }
+    }
+    
     private void verifyData() {
         try {
             // Check if default users exist
@@ -0,0 +1,222 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+
+/**
+ * Bounded replay buffer for one WebSocket channel
+ * Stamps every outbound event with a per-channel sequence number and keeps the most
+ * recent events in a ring so reconnecting clients can catch up without a full REST refetch.
+ *
+ * With a {@link ReplaySequence} the epoch and sequence come from Redis: the node that raises
+ * an event stamps it once, relays the stamped copy, and every node stores it under the same
+ * number via {@link #accept}, so a client can resume on any node. Without one (or while
+ * Redis is down) numbers are local to this node under a local epoch, and a client presenting
+ * a different epoch must resync.
+ */
+public class EventReplayBuffer {
+
+    private final String channel;
+    private final int capacity;
+    private final ReplaySequence sequence;
+    private final String localEpoch = "local-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Entry[] ring;
+    private String epoch;
+    // 本節點在目前 epoch 下可重播的第一個序號
+    private long firstSeq;
+    private long lastSeq;
+
+    private static class Entry {
+        final long seq;
+        final String target;
+        final ObjectNode event;
+
+        Entry(long seq, String target, ObjectNode event) {
+            this.seq = seq;
+            this.target = target;
+            this.event = event;
+        }
+    }
+
+    public EventReplayBuffer(String channel, int capacity) {
+        this(channel, capacity, null);
+    }
+
+    public EventReplayBuffer(String channel, int capacity, ReplaySequence sequence) {
+        this.channel = channel;
+        this.capacity = Math.max(1, capacity);
+        this.ring = new Entry[this.capacity];
+        this.sequence = sequence;
+
+        // Join the shared sequence at its current position; earlier events are not replayable here
+        ReplaySequence.Stamp current = sequence != null ? sequence.current(channel) : null;
+        this.epoch = current != null ? current.getEpoch() : localEpoch;
+        this.lastSeq = current != null ? current.getSeq() : 0;
+        this.firstSeq = lastSeq + 1;
+    }
+
+    /**
+     * Stamp an event and remember it for replay
+     * @param target Recipient key (e.g. staffId), or null when the event goes to everyone
+     * @param event Event payload; left untouched, a stamped copy is returned
+     * @return Copy of the event carrying "seq" and "epoch"
+     */
+    public ObjectNode append(String target, ObjectNode event) {
+        // 在鎖外取號, 避免 Redis 往返阻塞其他事件
+        ReplaySequence.Stamp stamp = sequence != null ? sequence.next(channel) : null;
+        ObjectNode stamped = event.deepCopy();
+        synchronized (this) {
+            if (stamp != null) {
+                stamped.put("seq", stamp.getSeq());
+                stamped.put("epoch", stamp.getEpoch());
+            } else {
+                // Redis unavailable: fall back to local numbering, clients on the shared epoch resync
+                stamped.put("seq", localEpoch.equals(epoch) ? lastSeq + 1 : 1);
+                stamped.put("epoch", localEpoch);
+            }
+            store(target, stamped);
+        }
+        return stamped;
+    }
+
+    /**
+     * Remember an event stamped by another node (or already stamped here)
+     * Events without a stamp are stamped as in {@link #append}.
+     * @return The stored event
+     */
+    public ObjectNode accept(String target, ObjectNode event) {
+        if (!event.hasNonNull("seq") || !event.hasNonNull("epoch")) {
+            return append(target, event);
+        }
+        synchronized (this) {
+            store(target, event);
+        }
+        return event;
+    }
+
+    /**
+     * Collect events after a client's last seen sequence
+     * @param clientEpoch Epoch the client's sequence belongs to
+     * @param clientSeq Last sequence the client applied
+     * @param target Recipient key of the client; events for other targets are skipped
+     */
+    public ReplayResult since(String clientEpoch, long clientSeq, String target) {
+        return sinceMatching(clientEpoch, clientSeq,
+                (entryTarget, event) -> entryTarget == null || entryTarget.equals(target));
+    }
+
+    /**
+     * Collect events after a client's last seen sequence
+     * @param filter Receives the entry target and event; only matching events are replayed
+     */
+    public synchronized ReplayResult sinceMatching(String clientEpoch, long clientSeq,
+                                                   BiPredicate<String, ObjectNode> filter) {
+        if (!epoch.equals(clientEpoch)) {
+            return ReplayResult.resync(lastSeq, "epoch_mismatch");
+        }
+        if (clientSeq > lastSeq || clientSeq < 0) {
+            return ReplayResult.resync(lastSeq, "invalid_sequence");
+        }
+
+        long oldestSeq = Math.max(firstSeq, lastSeq - capacity + 1);
+        if (clientSeq + 1 < oldestSeq) {
+            // Some missed events have already been overwritten, or predate this node
+            return ReplayResult.resync(lastSeq, "gap_too_large");
+        }
+
+        List<ObjectNode> events = new ArrayList<>();
+        for (long seq = clientSeq + 1; seq <= lastSeq; seq++) {
+            Entry entry = ring[(int) (seq % capacity)];
+            if (entry == null || entry.seq != seq) {
+                // A relayed event never reached this node; replaying around the hole would lose it
+                return ReplayResult.resync(lastSeq, "missing_events");
+            }
+            if (filter.test(entry.target, entry.event)) {
+                events.add(entry.event);
+            }
+        }
+        return new ReplayResult(false, null, lastSeq, events);
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    public synchronized String getEpoch() {
+        return epoch;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Private helper methods
+
+    private void store(String target, ObjectNode stamped) {
+        String eventEpoch = stamped.path("epoch").asText();
+        long seq = stamped.path("seq").asLong();
+        if (!epoch.equals(eventEpoch)) {
+            // 序號空間已更換 (Redis 重設或暫時改用本地序號): 舊的事件無法再對應
+            epoch = eventEpoch;
+            Arrays.fill(ring, null);
+            firstSeq = seq;
+            lastSeq = seq - 1;
+        }
+        if (seq <= lastSeq - capacity) {
+            // Arrived too late; its slot already holds a newer event
+            return;
+        }
+        if (seq < firstSeq) {
+            firstSeq = seq;
+        }
+        ring[(int) (seq % capacity)] = new Entry(seq, target, stamped);
+        lastSeq = Math.max(lastSeq, seq);
+    }
+
+    /**
+     * Result of a replay request
+     */
+    public static class ReplayResult {
+        private final boolean resyncRequired;
+        private final String reason;
+        private final long latestSeq;
+        private final List<ObjectNode> events;
+
+        ReplayResult(boolean resyncRequired, String reason, long latestSeq, List<ObjectNode> events) {
+            this.resyncRequired = resyncRequired;
+            this.reason = reason;
+            this.latestSeq = latestSeq;
+            this.events = events;
+        }
+
+        static ReplayResult resync(long latestSeq, String reason) {
+            return new ReplayResult(true, reason, latestSeq, List.of());
+        }
+
+        public boolean isResyncRequired() {
+            return resyncRequired;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public long getLatestSeq() {
+            return latestSeq;
+        }
+
+        public List<ObjectNode> getEvents() {
+            return events;
+        }
+    }
+}
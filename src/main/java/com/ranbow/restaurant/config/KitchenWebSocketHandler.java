@@ -1,6 +1,11 @@
 package com.ranbow.restaurant.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 
 import java.io.IOException;
@@ -12,11 +17,39 @@ import java.util.Map;
  * WebSocket handler for kitchen-specific real-time updates
  * Manages kitchen operations, cooking timers, and priority updates
  */
-public class KitchenWebSocketHandler implements WebSocketHandler {
+@Component
+public class KitchenWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
+
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WebSocketPayloadCodec payloadCodec;
+
+    @Autowired
+    private ReplaySequence replaySequence;
+
+    @Value("${websocket.replay.capacity:500}")
+    private int replayCapacity;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
     private final List<WebSocketSession> kitchenSessions = new CopyOnWriteArrayList<>();
 
+    // Recent events kept for kitchen screens resuming after a reconnect
+    private EventReplayBuffer replayBuffer;
+
+    @PostConstruct
+    public void init() {
+        replayBuffer = new EventReplayBuffer(WebSocketEventRelay.KITCHEN_CHANNEL, replayCapacity, replaySequence);
+
+        // Deliver kitchen events raised on other nodes to kitchen screens connected here,
+        // buffered under the sequence number the raising node stamped
+        eventRelay.register(WebSocketEventRelay.KITCHEN_CHANNEL,
+                (routing, event) -> deliverLocally(replayBuffer.accept(null, event)));
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         kitchenSessions.add(session);
@@ -27,16 +60,17 @@ public class KitchenWebSocketHandler implements WebSocketHandler {
         sendMessage(session, Map.of(
             "type", "kitchen_connection_established",
             "message", "廚房監聽已建立",
-            "sessionId", session.getId()
+            "sessionId", session.getId(),
+            "epoch", replayBuffer.getEpoch(),
+            "seq", replayBuffer.getLastSeq()
         ));
     }
 
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
         try {
-            String payload = message.getPayload().toString();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> messageData = objectMapper.readValue(payload, Map.class);
+            // Text frames carry JSON, binary frames carry CBOR
+            Map<String, Object> messageData = payloadCodec.decode(message);
             
             String messageType = (String) messageData.get("type");
             
@@ -45,6 +79,11 @@ public class KitchenWebSocketHandler implements WebSocketHandler {
                     sendMessage(session, Map.of("type", "pong", "timestamp", System.currentTimeMillis()));
                     break;
                     
+                case "resume":
+                    // Kitchen screen reconnected: replay what it missed instead of a full refetch
+                    replayMissedEvents(session, messageData);
+                    break;
+
                 case "get_kitchen_status":
                     // Send current kitchen status (could be enhanced with actual data)
                     sendMessage(session, Map.of(
@@ -171,22 +210,68 @@ public class KitchenWebSocketHandler implements WebSocketHandler {
     // Private helper methods
 
     private void broadcastToKitchen(Map<String, Object> message) {
+        // Stamp and buffer even when no screen is connected, so the event can be replayed later
+        ObjectNode stamped = replayBuffer.append(null, objectMapper.valueToTree(message));
+        deliverLocally(stamped);
+        eventRelay.publish(WebSocketEventRelay.KITCHEN_CHANNEL, Map.of(), stamped);
+    }
+
+    private void deliverLocally(ObjectNode stamped) {
+        if (kitchenSessions.isEmpty()) {
+            return;
+        }
+
+        // Each wire format is serialized once and shared across sessions
+        WebSocketPayloadCodec.PreparedFrames frames = payloadCodec.prepare(stamped);
+
         kitchenSessions.forEach(session -> {
             try {
-                sendMessage(session, message);
+                if (session.isOpen()) {
+                    session.sendMessage(frames.forSession(session));
+                }
             } catch (Exception e) {
                 System.err.println("Error broadcasting to kitchen: " + e.getMessage());
             }
         });
     }
 
+    private void replayMissedEvents(WebSocketSession session, Map<String, Object> messageData) throws IOException {
+        String epoch = messageData.get("epoch") != null ? messageData.get("epoch").toString() : null;
+        long lastSeq = messageData.get("lastSeq") instanceof Number n ? n.longValue() : -1;
+
+        EventReplayBuffer.ReplayResult result = replayBuffer.since(epoch, lastSeq, null);
+        if (result.isResyncRequired()) {
+            sendMessage(session, Map.of(
+                "type", "resync_required",
+                "reason", result.getReason(),
+                "epoch", replayBuffer.getEpoch(),
+                "seq", result.getLatestSeq()
+            ));
+            return;
+        }
+
+        for (ObjectNode event : result.getEvents()) {
+            sendMessage(session, event);
+        }
+        sendMessage(session, Map.of(
+            "type", "replay_complete",
+            "replayed", result.getEvents().size(),
+            "epoch", replayBuffer.getEpoch(),
+            "seq", result.getLatestSeq()
+        ));
+    }
+
     private void sendMessage(WebSocketSession session, Object message) throws IOException {
         if (session.isOpen()) {
-            String json = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(json));
+            session.sendMessage(payloadCodec.encode(session, message));
         }
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return WebSocketPayloadCodec.SUBPROTOCOLS;
+    }
+
     // Public getters for monitoring
     public int getActiveKitchenSessionCount() {
         return kitchenSessions.size();
@@ -0,0 +1,337 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ranbow.restaurant.models.MenuItem;
+import com.ranbow.restaurant.services.MenuCatalog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket handler pushing menu changes to customer clients
+ * Every catalog swap is turned into one small delta (availability and price changes,
+ * plus added, edited and removed items) and broadcast to connected clients, so they can
+ * keep their menu current without polling. Deltas are keyed by the cluster-wide catalog
+ * version; each node diffs its own snapshots, so no relay is needed. A reconnecting client
+ * sends its last version and gets the deltas it missed, or a resync request.
+ *
+ * The catalog calls its listeners while holding its reload lock, so the listener only
+ * computes the delta and records it; the fan-out runs on a dedicated push thread. Sessions
+ * are wrapped in {@link ConcurrentWebSocketSessionDecorator}, which buffers frames for a
+ * slow client and closes it once the send-time or buffer limit is exceeded instead of
+ * blocking the push thread.
+ */
+@Component
+public class MenuWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WebSocketPayloadCodec payloadCodec;
+
+    @Value("${menu.push.history:100}")
+    private int historyCapacity;
+
+    // 單一連線送出一個訊息的時間上限, 超過即關閉該連線
+    @Value("${menu.push.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+
+    // 單一連線待送出訊息的緩衝上限 (位元組), 超過即關閉該連線
+    @Value("${menu.push.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    // 依原始 session ID 保存包裝後的連線
+    private final Map<String, WebSocketSession> menuSessions = new ConcurrentHashMap<>();
+
+    // 推送專用執行緒: 依版本順序送出差異, 不在菜單快照的鎖內進行網路 I/O
+    private ExecutorService pushExecutor;
+
+    // 最近的差異, 依版本排序, 供重新連線的客戶端補上
+    private final Deque<ObjectNode> history = new ArrayDeque<>();
+
+    // Metrics
+    private final AtomicLong deltasPublished = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong resyncsRequested = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        pushExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "menu-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        menuCatalog.addListener((previous, current) -> {
+            if (previous != null) {
+                publish(diff(previous, current));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pushExecutor != null) {
+            pushExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit);
+        menuSessions.put(session.getId(), decorated);
+        sendMessage(decorated, Map.of(
+            "type", "menu_connection_established",
+            "sessionId", session.getId(),
+            "version", menuCatalog.current().getVersion()
+        ));
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        try {
+            // Text frames carry JSON, binary frames carry CBOR
+            Map<String, Object> messageData = payloadCodec.decode(message);
+
+            String messageType = (String) messageData.get("type");
+
+            switch (messageType) {
+                case "ping":
+                    sendMessage(session, Map.of("type", "pong", "timestamp", System.currentTimeMillis()));
+                    break;
+
+                case "resume":
+                    // Client reconnected: send the deltas since its version instead of a full refetch
+                    long version = messageData.get("version") instanceof Number n ? n.longValue() : -1;
+                    replayMissedDeltas(session, version);
+                    break;
+
+                default:
+                    System.out.println("Unknown menu message type: " + messageType);
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error handling menu WebSocket message: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        System.err.println("Menu WebSocket transport error: " + exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        menuSessions.remove(session.getId());
+    }
+
+    @Override
+    public boolean supportsPartialMessages() {
+        return false;
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return WebSocketPayloadCodec.SUBPROTOCOLS;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", menuSessions.size());
+        synchronized (history) {
+            stats.put("history", history.size());
+            stats.put("oldestVersion", history.isEmpty() ? null : history.peekFirst().path("fromVersion").asLong());
+        }
+        stats.put("deltasPublished", deltasPublished.get());
+        stats.put("framesSent", framesSent.get());
+        stats.put("resyncsRequested", resyncsRequested.get());
+        stats.put("sendFailures", sendFailures.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    /**
+     * Delta between two snapshots. Availability and price changes carry only the changed
+     * fields; items with any other edit are sent whole.
+     */
+    private ObjectNode diff(MenuCatalog.Snapshot previous, MenuCatalog.Snapshot current) {
+        ObjectNode delta = objectMapper.createObjectNode();
+        delta.put("type", "menu_delta");
+        delta.put("fromVersion", previous.getVersion());
+        delta.put("version", current.getVersion());
+        ArrayNode changes = delta.putArray("changes");
+        ArrayNode added = delta.putArray("added");
+        ArrayNode updated = delta.putArray("updated");
+        ArrayNode removed = delta.putArray("removed");
+
+        Map<String, MenuItem> before = previous.getItemsById();
+        for (MenuItem item : current.getItems()) {
+            MenuItem old = before.get(item.getItemId());
+            if (old == null) {
+                added.add(objectMapper.valueToTree(item));
+            } else if (!sameDetails(old, item)) {
+                updated.add(objectMapper.valueToTree(item));
+            } else {
+                boolean availabilityChanged = old.isAvailable() != item.isAvailable();
+                boolean priceChanged = !samePrice(old, item);
+                if (availabilityChanged || priceChanged) {
+                    ObjectNode change = changes.addObject();
+                    change.put("itemId", item.getItemId());
+                    if (availabilityChanged) {
+                        change.put("available", item.isAvailable());
+                    }
+                    if (priceChanged) {
+                        change.put("price", item.getPrice());
+                    }
+                }
+            }
+        }
+        for (String itemId : before.keySet()) {
+            if (!current.getItemsById().containsKey(itemId)) {
+                removed.add(itemId);
+            }
+        }
+        delta.put("timestamp", System.currentTimeMillis());
+        return delta;
+    }
+
+    private boolean sameDetails(MenuItem a, MenuItem b) {
+        return Objects.equals(a.getName(), b.getName())
+            && Objects.equals(a.getDescription(), b.getDescription())
+            && a.getCategory() == b.getCategory()
+            && Objects.equals(a.getImageUrl(), b.getImageUrl())
+            && a.getPreparationTime() == b.getPreparationTime();
+    }
+
+    private boolean samePrice(MenuItem a, MenuItem b) {
+        if (a.getPrice() == null || b.getPrice() == null) {
+            return a.getPrice() == b.getPrice();
+        }
+        return a.getPrice().compareTo(b.getPrice()) == 0;
+    }
+
+    private boolean isEmpty(ObjectNode delta) {
+        return delta.path("changes").isEmpty() && delta.path("added").isEmpty()
+            && delta.path("updated").isEmpty() && delta.path("removed").isEmpty();
+    }
+
+    /**
+     * Record the delta and hand the fan-out to the push thread
+     * Runs inside the catalog reload, so it must not touch the network
+     */
+    private void publish(ObjectNode delta) {
+        // 空的差異也保留, 讓版本鏈連續; 但不推送
+        synchronized (history) {
+            history.addLast(delta);
+            while (history.size() > Math.max(1, historyCapacity)) {
+                history.removeFirst();
+            }
+        }
+        if (isEmpty(delta)) {
+            return;
+        }
+        deltasPublished.incrementAndGet();
+        if (menuSessions.isEmpty()) {
+            return;
+        }
+        try {
+            pushExecutor.execute(() -> fanOut(delta));
+        } catch (Exception e) {
+            // 關閉中: 客戶端重新連線時以 resume 補上
+            System.err.println("Error scheduling menu delta push: " + e.getMessage());
+        }
+    }
+
+    private void fanOut(ObjectNode delta) {
+        // Each wire format is serialized once and shared across sessions
+        WebSocketPayloadCodec.PreparedFrames frames = payloadCodec.prepare(delta);
+        for (WebSocketSession session : menuSessions.values()) {
+            try {
+                // 包裝後的連線自行處理並行寫入; 慢速客戶端只會排入其緩衝
+                if (session.isOpen()) {
+                    session.sendMessage(frames.forSession(session));
+                    framesSent.incrementAndGet();
+                }
+            } catch (Exception e) {
+                // 超過送出時間或緩衝上限時包裝器已關閉該連線
+                sendFailures.incrementAndGet();
+                System.err.println("Error pushing menu delta: " + e.getMessage());
+            }
+        }
+    }
+
+    private void replayMissedDeltas(WebSocketSession session, long clientVersion) throws IOException {
+        long currentVersion = menuCatalog.current().getVersion();
+        List<ObjectNode> missed = new ArrayList<>();
+        boolean found = clientVersion == currentVersion;
+        if (!found) {
+            synchronized (history) {
+                for (ObjectNode delta : history) {
+                    if (!found && delta.path("fromVersion").asLong() == clientVersion) {
+                        found = true;
+                    }
+                    if (found) {
+                        missed.add(delta);
+                    }
+                }
+            }
+        }
+
+        if (!found) {
+            // 版本過舊或來自其他節點的中間版本: 客戶端重新取得完整菜單
+            resyncsRequested.incrementAndGet();
+            sendMessage(session, Map.of(
+                "type", "resync_required",
+                "version", currentVersion
+            ));
+            return;
+        }
+
+        int replayed = 0;
+        for (ObjectNode delta : missed) {
+            if (!isEmpty(delta)) {
+                sendMessage(session, delta);
+                replayed++;
+            }
+        }
+        sendMessage(session, Map.of(
+            "type", "replay_complete",
+            "replayed", replayed,
+            "version", missed.isEmpty() ? currentVersion : missed.get(missed.size() - 1).path("version").asLong()
+        ));
+    }
+
+    private void sendMessage(WebSocketSession session, Object message) throws IOException {
+        // 經由包裝後的連線送出, 與推送執行緒的寫入互不阻塞
+        WebSocketSession target = menuSessions.getOrDefault(session.getId(), session);
+        WebSocketMessage<?> frame = payloadCodec.encode(target, message);
+        if (target.isOpen()) {
+            target.sendMessage(frame);
+            framesSent.incrementAndGet();
+        }
+    }
+}
@@ -1,25 +1,81 @@
 package com.ranbow.restaurant.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 
 import java.io.IOException;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * WebSocket handler for real-time order status updates
  * Manages connections specifically for order status monitoring
+ *
+ * Sessions subscribe to specific orders and/or a customer; events are routed through
+ * an inverted index so only interested sessions are touched. Sessions that have not
+ * subscribed to anything (e.g. staff screens), or have dropped all their subscriptions,
+ * receive every order event. Broadcasts take the order's customerId from the caller,
+ * so routing never needs a database lookup.
  */
+@Component
 public class OrderStatusWebSocketHandler implements WebSocketHandler {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String ATTR_ORDER_IDS = "subscribedOrderIds";
+    private static final String ATTR_CUSTOMER_IDS = "subscribedCustomerIds";
+    private static final int MAX_ORDER_SUBSCRIPTIONS = 50;
+
     private final List<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
 
+    // Inverted subscription index: orderId / customerId -> interested sessions
+    private final Map<String, Set<WebSocketSession>> orderSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<WebSocketSession>> customerSubscribers = new ConcurrentHashMap<>();
+
+    // Sessions without any subscription receive every order event
+    private final Set<WebSocketSession> firehoseSessions = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        // Deliver order events raised on other nodes to clients connected here
+        eventRelay.register(WebSocketEventRelay.ORDERS_CHANNEL,
+            (routing, event) -> deliverLocally(routing.get("orderId"), routing.get("customerId"), event));
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         sessions.add(session);
+        session.getAttributes().put(ATTR_ORDER_IDS, ConcurrentHashMap.newKeySet());
+        session.getAttributes().put(ATTR_CUSTOMER_IDS, ConcurrentHashMap.newKeySet());
+
+        // Allow subscriptions to be given at connect time: ?orderId=..&orderId=..&customerId=..
+        Map<String, List<String>> params = extractQueryParams(session);
+        for (String orderId : params.getOrDefault("orderId", List.of())) {
+            subscribeOrder(session, orderId);
+        }
+        for (String customerId : params.getOrDefault("customerId", List.of())) {
+            subscribeCustomer(session, customerId);
+        }
+        if (!hasSubscriptions(session)) {
+            firehoseSessions.add(session);
+        }
+
         System.out.println("Order status WebSocket connection established: " + session.getId() + 
                           ", total connections: " + sessions.size());
         
@@ -27,7 +83,9 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
         sendMessage(session, Map.of(
             "type", "connection_established",
             "message", "訂單狀態監聽已建立",
-            "sessionId", session.getId()
+            "sessionId", session.getId(),
+            "subscribedOrderIds", getOrderIds(session),
+            "subscribedCustomerIds", getCustomerIds(session)
         ));
     }
 
@@ -46,23 +104,72 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
                     break;
                     
                 case "subscribe_order":
-                    String orderId = (String) messageData.get("orderId");
-                    // Store subscription in session attributes
-                    session.getAttributes().put("subscribedOrderId", orderId);
+                    List<String> orderIds = readIds(messageData, "orderId", "orderIds");
+                    if (orderIds.isEmpty()) {
+                        sendError(session, "缺少訂單ID");
+                        break;
+                    }
+                    for (String id : orderIds) {
+                        if (!subscribeOrder(session, id)) {
+                            sendError(session, "訂閱數量已達上限: " + MAX_ORDER_SUBSCRIPTIONS);
+                            break;
+                        }
+                    }
+                    firehoseSessions.remove(session);
                     sendMessage(session, Map.of(
                         "type", "subscribed",
-                        "orderId", orderId,
+                        "orderIds", getOrderIds(session),
                         "message", "已訂閱訂單狀態更新"
                     ));
                     break;
                     
                 case "unsubscribe_order":
-                    session.getAttributes().remove("subscribedOrderId");
+                    List<String> removeIds = readIds(messageData, "orderId", "orderIds");
+                    if (removeIds.isEmpty()) {
+                        // No IDs given: drop all order subscriptions
+                        removeIds = new ArrayList<>(getOrderIds(session));
+                    }
+                    removeIds.forEach(id -> unsubscribeOrder(session, id));
+                    restoreFirehoseIfUnsubscribed(session);
                     sendMessage(session, Map.of(
                         "type", "unsubscribed",
+                        "orderIds", getOrderIds(session),
                         "message", "已取消訂閱"
                     ));
                     break;
+
+                case "subscribe_customer":
+                    String customerId = (String) messageData.get("customerId");
+                    if (customerId == null || customerId.isBlank()) {
+                        sendError(session, "缺少顧客ID");
+                        break;
+                    }
+                    subscribeCustomer(session, customerId);
+                    firehoseSessions.remove(session);
+                    sendMessage(session, Map.of(
+                        "type", "subscribed",
+                        "customerId", customerId,
+                        "message", "已訂閱顧客訂單更新"
+                    ));
+                    break;
+
+                case "unsubscribe_customer":
+                    new ArrayList<>(getCustomerIds(session)).forEach(id -> unsubscribeCustomer(session, id));
+                    restoreFirehoseIfUnsubscribed(session);
+                    sendMessage(session, Map.of(
+                        "type", "unsubscribed",
+                        "message", "已取消顧客訂閱"
+                    ));
+                    break;
+
+                case "subscribe_all":
+                    // Explicitly receive every order event (staff dashboards)
+                    firehoseSessions.add(session);
+                    sendMessage(session, Map.of(
+                        "type", "subscribed",
+                        "message", "已訂閱所有訂單更新"
+                    ));
+                    break;
                     
                 default:
                     System.out.println("Unknown order status message type: " + messageType);
@@ -83,6 +190,9 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
         sessions.remove(session);
+        firehoseSessions.remove(session);
+        new ArrayList<>(getOrderIds(session)).forEach(id -> unsubscribeOrder(session, id));
+        new ArrayList<>(getCustomerIds(session)).forEach(id -> unsubscribeCustomer(session, id));
         System.out.println("Order status WebSocket connection closed: " + session.getId() + 
                           ", remaining connections: " + sessions.size());
     }
@@ -95,9 +205,9 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
     // Public methods for broadcasting order updates
 
     /**
-     * Broadcast order status change to all connected clients
+     * Broadcast order status change to subscribers of the order and of its customer
      */
-    public void broadcastOrderStatusChange(String orderId, String oldStatus, String newStatus, 
+    public void broadcastOrderStatusChange(String orderId, String customerId, String oldStatus, String newStatus,
                                           String staffId, String tableNumber) {
         Map<String, Object> message = Map.of(
             "type", "order_status_changed",
@@ -109,7 +219,7 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
 
-        broadcastToAll(message);
+        broadcastToSubscribers(orderId, customerId, message);
     }
 
     /**
@@ -126,13 +236,13 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
 
-        broadcastToAll(message);
+        broadcastToSubscribers(orderId, customerId, message);
     }
 
     /**
      * Broadcast order completion notification
      */
-    public void broadcastOrderCompleted(String orderId, int tableNumber, String completedBy) {
+    public void broadcastOrderCompleted(String orderId, String customerId, int tableNumber, String completedBy) {
         Map<String, Object> message = Map.of(
             "type", "order_completed",
             "orderId", orderId,
@@ -141,13 +251,13 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
 
-        broadcastToAll(message);
+        broadcastToSubscribers(orderId, customerId, message);
     }
 
     /**
      * Broadcast order cancellation
      */
-    public void broadcastOrderCancelled(String orderId, int tableNumber, String reason, 
+    public void broadcastOrderCancelled(String orderId, String customerId, int tableNumber, String reason,
                                        String cancelledBy) {
         Map<String, Object> message = Map.of(
             "type", "order_cancelled",
@@ -158,13 +268,13 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
 
-        broadcastToAll(message);
+        broadcastToSubscribers(orderId, customerId, message);
     }
 
     /**
      * Broadcast kitchen timer update
      */
-    public void broadcastKitchenTimerUpdate(String orderId, int remainingMinutes, 
+    public void broadcastKitchenTimerUpdate(String orderId, String customerId, int remainingMinutes,
                                           String status, boolean isOverdue) {
         Map<String, Object> message = Map.of(
             "type", "kitchen_timer_update",
@@ -175,21 +285,168 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
 
-        broadcastToAll(message);
+        broadcastToSubscribers(orderId, customerId, message);
     }
 
     // Private helper methods
 
-    private void broadcastToAll(Map<String, Object> message) {
-        sessions.forEach(session -> {
+    private void broadcastToSubscribers(String orderId, String customerId, Map<String, Object> message) {
+        ObjectNode event = objectMapper.valueToTree(message);
+        deliverLocally(orderId, customerId, event);
+
+        Map<String, String> routing = new HashMap<>();
+        routing.put("orderId", orderId);
+        routing.put("customerId", customerId);
+        eventRelay.publish(WebSocketEventRelay.ORDERS_CHANNEL, routing, event);
+    }
+
+    private void deliverLocally(String orderId, String customerId, ObjectNode event) {
+        Set<WebSocketSession> targets = collectTargets(orderId, customerId);
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        TextMessage textMessage;
+        try {
+            // Serialize once and share the frame across sessions
+            textMessage = new TextMessage(objectMapper.writeValueAsString(event));
+        } catch (IOException e) {
+            System.err.println("Error serializing order status event: " + e.getMessage());
+            return;
+        }
+
+        targets.forEach(session -> {
             try {
-                sendMessage(session, message);
+                if (session.isOpen()) {
+                    session.sendMessage(textMessage);
+                }
             } catch (Exception e) {
                 System.err.println("Error broadcasting order status message: " + e.getMessage());
             }
         });
     }
 
+    /**
+     * Union of firehose sessions and the index entries for the order and customer
+     */
+    private Set<WebSocketSession> collectTargets(String orderId, String customerId) {
+        Set<WebSocketSession> targets = new LinkedHashSet<>(firehoseSessions);
+        if (orderId != null) {
+            targets.addAll(orderSubscribers.getOrDefault(orderId, Collections.emptySet()));
+        }
+        if (customerId != null) {
+            targets.addAll(customerSubscribers.getOrDefault(customerId, Collections.emptySet()));
+        }
+        return targets;
+    }
+
+    private boolean subscribeOrder(WebSocketSession session, String orderId) {
+        Set<String> orderIds = getOrderIds(session);
+        if (orderIds.size() >= MAX_ORDER_SUBSCRIPTIONS && !orderIds.contains(orderId)) {
+            return false;
+        }
+        orderIds.add(orderId);
+        addToIndex(orderSubscribers, orderId, session);
+        return true;
+    }
+
+    private void unsubscribeOrder(WebSocketSession session, String orderId) {
+        getOrderIds(session).remove(orderId);
+        removeFromIndex(orderSubscribers, orderId, session);
+    }
+
+    private void subscribeCustomer(WebSocketSession session, String customerId) {
+        getCustomerIds(session).add(customerId);
+        addToIndex(customerSubscribers, customerId, session);
+    }
+
+    private void unsubscribeCustomer(WebSocketSession session, String customerId) {
+        getCustomerIds(session).remove(customerId);
+        removeFromIndex(customerSubscribers, customerId, session);
+    }
+
+    private void addToIndex(Map<String, Set<WebSocketSession>> index, String key, WebSocketSession session) {
+        index.compute(key, (k, subscribers) -> {
+            Set<WebSocketSession> result = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            result.add(session);
+            return result;
+        });
+    }
+
+    private void removeFromIndex(Map<String, Set<WebSocketSession>> index, String key, WebSocketSession session) {
+        // Drop the entry atomically once its last subscriber leaves
+        index.computeIfPresent(key, (k, subscribers) -> {
+            subscribers.remove(session);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * A session left without subscriptions goes back to receiving every order event, as at connect time
+     */
+    private void restoreFirehoseIfUnsubscribed(WebSocketSession session) {
+        if (!hasSubscriptions(session)) {
+            firehoseSessions.add(session);
+        }
+    }
+
+    private boolean hasSubscriptions(WebSocketSession session) {
+        return !getOrderIds(session).isEmpty() || !getCustomerIds(session).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> getOrderIds(WebSocketSession session) {
+        return (Set<String>) session.getAttributes()
+            .computeIfAbsent(ATTR_ORDER_IDS, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> getCustomerIds(WebSocketSession session) {
+        return (Set<String>) session.getAttributes()
+            .computeIfAbsent(ATTR_CUSTOMER_IDS, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Read a single ID field and/or a list field from a client message
+     */
+    private List<String> readIds(Map<String, Object> messageData, String singleKey, String listKey) {
+        List<String> ids = new ArrayList<>();
+        Object single = messageData.get(singleKey);
+        if (single != null && !single.toString().isBlank()) {
+            ids.add(single.toString());
+        }
+        Object list = messageData.get(listKey);
+        if (list instanceof Collection<?> values) {
+            for (Object value : values) {
+                if (value != null && !value.toString().isBlank()) {
+                    ids.add(value.toString());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Map<String, List<String>> extractQueryParams(WebSocketSession session) {
+        Map<String, List<String>> params = new HashMap<>();
+        String query = session.getUri() != null ? session.getUri().getQuery() : null;
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] keyValue = param.split("=");
+                if (keyValue.length == 2 && !keyValue[1].isBlank()) {
+                    params.computeIfAbsent(keyValue[0], k -> new ArrayList<>()).add(keyValue[1]);
+                }
+            }
+        }
+        return params;
+    }
+
+    private void sendError(WebSocketSession session, String error) throws IOException {
+        sendMessage(session, Map.of(
+            "type", "error",
+            "message", error
+        ));
+    }
+
     private void sendMessage(WebSocketSession session, Object message) throws IOException {
         if (session.isOpen()) {
             String json = objectMapper.writeValueAsString(message);
@@ -201,4 +458,12 @@ public class OrderStatusWebSocketHandler implements WebSocketHandler {
     public int getActiveSessionCount() {
         return sessions.size();
     }
+
+    public int getSubscribedOrderCount() {
+        return orderSubscribers.size();
+    }
+
+    public int getSubscribedCustomerCount() {
+        return customerSubscribers.size();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.ranbow.restaurant.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker for Redis calls on request paths
+ * After a run of consecutive failures the breaker opens and calls fail immediately
+ * with {@link CircuitOpenException} instead of waiting on a dead connection. Once the
+ * open period has passed, a single call is let through as a probe; its success closes
+ * the breaker and runs the registered recovery listeners.
+ */
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${redis.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${redis.circuit-breaker.open-ms:10000}")
+    private long openMs;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long stateChangedAt = System.currentTimeMillis();
+
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    // Metrics
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+
+    /**
+     * Run a Redis operation through the breaker
+     * @throws CircuitOpenException if the breaker is open
+     */
+    public <T> T call(Supplier<T> operation) {
+        if (!allowRequest()) {
+            rejectedCalls.incrementAndGet();
+            throw new CircuitOpenException("Redis circuit breaker is open");
+        }
+        try {
+            T result = operation.get();
+            recordSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            recordFailure();
+            throw e;
+        }
+    }
+
+    public boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        // 開啟期間結束後只放行一個探測請求; 探測逾期未回報時再放行下一個
+        long now = System.currentTimeMillis();
+        if (now - stateChangedAt >= openMs && state.compareAndSet(current, State.HALF_OPEN)) {
+            stateChangedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        State previous = state.getAndSet(State.CLOSED);
+        if (previous != State.CLOSED) {
+            stateChangedAt = System.currentTimeMillis();
+            System.out.println("Redis circuit breaker closed, running recovery tasks");
+            // 恢復作業不佔用觸發探測的請求執行緒
+            for (Runnable listener : recoveryListeners) {
+                CompletableFuture.runAsync(listener);
+            }
+        }
+    }
+
+    public void recordFailure() {
+        failedCalls.incrementAndGet();
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if ((current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold))
+                && state.compareAndSet(current, State.OPEN)) {
+            stateChangedAt = System.currentTimeMillis();
+            timesOpened.incrementAndGet();
+            System.err.println("Redis circuit breaker opened after " + failures + " consecutive failures");
+        }
+    }
+
+    public boolean isOpen() {
+        return state.get() != State.CLOSED;
+    }
+
+    /**
+     * Register a task to run (asynchronously) each time the breaker closes again
+     */
+    public void onRecovery(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state.get().name());
+        stats.put("stateChangedAt", stateChangedAt);
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("failureThreshold", failureThreshold);
+        stats.put("openMs", openMs);
+        stats.put("failedCalls", failedCalls.get());
+        stats.put("rejectedCalls", rejectedCalls.get());
+        stats.put("timesOpened", timesOpened.get());
+        return stats;
+    }
+
+    /**
+     * Redis 斷路器開啟中, 呼叫未送出
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
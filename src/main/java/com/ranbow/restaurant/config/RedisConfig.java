@@ -2,29 +2,49 @@ package com.ranbow.restaurant.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 
+import java.time.Duration;
+
 @Configuration
 @EnableRedisHttpSession(maxInactiveIntervalInSeconds = 1800) // 30分鐘會話過期
 public class RedisConfig {
 
     @Bean
-    public RedisConnectionFactory redisConnectionFactory() {
+    public RedisConnectionFactory redisConnectionFactory(
+            @Value("${redis.command-timeout-ms:500}") long commandTimeoutMs,
+            @Value("${redis.connect-timeout-ms:1000}") long connectTimeoutMs) {
         // 配置Redis連接 - 使用提供的伺服器地址
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
         config.setHostName("192.168.0.113");
         config.setPort(6379);
         // 無需密碼認證
         
-        return new LettuceConnectionFactory(config);
+        // 快速失敗: 命令逾時短, 斷線期間直接拒絕命令而非排隊等待重連
+        ClientOptions clientOptions = ClientOptions.builder()
+            .socketOptions(SocketOptions.builder().connectTimeout(Duration.ofMillis(connectTimeoutMs)).build())
+            .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+            .autoReconnect(true)
+            .build();
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+            .commandTimeout(Duration.ofMillis(commandTimeoutMs))
+            .clientOptions(clientOptions)
+            .build();
+        
+        return new LettuceConnectionFactory(config, clientConfig);
     }
 
     @Bean
@@ -55,4 +75,13 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        // Pub/Sub 監聽容器 - 用於跨節點事件轉發
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setRecoveryInterval(5000L);
+        return container;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ranbow.restaurant.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cluster-wide sequence numbers for replayable real-time channels
+ * The node that raises an event takes the next number of the channel from Redis and stamps
+ * the event before relaying it, so every node buffers the event under the same epoch and
+ * sequence and a client can resume on any node. The epoch changes whenever the counter
+ * starts over (e.g. the Redis key was lost), which makes clients resync.
+ */
+@Component
+public class ReplaySequence {
+
+    private static final String KEY_PREFIX = "ranbow:ws:replay:";
+
+    // KEYS: 序號, epoch; ARGV: 候選 epoch (計數器重新開始時使用); 返回 {epoch, seq}
+    private static final RedisScript<List> NEXT_SCRIPT = new DefaultRedisScript<>("""
+        local seq = redis.call('INCR', KEYS[1])
+        local epoch = redis.call('GET', KEYS[2])
+        if seq == 1 or not epoch then
+            epoch = ARGV[1]
+            redis.call('SET', KEYS[2], epoch)
+        end
+        return {epoch, seq}
+        """, List.class);
+
+    // KEYS: 序號, epoch; ARGV: 候選 epoch; 返回目前的 {epoch, seq}, 不遞增
+    private static final RedisScript<List> CURRENT_SCRIPT = new DefaultRedisScript<>("""
+        local epoch = redis.call('GET', KEYS[2])
+        if not epoch then
+            redis.call('SET', KEYS[2], ARGV[1], 'NX')
+            epoch = redis.call('GET', KEYS[2])
+        end
+        local seq = tonumber(redis.call('GET', KEYS[1]) or '0')
+        return {epoch, seq}
+        """, List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * Take the next sequence number of a channel
+     * @return The stamp, or null if Redis is unavailable
+     */
+    public Stamp next(String channel) {
+        return run(NEXT_SCRIPT, channel);
+    }
+
+    /**
+     * Current epoch and last sequence number of a channel, without taking a number
+     * @return The stamp, or null if Redis is unavailable
+     */
+    public Stamp current(String channel) {
+        return run(CURRENT_SCRIPT, channel);
+    }
+
+    // Private helper methods
+
+    @SuppressWarnings("unchecked")
+    private Stamp run(RedisScript<List> script, String channel) {
+        try {
+            List<Object> result = circuitBreaker.call(() -> stringRedisTemplate.execute(script,
+                List.of(KEY_PREFIX + channel + ":seq", KEY_PREFIX + channel + ":epoch"),
+                UUID.randomUUID().toString().substring(0, 8)));
+            if (result == null || result.size() < 2) {
+                return null;
+            }
+            return new Stamp(String.valueOf(result.get(0)), ((Number) result.get(1)).longValue());
+        } catch (Exception e) {
+            System.err.println("Error reading replay sequence for " + channel + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Epoch and sequence number of one event
+     */
+    public static class Stamp {
+        private final String epoch;
+        private final long seq;
+
+        public Stamp(String epoch, long seq) {
+            this.epoch = epoch;
+            this.seq = seq;
+        }
+
+        public String getEpoch() { return epoch; }
+        public long getSeq() { return seq; }
+    }
+}
@@ -1,13 +1,20 @@
 package com.ranbow.restaurant.config;
 
+import com.ranbow.restaurant.events.NotificationCreatedEvent;
 import com.ranbow.restaurant.models.Notification;
+import com.ranbow.restaurant.models.NotificationPage;
 import com.ranbow.restaurant.services.NotificationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.List;
@@ -18,12 +25,28 @@ import java.util.Map;
  * Manages WebSocket connections for staff members and broadcasts notifications
  */
 @Component
-public class StaffNotificationHandler implements WebSocketHandler {
+public class StaffNotificationHandler implements WebSocketHandler, SubProtocolCapable {
 
     @Autowired
     private NotificationService notificationService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WebSocketPayloadCodec payloadCodec;
+
+    @Autowired
+    private ReplaySequence replaySequence;
+
+    @Value("${websocket.replay.capacity:500}")
+    private int replayCapacity;
+
+    // Recent events kept for clients resuming after a reconnect
+    private EventReplayBuffer replayBuffer;
     
     // Map of staff ID to list of WebSocket sessions
     private final Map<String, List<WebSocketSession>> staffSessions = new ConcurrentHashMap<>();
@@ -31,6 +54,18 @@ public class StaffNotificationHandler implements WebSocketHandler {
     // Map of session ID to staff ID
     private final Map<String, String> sessionToStaffMap = new ConcurrentHashMap<>();
 
+    @PostConstruct
+    public void init() {
+        replayBuffer = new EventReplayBuffer(WebSocketEventRelay.STAFF_CHANNEL, replayCapacity, replaySequence);
+
+        // Deliver events raised on other nodes to staff connected here,
+        // buffered under the sequence number the raising node stamped
+        eventRelay.register(WebSocketEventRelay.STAFF_CHANNEL, (routing, event) -> {
+            String staffId = routing.get("staffId");
+            deliverLocally(staffId, replayBuffer.accept(staffId, event));
+        });
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         System.out.println("Staff notification WebSocket connection established: " + session.getId());
@@ -47,7 +82,9 @@ public class StaffNotificationHandler implements WebSocketHandler {
                 "type", "connection_established",
                 "message", "連接已建立",
                 "staffId", staffId,
-                "unreadCount", unreadCount
+                "unreadCount", unreadCount,
+                "epoch", replayBuffer.getEpoch(),
+                "seq", replayBuffer.getLastSeq()
             ));
         } else {
             session.close(CloseStatus.BAD_DATA.withReason("Missing staff ID"));
@@ -57,9 +94,8 @@ public class StaffNotificationHandler implements WebSocketHandler {
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
         try {
-            String payload = message.getPayload().toString();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> messageData = objectMapper.readValue(payload, Map.class);
+            // Text frames carry JSON, binary frames carry CBOR
+            Map<String, Object> messageData = payloadCodec.decode(message);
             
             String staffId = sessionToStaffMap.get(session.getId());
             if (staffId == null) {
@@ -94,12 +130,28 @@ public class StaffNotificationHandler implements WebSocketHandler {
                     ));
                     break;
                     
+                case "resume":
+                    // Client reconnected: replay what it missed instead of a full refetch
+                    replayMissedEvents(session, staffId, messageData);
+                    break;
+
                 case "get_recent_notifications":
-                    List<Notification> recent = notificationService.getRecentNotifications(staffId, 1);
-                    sendMessage(session, Map.of(
-                        "type", "recent_notifications",
-                        "notifications", recent
-                    ));
+                    // Page-sized read; clients pass nextCursor back to load older entries
+                    String cursor = (String) messageData.get("cursor");
+                    int limit = messageData.get("limit") instanceof Number n
+                        ? n.intValue() : NotificationService.DEFAULT_PAGE_SIZE;
+                    try {
+                        NotificationPage page = notificationService.getNotificationPage(
+                            staffId, Boolean.TRUE.equals(messageData.get("unreadOnly")), cursor, limit);
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("type", "recent_notifications");
+                        response.put("notifications", page.getNotifications());
+                        response.put("nextCursor", page.getNextCursor());
+                        response.put("hasMore", page.isHasMore());
+                        sendMessage(session, response);
+                    } catch (IllegalArgumentException e) {
+                        sendMessage(session, Map.of("type", "error", "message", "無效的分頁游標"));
+                    }
                     break;
                     
                 default:
@@ -139,21 +191,12 @@ public class StaffNotificationHandler implements WebSocketHandler {
      * Broadcast notification to a specific staff member
      */
     public void broadcastToStaff(String staffId, Notification notification) {
-        List<WebSocketSession> sessions = staffSessions.get(staffId);
-        if (sessions != null && !sessions.isEmpty()) {
-            Map<String, Object> message = Map.of(
-                "type", "new_notification",
-                "notification", notification
-            );
-            
-            sessions.forEach(session -> {
-                try {
-                    sendMessage(session, message);
-                } catch (Exception e) {
-                    System.err.println("Error broadcasting to staff " + staffId + ": " + e.getMessage());
-                }
-            });
-        }
+        Map<String, Object> message = Map.of(
+            "type", "new_notification",
+            "notification", notification
+        );
+
+        publish(staffId, message);
     }
 
     /**
@@ -165,15 +208,7 @@ public class StaffNotificationHandler implements WebSocketHandler {
             "notification", notification
         );
 
-        staffSessions.forEach((staffId, sessions) -> {
-            sessions.forEach(session -> {
-                try {
-                    sendMessage(session, message);
-                } catch (Exception e) {
-                    System.err.println("Error broadcasting to all staff: " + e.getMessage());
-                }
-            });
-        });
+        publish(null, message);
     }
 
     /**
@@ -188,15 +223,7 @@ public class StaffNotificationHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
 
-        staffSessions.forEach((staffId, sessions) -> {
-            sessions.forEach(session -> {
-                try {
-                    sendMessage(session, message);
-                } catch (Exception e) {
-                    System.err.println("Error broadcasting order status update: " + e.getMessage());
-                }
-            });
-        });
+        publish(null, message);
     }
 
     /**
@@ -211,15 +238,28 @@ public class StaffNotificationHandler implements WebSocketHandler {
             "priority", "emergency"
         );
 
-        staffSessions.forEach((staffId, sessions) -> {
-            sessions.forEach(session -> {
-                try {
-                    sendMessage(session, alertMessage);
-                } catch (Exception e) {
-                    System.err.println("Error broadcasting emergency alert: " + e.getMessage());
-                }
-            });
-        });
+        publish(null, alertMessage);
+    }
+
+    /**
+     * Push stored notifications to the recipient
+     * Repeats folded into a pending notification are only re-pushed when they raise its priority
+     */
+    @EventListener
+    public void onNotificationCreated(NotificationCreatedEvent event) {
+        if (event.isCoalesced() && !event.isEscalated()) {
+            return;
+        }
+
+        Notification notification = event.getNotification();
+        if (event.isCoalesced()) {
+            publish(notification.getRecipientStaffId(), Map.of(
+                "type", "notification_updated",
+                "notification", notification
+            ));
+        } else {
+            broadcastToStaff(notification.getRecipientStaffId(), notification);
+        }
     }
 
     // Private helper methods
@@ -264,13 +304,82 @@ public class StaffNotificationHandler implements WebSocketHandler {
         }
     }
 
+    /**
+     * Deliver to sessions on this node and relay once to the other nodes
+     * @param staffId Target staff ID, or null for all staff
+     */
+    private void publish(String staffId, Map<String, Object> message) {
+        // Stamp and buffer even when nobody is connected, so the event can be replayed later
+        ObjectNode stamped = replayBuffer.append(staffId, objectMapper.valueToTree(message));
+        deliverLocally(staffId, stamped);
+        eventRelay.publish(WebSocketEventRelay.STAFF_CHANNEL,
+                staffId != null ? Map.of("staffId", staffId) : Map.of(), stamped);
+    }
+
+    private void deliverLocally(String staffId, ObjectNode stamped) {
+
+        List<WebSocketSession> targets;
+        if (staffId != null) {
+            targets = staffSessions.get(staffId);
+            if (targets == null || targets.isEmpty()) {
+                return;
+            }
+        } else {
+            targets = staffSessions.values().stream().flatMap(List::stream).toList();
+        }
+
+        // Each wire format is serialized once and shared across sessions
+        WebSocketPayloadCodec.PreparedFrames frames = payloadCodec.prepare(stamped);
+
+        for (WebSocketSession session : targets) {
+            try {
+                if (session.isOpen()) {
+                    session.sendMessage(frames.forSession(session));
+                }
+            } catch (Exception e) {
+                System.err.println("Error broadcasting to staff " + (staffId != null ? staffId : "all") + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void replayMissedEvents(WebSocketSession session, String staffId,
+                                    Map<String, Object> messageData) throws IOException {
+        String epoch = messageData.get("epoch") != null ? messageData.get("epoch").toString() : null;
+        long lastSeq = messageData.get("lastSeq") instanceof Number n ? n.longValue() : -1;
+
+        EventReplayBuffer.ReplayResult result = replayBuffer.since(epoch, lastSeq, staffId);
+        if (result.isResyncRequired()) {
+            sendMessage(session, Map.of(
+                "type", "resync_required",
+                "reason", result.getReason(),
+                "epoch", replayBuffer.getEpoch(),
+                "seq", result.getLatestSeq()
+            ));
+            return;
+        }
+
+        for (ObjectNode event : result.getEvents()) {
+            sendMessage(session, event);
+        }
+        sendMessage(session, Map.of(
+            "type", "replay_complete",
+            "replayed", result.getEvents().size(),
+            "epoch", replayBuffer.getEpoch(),
+            "seq", result.getLatestSeq()
+        ));
+    }
+
     private void sendMessage(WebSocketSession session, Object message) throws IOException {
         if (session.isOpen()) {
-            String json = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(json));
+            session.sendMessage(payloadCodec.encode(session, message));
         }
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return WebSocketPayloadCodec.SUBPROTOCOLS;
+    }
+
     // Public getters for monitoring
     public int getConnectedStaffCount() {
         return staffSessions.size();
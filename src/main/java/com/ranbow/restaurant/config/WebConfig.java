@@ -2,9 +2,13 @@ package com.ranbow.restaurant.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
@@ -18,4 +22,12 @@ public class WebConfig implements WebMvcConfigurer {
                 .addPathPatterns("/api/**") // 攔截所有API路徑
                 .excludePathPatterns("/api/health", "/api/users/login", "/api/users/register", "/api/menu/**"); // 排除公開端點
     }
-}
\ No newline at end of file
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // 二進位 CBOR 編碼 - 客戶端以 Accept: application/cbor 協商, 預設仍為 JSON
+        // 取代框架預設的 CBOR 轉換器, 使日期格式與 JSON 一致
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(WebSocketPayloadCodec.createCborMapper()));
+    }
+}
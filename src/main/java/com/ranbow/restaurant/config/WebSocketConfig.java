@@ -17,6 +17,15 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Autowired
     private StaffNotificationHandler staffNotificationHandler;
 
+    @Autowired
+    private OrderStatusWebSocketHandler orderStatusWebSocketHandler;
+
+    @Autowired
+    private KitchenWebSocketHandler kitchenWebSocketHandler;
+
+    @Autowired
+    private MenuWebSocketHandler menuWebSocketHandler;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         // Register WebSocket handlers for staff notifications
@@ -24,11 +33,15 @@ public class WebSocketConfig implements WebSocketConfigurer {
                 .setAllowedOrigins("*"); // Allow all origins for development
         
         // Register handler for order status updates
-        registry.addHandler(new OrderStatusWebSocketHandler(), "/ws/staff/orders")
+        registry.addHandler(orderStatusWebSocketHandler, "/ws/staff/orders")
                 .setAllowedOrigins("*");
         
         // Register handler for kitchen updates
-        registry.addHandler(new KitchenWebSocketHandler(), "/ws/kitchen")
+        registry.addHandler(kitchenWebSocketHandler, "/ws/kitchen")
+                .setAllowedOrigins("*");
+        
+        // Register handler for customer menu availability and price deltas
+        registry.addHandler(menuWebSocketHandler, "/ws/menu")
                 .setAllowedOrigins("*");
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cross-node relay for real-time events
+ * Each node delivers an event to its own connected clients and publishes it once to Redis;
+ * the other nodes receive it and deliver only to their locally connected clients.
+ */
+@Component
+public class WebSocketEventRelay implements MessageListener {
+
+    public static final String STAFF_CHANNEL = "staff";
+    public static final String KITCHEN_CHANNEL = "kitchen";
+    public static final String ORDERS_CHANNEL = "orders";
+    public static final String TRACKING_CHANNEL = "tracking";
+    public static final String SESSIONS_CHANNEL = "sessions";
+    public static final String MENU_CHANNEL = "menu";
+    public static final String POPULARITY_CHANNEL = "popularity";
+
+    private static final String TOPIC_PREFIX = "ranbow:ws:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${websocket.relay.enabled:true}")
+    private boolean relayEnabled;
+
+    // Unique ID of this node, used to skip our own messages when they come back from Redis
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Map of channel name to local delivery callbacks
+    private final Map<String, List<LocalDelivery>> deliveries = new ConcurrentHashMap<>();
+
+    /**
+     * Callback that delivers a relayed event to sessions connected to this node
+     */
+    @FunctionalInterface
+    public interface LocalDelivery {
+        void deliver(Map<String, String> routing, ObjectNode event);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (relayEnabled) {
+            listenerContainer.addMessageListener(this, new PatternTopic(TOPIC_PREFIX + "*"));
+            System.out.println("WebSocket event relay enabled, node: " + nodeId);
+        }
+    }
+
+    /**
+     * Register a local delivery callback for a channel
+     */
+    public void register(String channel, LocalDelivery delivery) {
+        deliveries.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(delivery);
+    }
+
+    /**
+     * Publish an event to the other nodes. The caller is responsible for local delivery.
+     * @param channel Channel name
+     * @param routing Routing keys used by the receiving handler (e.g. staffId), may be empty
+     * @param event Event payload
+     */
+    public void publish(String channel, Map<String, String> routing, ObjectNode event) {
+        if (!relayEnabled) {
+            return;
+        }
+
+        try {
+            ObjectNode envelope = objectMapper.createObjectNode();
+            envelope.put("origin", nodeId);
+            ObjectNode routingNode = envelope.putObject("routing");
+            if (routing != null) {
+                routing.forEach((key, value) -> {
+                    if (value != null) {
+                        routingNode.put(key, value);
+                    }
+                });
+            }
+            envelope.set("event", event);
+
+            stringRedisTemplate.convertAndSend(TOPIC_PREFIX + channel, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            // Relay failure must not affect local delivery
+            System.err.println("Error relaying " + channel + " event: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String topic = new String(message.getChannel(), StandardCharsets.UTF_8);
+            String channel = topic.substring(TOPIC_PREFIX.length());
+
+            List<LocalDelivery> channelDeliveries = deliveries.get(channel);
+            if (channelDeliveries == null || channelDeliveries.isEmpty()) {
+                return;
+            }
+
+            JsonNode envelope = objectMapper.readTree(message.getBody());
+            if (nodeId.equals(envelope.path("origin").asText())) {
+                return;
+            }
+
+            Map<String, String> routing = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = envelope.path("routing").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                routing.put(field.getKey(), field.getValue().asText());
+            }
+
+            JsonNode event = envelope.get("event");
+            if (event instanceof ObjectNode objectEvent) {
+                for (LocalDelivery delivery : channelDeliveries) {
+                    delivery.deliver(routing, objectEvent);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error handling relayed WebSocket event: " + e.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isRelayEnabled() {
+        return relayEnabled;
+    }
+}
@@ -0,0 +1,111 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes WebSocket payloads as JSON text or CBOR binary frames
+ * Clients opt into binary frames by requesting the "ranbow.cbor.v1" subprotocol
+ * (Sec-WebSocket-Protocol) during the handshake; everyone else keeps JSON text.
+ */
+@Component
+public class WebSocketPayloadCodec {
+
+    public static final String CBOR_SUBPROTOCOL = "ranbow.cbor.v1";
+    public static final List<String> SUBPROTOCOLS = List.of(CBOR_SUBPROTOCOL);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final CBORMapper cborMapper = createCborMapper();
+
+    /**
+     * CBOR mapper configured like the JSON mapper (ISO dates, Java time support)
+     */
+    public static CBORMapper createCborMapper() {
+        CBORMapper mapper = new CBORMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    public boolean isBinary(WebSocketSession session) {
+        return CBOR_SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    /**
+     * Encode a single message in the session's negotiated format
+     */
+    public WebSocketMessage<?> encode(WebSocketSession session, Object payload) throws IOException {
+        return prepare(payload).forSession(session);
+    }
+
+    /**
+     * Prepare a payload for broadcast; each format is serialized at most once
+     */
+    public PreparedFrames prepare(Object payload) {
+        return new PreparedFrames(payload);
+    }
+
+    /**
+     * Decode an incoming text or binary frame into a map
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> decode(WebSocketMessage<?> message) throws IOException {
+        if (message instanceof BinaryMessage binaryMessage) {
+            ByteBuffer buffer = binaryMessage.getPayload();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return cborMapper.readValue(bytes, Map.class);
+        }
+        return objectMapper.readValue(message.getPayload().toString(), Map.class);
+    }
+
+    public byte[] toCbor(Object payload) throws IOException {
+        return cborMapper.writeValueAsBytes(payload);
+    }
+
+    public CBORMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    /**
+     * Lazily encoded frames for one payload, shared across the sessions of a broadcast
+     */
+    public class PreparedFrames {
+        private final Object payload;
+        private TextMessage text;
+        private byte[] binary;
+
+        private PreparedFrames(Object payload) {
+            this.payload = payload;
+        }
+
+        public synchronized WebSocketMessage<?> forSession(WebSocketSession session) throws IOException {
+            if (isBinary(session)) {
+                if (binary == null) {
+                    binary = cborMapper.writeValueAsBytes(payload);
+                }
+                // Fresh ByteBuffer per send: sending consumes the buffer position
+                return new BinaryMessage(binary);
+            }
+            if (text == null) {
+                text = new TextMessage(objectMapper.writeValueAsString(payload));
+            }
+            return text;
+        }
+    }
+}
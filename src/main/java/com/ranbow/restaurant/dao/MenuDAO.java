@@ -7,12 +7,16 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public class MenuDAO {
@@ -75,6 +79,38 @@ public class MenuDAO {
         DELETE FROM menu_items WHERE item_id = ?
         """;
     
+    // 批量操作: 先鎖定存在的品項, 再以單一語句寫入整批 (item_id = ANY(?))
+    private static final String LOCK_MENU_ITEMS = """
+        SELECT item_id FROM menu_items WHERE item_id = ANY(?) FOR UPDATE
+        """;
+    
+    private static final String BULK_SCALE_PRICE = """
+        UPDATE menu_items 
+        SET price = GREATEST(ROUND(price * ?, 2), 0), updated_at = CURRENT_TIMESTAMP 
+        WHERE item_id = ANY(?) 
+        RETURNING item_id
+        """;
+    
+    private static final String BULK_SET_AVAILABILITY = """
+        UPDATE menu_items SET is_available = ?, updated_at = CURRENT_TIMESTAMP 
+        WHERE item_id = ANY(?) 
+        RETURNING item_id
+        """;
+    
+    private static final String BULK_SET_CATEGORY = """
+        UPDATE menu_items SET category = ?::menu_category, updated_at = CURRENT_TIMESTAMP 
+        WHERE item_id = ANY(?) 
+        RETURNING item_id
+        """;
+    
+    // 已有訂單引用的品項 (ON DELETE RESTRICT) 略過, 不讓整批失敗
+    private static final String BULK_DELETE = """
+        DELETE FROM menu_items mi 
+        WHERE mi.item_id = ANY(?) 
+          AND NOT EXISTS (SELECT 1 FROM order_items oi WHERE oi.menu_item_id = mi.item_id) 
+        RETURNING mi.item_id
+        """;
+    
     private static final String COUNT_TOTAL_MENU_ITEMS = """
         SELECT COUNT(*) FROM menu_items
         """;
@@ -187,6 +223,32 @@ public class MenuDAO {
         return deleted > 0;
     }
     
+    /**
+     * Multiply the price of every listed item by a factor (rounded to cents, not below zero)
+     */
+    @Transactional
+    public BulkWriteResult bulkScalePrice(List<String> itemIds, BigDecimal factor) {
+        return bulkWrite(BULK_SCALE_PRICE, factor, itemIds);
+    }
+    
+    @Transactional
+    public BulkWriteResult bulkSetAvailability(List<String> itemIds, boolean isAvailable) {
+        return bulkWrite(BULK_SET_AVAILABILITY, isAvailable, itemIds);
+    }
+    
+    @Transactional
+    public BulkWriteResult bulkSetCategory(List<String> itemIds, MenuCategory category) {
+        return bulkWrite(BULK_SET_CATEGORY, category.name(), itemIds);
+    }
+    
+    /**
+     * Delete the listed items that no order refers to
+     */
+    @Transactional
+    public BulkWriteResult bulkDelete(List<String> itemIds) {
+        return bulkWrite(BULK_DELETE, null, itemIds);
+    }
+    
     public int countTotal() {
         Integer count = jdbcTemplate.queryForObject(COUNT_TOTAL_MENU_ITEMS, Integer.class);
         return count != null ? count : 0;
@@ -200,4 +262,43 @@ public class MenuDAO {
     public List<MenuItem> findPopularItems() {
         return jdbcTemplate.query(SELECT_POPULAR_ITEMS, menuItemRowMapper);
     }
+    
+    // Private helper methods
+    
+    private BulkWriteResult bulkWrite(String sql, Object value, List<String> itemIds) {
+        if (itemIds.isEmpty()) {
+            return new BulkWriteResult(Set.of(), Set.of());
+        }
+        Set<String> existing = new LinkedHashSet<>(queryIds(LOCK_MENU_ITEMS, null, itemIds));
+        Set<String> affected = new LinkedHashSet<>(queryIds(sql, value, itemIds));
+        return new BulkWriteResult(existing, affected);
+    }
+    
+    private List<String> queryIds(String sql, Object value, List<String> itemIds) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            int index = 1;
+            if (value != null) {
+                ps.setObject(index++, value);
+            }
+            ps.setArray(index, con.createArrayOf("varchar", itemIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+    
+    /**
+     * Outcome of a bulk write: which of the requested items existed, and which were changed
+     */
+    public static class BulkWriteResult {
+        private final Set<String> existing;
+        private final Set<String> affected;
+        
+        public BulkWriteResult(Set<String> existing, Set<String> affected) {
+            this.existing = existing;
+            this.affected = affected;
+        }
+        
+        public Set<String> getExisting() { return existing; }
+        public Set<String> getAffected() { return affected; }
+    }
 }
\ No newline at end of file
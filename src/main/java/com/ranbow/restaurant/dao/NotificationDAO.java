@@ -1,6 +1,7 @@
 package com.ranbow.restaurant.dao;
 
 import com.ranbow.restaurant.models.Notification;
+import com.ranbow.restaurant.models.NotificationPage;
 import com.ranbow.restaurant.models.NotificationType;
 import com.ranbow.restaurant.models.NotificationPriority;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +14,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -52,6 +54,27 @@ public class NotificationDAO {
         ORDER BY priority DESC, sent_at DESC
         """;
 
+    // Keyset pagination on (priority, sent_at, notification_id), served by idx_notifications_recipient_page
+    private static final String SELECT_NOTIFICATION_PAGE = """
+        SELECT notification_id, recipient_staff_id, sender_staff_id, type, priority,
+               title, message, related_order_id, is_read, sent_at, read_at, expires_at, action_url
+        FROM notifications 
+        WHERE recipient_staff_id = ? AND (expires_at IS NULL OR expires_at > CURRENT_TIMESTAMP)
+        """;
+
+    private static final String PAGE_UNREAD_FILTER = """
+          AND is_read = false
+        """;
+
+    private static final String PAGE_CURSOR_FILTER = """
+          AND (priority, sent_at, notification_id) < (?::notification_priority, ?, ?)
+        """;
+
+    private static final String PAGE_ORDER_AND_LIMIT = """
+        ORDER BY priority DESC, sent_at DESC, notification_id DESC
+        LIMIT ?
+        """;
+
     private static final String SELECT_NOTIFICATIONS_BY_TYPE = """
         SELECT notification_id, recipient_staff_id, sender_staff_id, type, priority,
                title, message, related_order_id, is_read, sent_at, read_at, expires_at, action_url
@@ -87,6 +110,12 @@ public class NotificationDAO {
         WHERE notification_id = ?
         """;
 
+    private static final String UPDATE_COALESCED_NOTIFICATION = """
+        UPDATE notifications SET
+            title = ?, message = ?, priority = ?::notification_priority, expires_at = ?
+        WHERE notification_id = ? AND is_read = false
+        """;
+
     private static final String MARK_AS_READ = """
         UPDATE notifications SET is_read = true, read_at = ?
         WHERE notification_id = ?
@@ -111,6 +140,34 @@ public class NotificationDAO {
         DELETE FROM notifications WHERE is_read = true AND read_at < ?
         """;
 
+    // Retention purge: small keyset-ordered batches, skipping rows locked by other writers
+    private static final String PURGE_EXPIRED_BATCH = """
+        DELETE FROM notifications WHERE notification_id IN (
+            SELECT notification_id FROM notifications
+            WHERE expires_at < CURRENT_TIMESTAMP
+                  AND (expires_at, notification_id) > (?, ?)
+            ORDER BY expires_at, notification_id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING expires_at AS purge_key_time, notification_id
+        """;
+
+    private static final String PURGE_OLD_READ_BATCH = """
+        DELETE FROM notifications WHERE notification_id IN (
+            SELECT notification_id FROM notifications
+            WHERE is_read = true AND read_at < ?
+                  AND (read_at, notification_id) > (?, ?)
+            ORDER BY read_at, notification_id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING read_at AS purge_key_time, notification_id
+        """;
+
+    // Lower bound for the first keyset batch
+    private static final Timestamp PURGE_START = Timestamp.valueOf("1970-01-01 00:00:00");
+
     private final RowMapper<Notification> notificationRowMapper = new RowMapper<Notification>() {
         @Override
         public Notification mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -180,6 +237,32 @@ public class NotificationDAO {
         return jdbcTemplate.query(SELECT_UNREAD_NOTIFICATIONS_BY_STAFF, notificationRowMapper, staffId);
     }
 
+    /**
+     * Read one page of notifications for a staff member
+     * @param cursor Sort key of the last row of the previous page, or null for the first page
+     * @param limit Maximum rows to return
+     */
+    public List<Notification> findPageByStaffId(String staffId, boolean unreadOnly,
+                                                NotificationPage.Cursor cursor, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_NOTIFICATION_PAGE);
+        List<Object> params = new ArrayList<>();
+        params.add(staffId);
+
+        if (unreadOnly) {
+            sql.append(PAGE_UNREAD_FILTER);
+        }
+        if (cursor != null) {
+            sql.append(PAGE_CURSOR_FILTER);
+            params.add(cursor.getPriority().name());
+            params.add(Timestamp.valueOf(cursor.getSentAt()));
+            params.add(cursor.getNotificationId());
+        }
+        sql.append(PAGE_ORDER_AND_LIMIT);
+        params.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), notificationRowMapper, params.toArray());
+    }
+
     public List<Notification> findByStaffAndType(String staffId, NotificationType type) {
         return jdbcTemplate.query(SELECT_NOTIFICATIONS_BY_TYPE, 
                 notificationRowMapper, staffId, type.name());
@@ -216,6 +299,20 @@ public class NotificationDAO {
         return notification;
     }
 
+    /**
+     * Fold a repeated event into a pending notification; only unread rows are updated
+     * @return false if the notification was already read or removed
+     */
+    public boolean updateCoalesced(Notification notification) {
+        int updated = jdbcTemplate.update(UPDATE_COALESCED_NOTIFICATION,
+                notification.getTitle(),
+                notification.getMessage(),
+                notification.getPriority().name(),
+                notification.getExpiresAt() != null ? Timestamp.valueOf(notification.getExpiresAt()) : null,
+                notification.getNotificationId());
+        return updated > 0;
+    }
+
     public boolean markAsRead(String notificationId) {
         int updated = jdbcTemplate.update(MARK_AS_READ,
                 Timestamp.valueOf(LocalDateTime.now()),
@@ -242,6 +339,70 @@ public class NotificationDAO {
         return jdbcTemplate.update(DELETE_OLD_READ_NOTIFICATIONS, Timestamp.valueOf(cutoffDate));
     }
 
+    /**
+     * Delete one batch of expired notifications after the given keyset position
+     * @param after Position reached by the previous batch, or null to start from the oldest
+     */
+    public PurgeBatch purgeExpiredBatch(PurgeBatch after, int batchSize) {
+        List<PurgeBatch> deleted = jdbcTemplate.query(PURGE_EXPIRED_BATCH, purgeKeyRowMapper,
+                purgeKeyTime(after), purgeKeyId(after), batchSize);
+        return PurgeBatch.of(deleted);
+    }
+
+    /**
+     * Delete one batch of read notifications older than the cutoff after the given keyset position
+     * @param after Position reached by the previous batch, or null to start from the oldest
+     */
+    public PurgeBatch purgeOldReadBatch(LocalDateTime cutoffDate, PurgeBatch after, int batchSize) {
+        List<PurgeBatch> deleted = jdbcTemplate.query(PURGE_OLD_READ_BATCH, purgeKeyRowMapper,
+                Timestamp.valueOf(cutoffDate), purgeKeyTime(after), purgeKeyId(after), batchSize);
+        return PurgeBatch.of(deleted);
+    }
+
+    private final RowMapper<PurgeBatch> purgeKeyRowMapper = (rs, rowNum) ->
+            new PurgeBatch(1, rs.getTimestamp("purge_key_time"), rs.getString("notification_id"));
+
+    private Timestamp purgeKeyTime(PurgeBatch after) {
+        return after != null && after.getLastKeyTime() != null ? after.getLastKeyTime() : PURGE_START;
+    }
+
+    private String purgeKeyId(PurgeBatch after) {
+        return after != null && after.getLastKeyId() != null ? after.getLastKeyId() : "";
+    }
+
+    /**
+     * Result of a purge batch: rows deleted and the highest keyset position reached
+     */
+    public static class PurgeBatch {
+        private final int deletedCount;
+        private final Timestamp lastKeyTime;
+        private final String lastKeyId;
+
+        public PurgeBatch(int deletedCount, Timestamp lastKeyTime, String lastKeyId) {
+            this.deletedCount = deletedCount;
+            this.lastKeyTime = lastKeyTime;
+            this.lastKeyId = lastKeyId;
+        }
+
+        static PurgeBatch of(List<PurgeBatch> deletedKeys) {
+            PurgeBatch last = null;
+            for (PurgeBatch key : deletedKeys) {
+                // RETURNING order is not guaranteed, keep the maximum key
+                if (last == null || key.lastKeyTime.after(last.lastKeyTime)
+                        || (key.lastKeyTime.equals(last.lastKeyTime) && key.lastKeyId.compareTo(last.lastKeyId) > 0)) {
+                    last = key;
+                }
+            }
+            return last == null
+                    ? new PurgeBatch(0, null, null)
+                    : new PurgeBatch(deletedKeys.size(), last.lastKeyTime, last.lastKeyId);
+        }
+
+        public int getDeletedCount() { return deletedCount; }
+        public Timestamp getLastKeyTime() { return lastKeyTime; }
+        public String getLastKeyId() { return lastKeyId; }
+    }
+
     // Batch operations for better performance
     public void broadcastNotification(List<String> staffIds, NotificationType type, 
                                     String title, String message, NotificationPriority priority) {
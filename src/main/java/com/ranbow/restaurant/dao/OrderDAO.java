@@ -10,8 +10,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -41,6 +44,26 @@ public class OrderDAO {
         FROM orders WHERE order_id = ?
         """;
     
+    private static final String SELECT_ORDER_TRACKING = """
+        SELECT o.order_id, o.customer_id, o.status, o.table_number,
+               k.kitchen_status, k.estimated_completion_time
+        FROM orders o LEFT JOIN kitchen_orders k ON k.order_id = o.order_id
+        """;
+
+    private static final String SELECT_ORDER_TRACKING_BY_ID = SELECT_ORDER_TRACKING + """
+        WHERE o.order_id = ?
+        """;
+
+    private static final String SELECT_ACTIVE_ORDER_TRACKING_BY_CUSTOMER = SELECT_ORDER_TRACKING + """
+        WHERE o.customer_id = ? AND o.status NOT IN ('COMPLETED', 'CANCELLED')
+        ORDER BY o.order_time DESC
+        LIMIT 20
+        """;
+
+    private static final String SELECT_CUSTOMER_ID_BY_ORDER = """
+        SELECT customer_id FROM orders WHERE order_id = ?
+        """;
+    
     private static final String SELECT_ALL_ORDERS = """
         SELECT order_id, customer_id, status, subtotal, tax, total_amount, 
                special_instructions, table_number, order_time, completed_time 
@@ -176,6 +199,18 @@ public class OrderDAO {
         }
     };
     
+    private final RowMapper<Map<String, Object>> trackingRowMapper = (rs, rowNum) -> {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("orderId", rs.getString("order_id"));
+        row.put("customerId", rs.getString("customer_id"));
+        row.put("status", rs.getString("status"));
+        row.put("tableNumber", rs.getString("table_number"));
+        row.put("kitchenStatus", rs.getString("kitchen_status"));
+        Timestamp eta = rs.getTimestamp("estimated_completion_time");
+        row.put("estimatedCompletionTime", eta != null ? eta.toLocalDateTime() : null);
+        return row;
+    };
+    
     @Transactional
     public Order save(Order order) {
         // Save order
@@ -222,6 +257,23 @@ public class OrderDAO {
         }
     }
     
+    /**
+     * Lightweight order status row for tracking streams (single query, no items)
+     */
+    public Optional<Map<String, Object>> findTrackingSnapshot(String orderId) {
+        List<Map<String, Object>> rows = jdbcTemplate.query(SELECT_ORDER_TRACKING_BY_ID, trackingRowMapper, orderId);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    public List<Map<String, Object>> findActiveTrackingSnapshotsByCustomer(String customerId) {
+        return jdbcTemplate.query(SELECT_ACTIVE_ORDER_TRACKING_BY_CUSTOMER, trackingRowMapper, customerId);
+    }
+
+    public Optional<String> findCustomerIdByOrderId(String orderId) {
+        List<String> rows = jdbcTemplate.queryForList(SELECT_CUSTOMER_ID_BY_ORDER, String.class, orderId);
+        return rows.isEmpty() ? Optional.empty() : Optional.ofNullable(rows.get(0));
+    }
+    
     public List<Order> findAll() {
         List<Order> orders = jdbcTemplate.query(SELECT_ALL_ORDERS, orderRowMapper);
         // Load order items for each order
@@ -470,6 +522,23 @@ public class OrderDAO {
         return orders;
     }
     
+    /**
+     * Order lines of orders placed since the given time that reached CONFIRMED (or later)
+     * and were not cancelled; used to rebuild the in-memory popularity counters on startup
+     * @param since Earliest order time
+     * @return Rows with order_id, menu_item_id, quantity, item_total and order_time
+     */
+    public List<Map<String, Object>> findConfirmedOrderLinesSince(LocalDateTime since) {
+        String query = """
+            SELECT o.order_id, oi.menu_item_id, oi.quantity, oi.item_total, o.order_time
+            FROM order_items oi
+            JOIN orders o ON oi.order_id = o.order_id
+            WHERE o.order_time >= ?
+              AND o.status IN ('CONFIRMED', 'PREPARING', 'READY', 'DELIVERED', 'COMPLETED')
+            """;
+        return jdbcTemplate.queryForList(query, Timestamp.valueOf(since));
+    }
+    
     /**
      * Count orders by status for dashboard
      * @param status Order status
@@ -1,6 +1,7 @@
 package com.ranbow.restaurant.dao;
 
 import com.ranbow.restaurant.models.Staff;
+import com.ranbow.restaurant.models.UserRole;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -106,6 +107,37 @@ public class StaffDAO {
         WHERE staff_id = ?
         """;
 
+    // 登入驗證: 以員工編號或 email 一次取得員工、用戶角色、啟用狀態與密碼雜湊 (員工編號優先)
+    private static final String SELECT_STAFF_CREDENTIALS = """
+        SELECT * FROM (
+            SELECT 1 AS match_priority, s.staff_id, s.user_id, s.employee_id, s.department, s.position,
+                   s.is_on_duty, s.shift_start_time, s.shift_end_time, s.last_activity_time,
+                   s.daily_orders_processed, s.efficiency_rating, s.created_at, s.updated_at,
+                   u.role, u.is_active, u.password_hash
+            FROM staff s JOIN users u ON u.user_id = s.user_id
+            WHERE s.employee_id = ?
+            UNION ALL
+            SELECT 2 AS match_priority, s.staff_id, s.user_id, s.employee_id, s.department, s.position,
+                   s.is_on_duty, s.shift_start_time, s.shift_end_time, s.last_activity_time,
+                   s.daily_orders_processed, s.efficiency_rating, s.created_at, s.updated_at,
+                   u.role, u.is_active, u.password_hash
+            FROM users u JOIN staff s ON s.user_id = u.user_id
+            WHERE u.email = ?
+        ) candidates
+        ORDER BY match_priority
+        """;
+
+    // 登入成功: 同一語句更新員工活動時間與用戶最後登入時間
+    private static final String UPDATE_LOGIN_ACTIVITY = """
+        WITH touched AS (
+            UPDATE staff SET last_activity_time = ?, updated_at = ?
+            WHERE staff_id = ?
+            RETURNING user_id
+        )
+        UPDATE users SET last_login_at = ?
+        FROM touched WHERE users.user_id = touched.user_id
+        """;
+
     private static final String RESET_DAILY_COUNTERS = """
         UPDATE staff SET daily_orders_processed = 0, updated_at = ?
         """;
@@ -153,6 +185,12 @@ public class StaffDAO {
         }
     };
 
+    private final RowMapper<StaffCredentials> credentialsRowMapper = (rs, rowNum) -> new StaffCredentials(
+            staffRowMapper.mapRow(rs, rowNum),
+            UserRole.valueOf(rs.getString("role")),
+            rs.getBoolean("is_active"),
+            rs.getString("password_hash"));
+
     public Staff save(Staff staff) {
         jdbcTemplate.update(INSERT_STAFF,
                 staff.getStaffId(),
@@ -195,6 +233,15 @@ public class StaffDAO {
         }
     }
 
+    /**
+     * Login candidates for an identifier, employee ID match first, then email match
+     * @param identifier Employee ID or email
+     * @return Staff with role, active flag and password hash, in match order
+     */
+    public List<StaffCredentials> findCredentialsByIdentifier(String identifier) {
+        return jdbcTemplate.query(SELECT_STAFF_CREDENTIALS, credentialsRowMapper, identifier, identifier);
+    }
+
     public List<Staff> findAll() {
         return jdbcTemplate.query(SELECT_ALL_STAFF, staffRowMapper);
     }
@@ -254,6 +301,15 @@ public class StaffDAO {
         return updated > 0;
     }
 
+    /**
+     * Record a successful login: staff activity and user last login in one statement
+     */
+    public boolean recordLogin(String staffId, LocalDateTime loginTime) {
+        Timestamp timestamp = Timestamp.valueOf(loginTime);
+        int updated = jdbcTemplate.update(UPDATE_LOGIN_ACTIVITY, timestamp, timestamp, staffId, timestamp);
+        return updated > 0;
+    }
+
     public boolean incrementOrdersProcessed(String staffId) {
         LocalDateTime now = LocalDateTime.now();
         int updated = jdbcTemplate.update(UPDATE_ORDERS_PROCESSED,
@@ -280,4 +336,26 @@ public class StaffDAO {
     public boolean existsByEmployeeId(String employeeId) {
         return findByEmployeeId(employeeId).isPresent();
     }
-}
\ No newline at end of file
+
+    /**
+     * Staff row joined with the login-relevant user columns
+     */
+    public static class StaffCredentials {
+        private final Staff staff;
+        private final UserRole role;
+        private final boolean active;
+        private final String passwordHash;
+
+        public StaffCredentials(Staff staff, UserRole role, boolean active, String passwordHash) {
+            this.staff = staff;
+            this.role = role;
+            this.active = active;
+            this.passwordHash = passwordHash;
+        }
+
+        public Staff getStaff() { return staff; }
+        public UserRole getRole() { return role; }
+        public boolean isActive() { return active; }
+        public String getPasswordHash() { return passwordHash; }
+    }
+}
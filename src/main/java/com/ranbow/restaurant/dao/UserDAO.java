@@ -45,6 +45,11 @@ public class UserDAO {
         FROM users WHERE role = ?::user_role ORDER BY created_at DESC
         """;
     
+    private static final String SELECT_USERS_CREATED_SINCE = """
+        SELECT user_id, username, email, phone_number, role, created_at, last_login_at, is_active 
+        FROM users WHERE created_at >= ? ORDER BY created_at
+        """;
+    
     private static final String UPDATE_USER = """
         UPDATE users SET username = ?, email = ?, phone_number = ?, role = ?::user_role 
         WHERE user_id = ?
@@ -74,6 +79,11 @@ public class UserDAO {
         SELECT password_hash FROM users WHERE user_id = ? AND is_active = true
         """;
     
+    // 只在密碼雜湊未被其他請求變更時才更新
+    private static final String UPDATE_PASSWORD_HASH_IF_UNCHANGED = """
+        UPDATE users SET password_hash = ? WHERE user_id = ? AND password_hash = ?
+        """;
+    
     private final RowMapper<User> userRowMapper = new RowMapper<User>() {
         @Override
         public User mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -138,6 +148,10 @@ public class UserDAO {
         return jdbcTemplate.query(SELECT_USERS_BY_ROLE, userRowMapper, role.name());
     }
     
+    public List<User> findCreatedSince(LocalDateTime since) {
+        return jdbcTemplate.query(SELECT_USERS_CREATED_SINCE, userRowMapper, java.sql.Timestamp.valueOf(since));
+    }
+    
     public User update(User user) {
         int updated = jdbcTemplate.update(UPDATE_USER,
                 user.getUsername(),
@@ -204,4 +218,15 @@ public class UserDAO {
             return Optional.empty();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Replace a password hash, only if it still matches the expected old hash
+     * @param userId User ID
+     * @param newHash New password hash
+     * @param expectedHash Hash the row must still contain
+     * @return true if the hash was replaced
+     */
+    public boolean updatePasswordHashIfUnchanged(String userId, String newHash, String expectedHash) {
+        return jdbcTemplate.update(UPDATE_PASSWORD_HASH_IF_UNCHANGED, newHash, userId, expectedHash) > 0;
+    }
+}
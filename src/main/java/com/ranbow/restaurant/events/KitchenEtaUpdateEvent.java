@@ -0,0 +1,41 @@
+package com.ranbow.restaurant.events;
+
+import com.ranbow.restaurant.models.KitchenStatus;
+import org.springframework.context.ApplicationEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Event fired when the kitchen progress or estimated completion time of an order changes
+ */
+public class KitchenEtaUpdateEvent extends ApplicationEvent {
+    private final String orderId;
+    private final KitchenStatus kitchenStatus;
+    private final LocalDateTime estimatedCompletionTime;
+    private final int remainingMinutes;
+
+    public KitchenEtaUpdateEvent(Object source, String orderId, KitchenStatus kitchenStatus,
+                                 LocalDateTime estimatedCompletionTime, int remainingMinutes) {
+        super(source);
+        this.orderId = orderId;
+        this.kitchenStatus = kitchenStatus;
+        this.estimatedCompletionTime = estimatedCompletionTime;
+        this.remainingMinutes = remainingMinutes;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public KitchenStatus getKitchenStatus() {
+        return kitchenStatus;
+    }
+
+    public LocalDateTime getEstimatedCompletionTime() {
+        return estimatedCompletionTime;
+    }
+
+    public int getRemainingMinutes() {
+        return remainingMinutes;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ranbow.restaurant.events;
+
+import com.ranbow.restaurant.models.Notification;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event fired when a staff notification is stored
+ * Coalesced events update an existing notification instead of creating a new one
+ */
+public class NotificationCreatedEvent extends ApplicationEvent {
+    private final Notification notification;
+    private final boolean coalesced;
+    private final boolean escalated;
+
+    public NotificationCreatedEvent(Object source, Notification notification, boolean coalesced, boolean escalated) {
+        super(source);
+        this.notification = notification;
+        this.coalesced = coalesced;
+        this.escalated = escalated;
+    }
+
+    public Notification getNotification() {
+        return notification;
+    }
+
+    public boolean isCoalesced() {
+        return coalesced;
+    }
+
+    public boolean isEscalated() {
+        return escalated;
+    }
+}
@@ -1,5 +1,6 @@
 package com.ranbow.restaurant.listeners;
 
+import com.ranbow.restaurant.config.OrderStatusWebSocketHandler;
 import com.ranbow.restaurant.dao.KitchenOrderDAO;
 import com.ranbow.restaurant.events.OrderStatusChangeEvent;
 import com.ranbow.restaurant.models.KitchenOrder;
@@ -18,6 +19,9 @@ public class OrderStatusChangeListener {
     @Autowired
     private KitchenOrderDAO kitchenOrderDAO;
 
+    @Autowired
+    private OrderStatusWebSocketHandler orderStatusWebSocketHandler;
+
     @EventListener
     public void handleOrderStatusChange(OrderStatusChangeEvent event) {
         try {
@@ -25,6 +29,8 @@ public class OrderStatusChangeListener {
             if (event.getOldStatus() == OrderStatus.PENDING && event.getNewStatus() == OrderStatus.CONFIRMED) {
                 createKitchenOrder(event);
             }
+
+            pushStatusChange(event);
         } catch (Exception e) {
             System.err.println("Error handling order status change event for order " + event.getOrderId() + ": " + e.getMessage());
             e.printStackTrace();
@@ -51,6 +57,23 @@ public class OrderStatusChangeListener {
         }
     }
 
+    private void pushStatusChange(OrderStatusChangeEvent event) {
+        try {
+            String customerId = event.getOrder() != null ? event.getOrder().getCustomerId() : null;
+            String tableNumber = event.getOrder() != null ? event.getOrder().getTableNumber() : null;
+            orderStatusWebSocketHandler.broadcastOrderStatusChange(
+                event.getOrderId(),
+                customerId,
+                event.getOldStatus() != null ? event.getOldStatus().name() : "",
+                event.getNewStatus() != null ? event.getNewStatus().name() : "",
+                null,
+                tableNumber
+            );
+        } catch (Exception e) {
+            System.err.println("Failed to push status change for " + event.getOrderId() + ": " + e.getMessage());
+        }
+    }
+
     // Helper method to calculate estimated cooking time
     private int calculateEstimatedCookingTime(com.ranbow.restaurant.models.Order order) {
         // Simple calculation based on number of items
@@ -90,6 +90,8 @@ public class DashboardOverview {
         private int regular;
         private double growthRate;
         private int newCustomersToday;
+        private int activeUsersLastHour;
+        private int orderingCustomersToday;
         private double satisfactionRate;
         
         // Getters and setters
@@ -108,6 +110,12 @@ public class DashboardOverview {
         public int getNewCustomersToday() { return newCustomersToday; }
         public void setNewCustomersToday(int newCustomersToday) { this.newCustomersToday = newCustomersToday; }
         
+        public int getActiveUsersLastHour() { return activeUsersLastHour; }
+        public void setActiveUsersLastHour(int activeUsersLastHour) { this.activeUsersLastHour = activeUsersLastHour; }
+        
+        public int getOrderingCustomersToday() { return orderingCustomersToday; }
+        public void setOrderingCustomersToday(int orderingCustomersToday) { this.orderingCustomersToday = orderingCustomersToday; }
+        
         public double getSatisfactionRate() { return satisfactionRate; }
         public void setSatisfactionRate(double satisfactionRate) { this.satisfactionRate = satisfactionRate; }
     }
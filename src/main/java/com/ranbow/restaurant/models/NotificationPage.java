@@ -0,0 +1,95 @@
+package com.ranbow.restaurant.models;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of notifications, ordered by priority, sent time and ID (all descending)
+ * The cursor is an opaque token holding the sort key of the last row on the page.
+ */
+public class NotificationPage {
+    private List<Notification> notifications;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public NotificationPage() {}
+
+    public NotificationPage(List<Notification> notifications, String nextCursor, boolean hasMore) {
+        this.notifications = notifications;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Build the cursor pointing after the given notification
+     */
+    public static String encodeCursor(Notification last) {
+        String raw = last.getPriority().name() + "|" + last.getSentAt() + "|" + last.getNotificationId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse a cursor produced by {@link #encodeCursor(Notification)}
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid notification cursor");
+            }
+            return new Cursor(NotificationPriority.valueOf(parts[0]), LocalDateTime.parse(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid notification cursor", e);
+        }
+    }
+
+    /**
+     * Decoded sort key of the last row of the previous page
+     */
+    public static class Cursor {
+        private final NotificationPriority priority;
+        private final LocalDateTime sentAt;
+        private final String notificationId;
+
+        public Cursor(NotificationPriority priority, LocalDateTime sentAt, String notificationId) {
+            this.priority = priority;
+            this.sentAt = sentAt;
+            this.notificationId = notificationId;
+        }
+
+        public NotificationPriority getPriority() { return priority; }
+        public LocalDateTime getSentAt() { return sentAt; }
+        public String getNotificationId() { return notificationId; }
+    }
+
+    // Getters and Setters
+    public List<Notification> getNotifications() {
+        return notifications;
+    }
+
+    public void setNotifications(List<Notification> notifications) {
+        this.notifications = notifications;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
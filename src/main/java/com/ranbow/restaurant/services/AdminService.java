@@ -2,7 +2,6 @@ package com.ranbow.restaurant.services;
 
 import com.ranbow.restaurant.dao.UserDAO;
 import com.ranbow.restaurant.dao.OrderDAO;
-import com.ranbow.restaurant.dao.MenuDAO;
 import com.ranbow.restaurant.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -32,14 +31,20 @@ public class AdminService {
     @Autowired
     private OrderDAO orderDAO;
 
-    @Autowired
-    private MenuDAO menuDAO;
-
     @Autowired
     private JwtService jwtService;
 
     @Autowired
     private SessionService sessionService;
+    
+    @Autowired
+    private CardinalityService cardinalityService;
+    
+    @Autowired
+    private MenuCatalog menuCatalog;
+    
+    @Autowired
+    private PopularityTracker popularityTracker;
 
     // ==================== 審計日誌存儲 (整合自AuditService) ====================
     // 注意: 生產環境應替換為AuditDAO持久化存儲
@@ -126,8 +131,9 @@ public class AdminService {
     
     /**
      * Generate dashboard overview data
+     * @param popularWindow Window over which popular items are ranked
      */
-    public DashboardOverview getDashboardOverview() {
+    public DashboardOverview getDashboardOverview(PopularityTracker.Window popularWindow) {
         DashboardOverview overview = new DashboardOverview();
         
         // Revenue metrics
@@ -163,6 +169,8 @@ public class AdminService {
         customers.setRegular(customers.getActive() - customers.getVip());
         customers.setGrowthRate(calculateCustomerGrowthRate());
         customers.setNewCustomersToday(getNewCustomersToday());
+        customers.setActiveUsersLastHour((int) cardinalityService.countLastMinutes(CardinalityService.ACTIVE_USERS, 60));
+        customers.setOrderingCustomersToday((int) cardinalityService.countToday(CardinalityService.ORDERING_CUSTOMERS));
         customers.setSatisfactionRate(95.5); // Mock data
         overview.setCustomers(customers);
         
@@ -178,7 +186,7 @@ public class AdminService {
         overview.setStaff(staff);
         
         // Popular items
-        overview.setPopularItems(getPopularItems());
+        overview.setPopularItems(getPopularItems(popularWindow));
         
         // System alerts
         overview.setAlerts(getSystemAlerts());
@@ -248,7 +256,7 @@ public class AdminService {
      * Get menu management data with analytics
      */
     public Map<String, Object> getMenuManagementData(String category, String status, String search) {
-        List<MenuItem> allItems = menuDAO.findAll();
+        List<MenuItem> allItems = menuCatalog.current().getItems();
         
         // Apply filters
         if (category != null && !category.isEmpty() && !category.equals("all")) {
@@ -278,7 +286,7 @@ public class AdminService {
         
         // Menu statistics
         Map<String, Object> statistics = new HashMap<>();
-        List<MenuItem> allMenuItems = menuDAO.findAll();
+        List<MenuItem> allMenuItems = menuCatalog.current().getItems();
         statistics.put("total", allMenuItems.size());
         statistics.put("available", (int) allMenuItems.stream().filter(MenuItem::isAvailable).count());
         statistics.put("outOfStock", (int) allMenuItems.stream().filter(item -> !item.isAvailable()).count());
@@ -309,7 +317,7 @@ public class AdminService {
         }
         
         // Check for low stock items
-        List<MenuItem> lowStockItems = menuDAO.findAll().stream()
+        List<MenuItem> lowStockItems = menuCatalog.current().getItems().stream()
                 .filter(item -> !item.isAvailable())
                 .collect(Collectors.toList());
         
@@ -405,47 +413,28 @@ public class AdminService {
     }
     
     private int getNewCustomersToday() {
-        LocalDate today = LocalDate.now();
-        return (int) userDAO.findByRole(UserRole.CUSTOMER).stream()
-                .filter(user -> user.getCreatedAt() != null && user.getCreatedAt().toLocalDate().equals(today))
-                .count();
+        // HyperLogLog 近似值, 不需載入所有用戶
+        return (int) cardinalityService.countToday(CardinalityService.registrationsByRole(UserRole.CUSTOMER.name()));
     }
     
     private int getNewUsersThisWeek() {
-        LocalDate weekStart = LocalDate.now().minusDays(7);
-        return (int) userDAO.findAll().stream()
-                .filter(user -> user.getCreatedAt() != null && user.getCreatedAt().toLocalDate().isAfter(weekStart))
-                .count();
+        return (int) cardinalityService.countLastDays(CardinalityService.REGISTRATIONS, 7);
     }
     
-    private List<DashboardOverview.PopularItem> getPopularItems() {
-        // Mock popular items - should be calculated from actual order data
+    private List<DashboardOverview.PopularItem> getPopularItems(PopularityTracker.Window window) {
+        // 由記憶體中的滑動視窗銷售計數排名, 已刪除的品項不列入
+        MenuCatalog.Snapshot snapshot = menuCatalog.current();
         List<DashboardOverview.PopularItem> popularItems = new ArrayList<>();
-        
-        DashboardOverview.PopularItem item1 = new DashboardOverview.PopularItem();
-        item1.setItemId("item1");
-        item1.setName("招牌牛排");
-        item1.setSalesCount(28);
-        item1.setRevenue(10640.0);
-        item1.setCategory("主菜");
-        popularItems.add(item1);
-        
-        DashboardOverview.PopularItem item2 = new DashboardOverview.PopularItem();
-        item2.setItemId("item2");
-        item2.setName("彩虹沙拉");
-        item2.setSalesCount(22);
-        item2.setRevenue(4180.0);
-        item2.setCategory("前菜");
-        popularItems.add(item2);
-        
-        DashboardOverview.PopularItem item3 = new DashboardOverview.PopularItem();
-        item3.setItemId("item3");
-        item3.setName("巧克力蛋糕");
-        item3.setSalesCount(19);
-        item3.setRevenue(2660.0);
-        item3.setCategory("甜點");
-        popularItems.add(item3);
-        
+        for (PopularityTracker.ItemSales sales : popularityTracker.top(window, 5, id -> snapshot.findById(id).isPresent())) {
+            MenuItem menuItem = snapshot.findById(sales.getItemId()).orElseThrow();
+            DashboardOverview.PopularItem item = new DashboardOverview.PopularItem();
+            item.setItemId(menuItem.getItemId());
+            item.setName(menuItem.getName());
+            item.setSalesCount((int) sales.getQuantity());
+            item.setRevenue(sales.getRevenue());
+            item.setCategory(menuItem.getCategory() != null ? menuItem.getCategory().getDisplayName() : null);
+            popularItems.add(item);
+        }
         return popularItems;
     }
 
@@ -0,0 +1,248 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import com.ranbow.restaurant.dao.UserDAO;
+import com.ranbow.restaurant.models.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distinct-count metrics backed by Redis HyperLogLog sketches
+ * Each metric keeps per-minute, per-hour and per-day sketches; a range count merges
+ * the coarsest buckets that cover it with PFCOUNT, so memory and time stay constant
+ * (about 12 KB per sketch, ~0.8% standard error) however many IDs are recorded.
+ */
+@Service
+public class CardinalityService {
+
+    public static final String ACTIVE_USERS = "active-users";
+    public static final String ORDERING_CUSTOMERS = "ordering-customers";
+    public static final String REGISTRATIONS = "registrations";
+
+    private static final String KEY_PREFIX = "ranbow:hll:";
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // 各粒度的保留時間
+    private static final Duration MINUTE_RETENTION = Duration.ofHours(2);
+    private static final Duration HOUR_RETENTION = Duration.ofDays(8);
+    private static final Duration DAY_RETENTION = Duration.ofDays(400);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Value("${cardinality.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cardinality.backfill-days:8}")
+    private int backfillDays;
+
+    // 同一分鐘內已記錄的 metric|id, 避免熱路徑重複寫入 Redis
+    private final Set<String> recordedThisMinute = ConcurrentHashMap.newKeySet();
+    private volatile long currentMinute;
+
+    /**
+     * Record an ID for a metric at the current time
+     */
+    public void record(String metric, String id) {
+        if (!enabled || id == null) {
+            return;
+        }
+
+        long minute = System.currentTimeMillis() / 60000;
+        if (minute != currentMinute) {
+            recordedThisMinute.clear();
+            currentMinute = minute;
+        }
+        if (!recordedThisMinute.add(metric + "|" + id)) {
+            return;
+        }
+
+        record(metric, id, LocalDateTime.now());
+    }
+
+    /**
+     * Record an ID for a metric at the given time, in one pipelined round trip
+     */
+    public void record(String metric, String id, LocalDateTime time) {
+        // Redis 斷路器開啟時略過, 不拖慢請求
+        if (!enabled || id == null || time == null || circuitBreaker.isOpen()) {
+            return;
+        }
+
+        try {
+            LocalDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+            LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+
+            byte[] value = id.getBytes(StandardCharsets.UTF_8);
+            byte[] minuteKey = rawKey(minuteKey(metric, minute));
+            byte[] hourKey = rawKey(hourKey(metric, hour));
+            byte[] dayKey = rawKey(dayKey(metric, day));
+
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hyperLogLogCommands().pfAdd(minuteKey, value);
+                connection.keyCommands().pExpireAt(minuteKey, expireAt(minute.plusMinutes(1), MINUTE_RETENTION));
+                connection.hyperLogLogCommands().pfAdd(hourKey, value);
+                connection.keyCommands().pExpireAt(hourKey, expireAt(hour.plusHours(1), HOUR_RETENTION));
+                connection.hyperLogLogCommands().pfAdd(dayKey, value);
+                connection.keyCommands().pExpireAt(dayKey, expireAt(day.plusDays(1), DAY_RETENTION));
+                return null;
+            });
+        } catch (Exception e) {
+            // 統計失敗不影響業務流程
+            System.err.println("Error recording " + metric + " cardinality: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Approximate number of distinct IDs recorded in [from, to)
+     */
+    public long count(String metric, LocalDateTime from, LocalDateTime to) {
+        if (!enabled) {
+            return 0;
+        }
+
+        try {
+            List<String> keys = coveringKeys(metric, from, to, LocalDateTime.now());
+            if (keys.isEmpty()) {
+                return 0;
+            }
+            Long count = stringRedisTemplate.opsForHyperLogLog().size(keys.toArray(new String[0]));
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            System.err.println("Error counting " + metric + " cardinality: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public long countLastMinutes(String metric, int minutes) {
+        LocalDateTime now = LocalDateTime.now();
+        return count(metric, now.minusMinutes(minutes), now);
+    }
+
+    public long countToday(String metric) {
+        return count(metric, LocalDate.now().atStartOfDay(), LocalDateTime.now());
+    }
+
+    public long countLastDays(String metric, int days) {
+        LocalDateTime now = LocalDateTime.now();
+        return count(metric, now.minusDays(days), now);
+    }
+
+    /**
+     * Seed registration sketches from the users table, once per cluster
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRegistrations() {
+        if (!enabled || backfillDays <= 0) {
+            return;
+        }
+
+        try {
+            Boolean first = stringRedisTemplate.opsForValue()
+                .setIfAbsent(KEY_PREFIX + "backfill:" + REGISTRATIONS, "1", backfillDays, TimeUnit.DAYS);
+            if (!Boolean.TRUE.equals(first)) {
+                return;
+            }
+
+            List<User> users = userDAO.findCreatedSince(LocalDateTime.now().minusDays(backfillDays));
+            for (User user : users) {
+                recordRegistration(user);
+            }
+            System.out.println("Backfilled registration sketches with " + users.size() + " users");
+        } catch (Exception e) {
+            System.err.println("Error backfilling registration sketches: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Record a new user under the overall and per-role registration metrics
+     */
+    public void recordRegistration(User user) {
+        LocalDateTime createdAt = user.getCreatedAt() != null ? user.getCreatedAt() : LocalDateTime.now();
+        record(REGISTRATIONS, user.getUserId(), createdAt);
+        if (user.getRole() != null) {
+            record(registrationsByRole(user.getRole().name()), user.getUserId(), createdAt);
+        }
+    }
+
+    public static String registrationsByRole(String role) {
+        return REGISTRATIONS + ":" + role;
+    }
+
+    // Private helper methods
+
+    /**
+     * Day buckets where a whole day fits, then hours, then minutes
+     * Minute sketches only live for two hours, so older range starts are rounded to the hour.
+     */
+    List<String> coveringKeys(String metric, LocalDateTime from, LocalDateTime to, LocalDateTime now) {
+        List<String> keys = new ArrayList<>();
+        LocalDateTime minuteHorizon = now.minus(MINUTE_RETENTION);
+        LocalDateTime cursor = from.truncatedTo(ChronoUnit.MINUTES);
+        if (cursor.isBefore(minuteHorizon)) {
+            cursor = cursor.truncatedTo(ChronoUnit.HOURS);
+        }
+
+        while (cursor.isBefore(to)) {
+            if (cursor.equals(cursor.truncatedTo(ChronoUnit.DAYS)) && !cursor.plusDays(1).isAfter(to)) {
+                keys.add(dayKey(metric, cursor));
+                cursor = cursor.plusDays(1);
+            } else if (cursor.equals(cursor.truncatedTo(ChronoUnit.HOURS))
+                    && (!cursor.plusHours(1).isAfter(to) || cursor.isBefore(minuteHorizon))) {
+                keys.add(hourKey(metric, cursor));
+                cursor = cursor.plusHours(1);
+            } else {
+                keys.add(minuteKey(metric, cursor));
+                cursor = cursor.plusMinutes(1);
+            }
+        }
+        return keys;
+    }
+
+    private String minuteKey(String metric, LocalDateTime minute) {
+        return KEY_PREFIX + metric + ":m:" + minute.format(MINUTE_FORMAT);
+    }
+
+    private String hourKey(String metric, LocalDateTime hour) {
+        return KEY_PREFIX + metric + ":h:" + hour.format(HOUR_FORMAT);
+    }
+
+    private String dayKey(String metric, LocalDateTime day) {
+        return KEY_PREFIX + metric + ":d:" + day.format(DAY_FORMAT);
+    }
+
+    private byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long expireAt(LocalDateTime bucketEnd, Duration retention) {
+        return bucketEnd.plus(retention).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
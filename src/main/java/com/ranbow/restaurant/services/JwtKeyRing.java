@@ -0,0 +1,380 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared JWT signing key ring
+ * Keys come from configuration (jwt.secret plus jwt.previous-keys) and from the Redis hash
+ * ranbow:jwt:keys, so every node signs with the same key and can verify any token locally.
+ * There is no built-in secret: without jwt.secret the first node to start generates a
+ * random key into the Redis ring, and a configured secret shorter than 256 bits (or the
+ * old sample value) stops startup.
+ * A rotated key is distributed before it becomes active, and the previous key stays valid
+ * for verification until the tokens it signed have expired.
+ */
+@Service
+public class JwtKeyRing {
+
+    private static final String REDIS_KEYS = "ranbow:jwt:keys";
+    private static final String BOOTSTRAP_KEY_ID = "k0";
+    private static final int MIN_SECRET_BYTES = 32;
+
+    // 早期設定檔中的公開範例密鑰, 不可用於簽署
+    private static final String SAMPLE_SECRET = "ranbow-restaurant-jwt-secret-key-change-in-production";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${jwt.secret:}")
+    private String secret;
+
+    @Value("${jwt.key-id:k1}")
+    private String keyId;
+
+    // 僅供驗證的舊密鑰, 格式: kid:secret,kid:secret
+    @Value("${jwt.previous-keys:}")
+    private String previousKeys;
+
+    @Value("${jwt.key-ring.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    // 新密鑰寫入後延遲生效, 需大於刷新間隔, 確保所有節點先取得新密鑰
+    @Value("${jwt.key-ring.activation-delay-ms:120000}")
+    private long activationDelayMs;
+
+    // 舊密鑰在新密鑰生效後保留驗證的時間, 需大於Token有效期
+    @Value("${jwt.key-ring.retire-after-ms:90000000}")
+    private long retireAfterMs;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile Snapshot snapshot;
+
+    // 驗證密鑰集合變更時通知, 例如清除以退役密鑰驗證過的快取
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        validateSecret();
+        reload();
+        System.out.println("JWT key ring loaded, signing key: " + snapshot.getSigningKeyId()
+            + ", verification keys: " + snapshot.getVerificationKeys().keySet());
+    }
+
+    /**
+     * Reload the ring so rotations written by another node are picked up
+     */
+    @Scheduled(fixedDelayString = "${jwt.key-ring.refresh-ms:60000}",
+               initialDelayString = "${jwt.key-ring.refresh-ms:60000}")
+    public void reload() {
+        long now = System.currentTimeMillis();
+        List<KeyEntry> entries = new ArrayList<>(configuredKeys());
+
+        if (redisEnabled) {
+            try {
+                List<KeyEntry> stored = storedKeys();
+                if (entries.isEmpty() && stored.isEmpty()) {
+                    // 未設定 jwt.secret 且密鑰環為空: 產生隨機密鑰, 只有第一個節點寫入成功
+                    stringRedisTemplate.opsForHash().putIfAbsent(REDIS_KEYS, BOOTSTRAP_KEY_ID,
+                        storedKey(Base64.getEncoder().encodeToString(randomKeyBytes()), 0, 0));
+                    stored = storedKeys();
+                    System.out.println("Generated initial JWT signing key in the Redis key ring");
+                }
+                entries.addAll(stored);
+            } catch (Exception e) {
+                // Redis 無法連線時保留目前的密鑰環
+                System.err.println("Error loading JWT keys from Redis: " + e.getMessage());
+                if (snapshot != null) {
+                    return;
+                }
+            }
+        }
+
+        if (entries.isEmpty()) {
+            throw new IllegalStateException(
+                "No JWT signing key: set jwt.secret (at least 256 bits) or enable the Redis key ring");
+        }
+        Snapshot previous = snapshot;
+        snapshot = buildSnapshot(entries, now);
+        if (previous != null && !previous.getVerificationKeys().keySet().equals(snapshot.getVerificationKeys().keySet())) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Register a callback run after a reload changes the set of verification keys
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Whether a token signed with this kid can still be verified
+     * @param kid Key ID from the token header, or null for tokens without one
+     */
+    public boolean canVerify(String kid) {
+        return snapshot.getVerificationKeys().containsKey(kid != null ? kid : keyId);
+    }
+
+    /**
+     * Key ID and key used for signing new tokens
+     */
+    public String getSigningKeyId() {
+        return snapshot.getSigningKeyId();
+    }
+
+    public SecretKey getSigningKey() {
+        return snapshot.getSigningKey();
+    }
+
+    /**
+     * Resolves the verification key from the token's kid header, in memory
+     */
+    public LocatorAdapter<Key> getKeyLocator() {
+        return new LocatorAdapter<>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                Snapshot current = snapshot;
+                // 沒有 kid 的 Token 以設定檔中的主密鑰驗證
+                String kid = header.getKeyId() != null ? header.getKeyId() : keyId;
+                return current.getVerificationKeys().get(kid);
+            }
+        };
+    }
+
+    /**
+     * Add a new random key to the shared ring
+     * The key becomes the signing key after the activation delay; the current Redis
+     * signing key is retired once tokens signed with it can no longer be valid.
+     * @return Key ID of the new key
+     */
+    public String rotate() {
+        if (!redisEnabled) {
+            throw new IllegalStateException("JWT key rotation requires the Redis key ring");
+        }
+
+        long now = System.currentTimeMillis();
+        long activateAt = now + activationDelayMs;
+
+        byte[] keyBytes = randomKeyBytes();
+        String newKeyId = "k" + UUID.randomUUID().toString().substring(0, 8);
+
+        Map<String, String> updates = new HashMap<>();
+        updates.put(newKeyId, storedKey(Base64.getEncoder().encodeToString(keyBytes), activateAt, 0));
+
+        // 目前的 Redis 簽署密鑰在新密鑰生效後繼續用於驗證, 直到其Token全部過期
+        Snapshot current = snapshot;
+        Object currentValue = stringRedisTemplate.opsForHash().get(REDIS_KEYS, current.getSigningKeyId());
+        if (currentValue != null) {
+            KeyEntry currentEntry = parseStoredKey(current.getSigningKeyId(), (String) currentValue);
+            if (currentEntry != null) {
+                updates.put(currentEntry.kid, storedKey(currentEntry.encodedSecret, currentEntry.activateAt,
+                    activateAt + retireAfterMs));
+            }
+        }
+
+        // 清除已退役的密鑰
+        Map<Object, Object> stored = stringRedisTemplate.opsForHash().entries(REDIS_KEYS);
+        for (Map.Entry<Object, Object> storedEntry : stored.entrySet()) {
+            KeyEntry entry = parseStoredKey((String) storedEntry.getKey(), (String) storedEntry.getValue());
+            if (entry != null && entry.retireAt > 0 && entry.retireAt <= now) {
+                stringRedisTemplate.opsForHash().delete(REDIS_KEYS, entry.kid);
+            }
+        }
+
+        stringRedisTemplate.opsForHash().putAll(REDIS_KEYS, updates);
+        reload();
+        return newKeyId;
+    }
+
+    /**
+     * Key ring state without secrets
+     */
+    public Map<String, Object> describe() {
+        Snapshot current = snapshot;
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("signingKeyId", current.getSigningKeyId());
+        info.put("verificationKeyIds", new ArrayList<>(current.getVerificationKeys().keySet()));
+        info.put("pendingKeyIds", current.getPendingKeyIds());
+        info.put("redisEnabled", redisEnabled);
+        return info;
+    }
+
+    // Private helper methods
+
+    /**
+     * Refuse to start with a guessable configured secret
+     */
+    private void validateSecret() {
+        if (secret == null || secret.isBlank()) {
+            return;
+        }
+        if (SAMPLE_SECRET.equals(secret)) {
+            throw new IllegalStateException("jwt.secret is the public sample value; set JWT_SECRET to a random secret");
+        }
+        if (secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("jwt.secret must be at least 256 bits (" + MIN_SECRET_BYTES + " bytes)");
+        }
+    }
+
+    private List<KeyEntry> configuredKeys() {
+        List<KeyEntry> entries = new ArrayList<>();
+        if (secret != null && !secret.isBlank()) {
+            entries.add(new KeyEntry(keyId, toKey(secret.getBytes(StandardCharsets.UTF_8), keyId), null, 0, 0));
+        }
+
+        if (previousKeys != null && !previousKeys.isBlank()) {
+            for (String previous : previousKeys.split(",")) {
+                int separator = previous.indexOf(':');
+                if (separator <= 0) {
+                    continue;
+                }
+                String kid = previous.substring(0, separator).trim();
+                byte[] bytes = previous.substring(separator + 1).trim().getBytes(StandardCharsets.UTF_8);
+                // 舊密鑰只用於驗證, 不參與簽署
+                entries.add(new KeyEntry(kid, toKey(bytes, kid), null, Long.MAX_VALUE, 0));
+            }
+        }
+        return entries;
+    }
+
+    private List<KeyEntry> storedKeys() {
+        List<KeyEntry> entries = new ArrayList<>();
+        Map<Object, Object> stored = stringRedisTemplate.opsForHash().entries(REDIS_KEYS);
+        for (Map.Entry<Object, Object> storedEntry : stored.entrySet()) {
+            KeyEntry entry = parseStoredKey((String) storedEntry.getKey(), (String) storedEntry.getValue());
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private byte[] randomKeyBytes() {
+        byte[] keyBytes = new byte[MIN_SECRET_BYTES];
+        random.nextBytes(keyBytes);
+        return keyBytes;
+    }
+
+    private KeyEntry parseStoredKey(String kid, String value) {
+        try {
+            JsonNode node = objectMapper.readTree(value);
+            String encodedSecret = node.path("secret").asText();
+            SecretKey key = toKey(Base64.getDecoder().decode(encodedSecret), kid);
+            return new KeyEntry(kid, key, encodedSecret, node.path("activateAt").asLong(0), node.path("retireAt").asLong(0));
+        } catch (Exception e) {
+            System.err.println("Ignoring invalid JWT key " + kid + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String storedKey(String encodedSecret, long activateAt, long retireAt) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("secret", encodedSecret);
+        node.put("activateAt", activateAt);
+        node.put("retireAt", retireAt);
+        return node.toString();
+    }
+
+    private SecretKey toKey(byte[] bytes, String kid) {
+        try {
+            return Keys.hmacShaKeyFor(bytes);
+        } catch (Exception e) {
+            throw new IllegalStateException("JWT key " + kid + " must be at least 256 bits", e);
+        }
+    }
+
+    private Snapshot buildSnapshot(List<KeyEntry> entries, long now) {
+        Map<String, SecretKey> verificationKeys = new HashMap<>();
+        List<String> pendingKeyIds = new ArrayList<>();
+        KeyEntry signing = null;
+
+        for (KeyEntry entry : entries) {
+            if (entry.retireAt > 0 && entry.retireAt <= now) {
+                continue;
+            }
+            // 尚未生效的密鑰也先加入驗證, 其他節點可能已開始使用
+            verificationKeys.put(entry.kid, entry.key);
+            if (entry.activateAt > now) {
+                if (entry.activateAt != Long.MAX_VALUE) {
+                    pendingKeyIds.add(entry.kid);
+                }
+            } else if (signing == null || entry.activateAt > signing.activateAt) {
+                signing = entry;
+            }
+        }
+
+        if (signing == null) {
+            signing = entries.get(0);
+        }
+        return new Snapshot(signing.kid, signing.key, Map.copyOf(verificationKeys), List.copyOf(pendingKeyIds));
+    }
+
+    private static class KeyEntry {
+        private final String kid;
+        private final SecretKey key;
+        private final String encodedSecret;
+        private final long activateAt;
+        private final long retireAt;
+
+        KeyEntry(String kid, SecretKey key, String encodedSecret, long activateAt, long retireAt) {
+            this.kid = kid;
+            this.key = key;
+            this.encodedSecret = encodedSecret;
+            this.activateAt = activateAt;
+            this.retireAt = retireAt;
+        }
+    }
+
+    /**
+     * Immutable view of the ring, swapped atomically on reload
+     */
+    private static class Snapshot {
+        private final String signingKeyId;
+        private final SecretKey signingKey;
+        private final Map<String, SecretKey> verificationKeys;
+        private final List<String> pendingKeyIds;
+
+        Snapshot(String signingKeyId, SecretKey signingKey, Map<String, SecretKey> verificationKeys,
+                 List<String> pendingKeyIds) {
+            this.signingKeyId = signingKeyId;
+            this.signingKey = signingKey;
+            this.verificationKeys = verificationKeys;
+            this.pendingKeyIds = pendingKeyIds;
+        }
+
+        String getSigningKeyId() { return signingKeyId; }
+        SecretKey getSigningKey() { return signingKey; }
+        Map<String, SecretKey> getVerificationKeys() { return verificationKeys; }
+        List<String> getPendingKeyIds() { return pendingKeyIds; }
+    }
+}
@@ -1,26 +1,59 @@
 package com.ranbow.restaurant.services;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class JwtService {
 
-    // JWT密鑰 - 在生產環境中應該從配置文件或環境變量讀取
-    private final SecretKey secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    // 共用密鑰環 - 所有節點以相同密鑰簽署, 依 kid 驗證
+    @Autowired
+    private JwtKeyRing keyRing;
     
     // Token過期時間（小時）
     private final int tokenExpirationHours = 24;
 
+    // 串流Token用途 - 僅能開啟訂單追蹤 SSE, 不能當一般 Bearer Token 使用
+    public static final String STREAM_SCOPE = "order-stream";
+
+    // 串流Token過期時間（秒）- EventSource 無法帶 Authorization header, 改以短效Token放在查詢參數或Cookie
+    @Value("${jwt.stream-token.ttl-seconds:300}")
+    private int streamTokenTtlSeconds;
+
+    // 已驗證Token快取上限
+    @Value("${jwt.verified-cache.max-entries:10000}")
+    private int verifiedCacheMaxEntries;
+
+    // 已驗證Token快取: Token摘要 -> 解析結果, 保留至Token過期
+    private final Map<String, TokenInfo> verifiedTokens = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheEvictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 密鑰退役後, 以該密鑰驗證過的快取項目不可再放行
+        keyRing.addListener(this::evictRetiredKeys);
+    }
+
     /**
      * 生成JWT Token
      * @param userId 用戶ID
@@ -37,26 +70,134 @@ public class JwtService {
         Instant expiration = now.plus(tokenExpirationHours, ChronoUnit.HOURS);
         
         return Jwts.builder()
+                .header().keyId(keyRing.getSigningKeyId()).and()
                 .setClaims(claims)
                 .setSubject(userId)
                 .setIssuedAt(Date.from(now))
                 .setExpiration(Date.from(expiration))
-                .signWith(secretKey)
+                .signWith(keyRing.getSigningKey())
+                .compact();
+    }
+
+    /**
+     * 生成短效串流Token, 供 EventSource 開啟訂單追蹤串流
+     * @param userId 用戶ID
+     * @param sessionId Redis會話ID (會話撤銷後串流Token一併失效)
+     * @return JWT token字符串
+     */
+    public String generateStreamToken(String userId, String sessionId) {
+        Instant now = Instant.now();
+        return Jwts.builder()
+                .header().keyId(keyRing.getSigningKeyId()).and()
+                .claim("sessionId", sessionId)
+                .claim("scope", STREAM_SCOPE)
+                .setSubject(userId)
+                .setIssuedAt(Date.from(now))
+                .setExpiration(Date.from(now.plus(streamTokenTtlSeconds, ChronoUnit.SECONDS)))
+                .signWith(keyRing.getSigningKey())
                 .compact();
     }
 
+    /**
+     * 驗證串流Token
+     * @return TokenInfo，如果無效、過期或不是串流Token則返回null
+     */
+    public TokenInfo validateStreamToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        return parseToken(token, STREAM_SCOPE);
+    }
+
+    public int getStreamTokenTtlSeconds() {
+        return streamTokenTtlSeconds;
+    }
+
     /**
      * 驗證JWT Token並提取信息
      * @param token JWT token
      * @return 包含用戶信息的TokenInfo對象，如果無效則返回null
      */
     public TokenInfo validateToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        
+        // 先查已驗證快取, 避免每個請求都重新驗證簽名與解析claims
+        String digest = digest(token);
+        TokenInfo cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (cached.getExpiration().after(new Date())) {
+                cacheHits.incrementAndGet();
+                return cached;
+            }
+            verifiedTokens.remove(digest);
+            return null;
+        }
+        cacheMisses.incrementAndGet();
+        
+        TokenInfo tokenInfo = parseToken(token, null);
+        if (tokenInfo != null) {
+            cacheVerified(digest, tokenInfo);
+        }
+        return tokenInfo;
+    }
+
+    /**
+     * 刷新Token - 生成新的Token但保持相同的會話ID
+     * @param oldToken 舊Token
+     * @return 新Token，如果舊Token無效則返回null
+     */
+    public String refreshToken(String oldToken) {
+        TokenInfo tokenInfo = validateToken(oldToken);
+        if (tokenInfo == null) {
+            return null;
+        }
+        
+        return generateToken(tokenInfo.getUserId(), tokenInfo.getSessionId(), tokenInfo.getDeviceInfo());
+    }
+
+    /**
+     * 檢查Token是否即將過期（1小時內）
+     * @param token JWT token
+     * @return 如果即將過期返回true
+     */
+    public boolean isTokenExpiringSoon(String token) {
+        TokenInfo tokenInfo = validateToken(token);
+        return tokenInfo == null || tokenInfo.isExpiringSoon();
+    }
+
+    /**
+     * 已驗證Token快取統計
+     */
+    public Map<String, Object> getVerifiedCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", verifiedTokens.size());
+        stats.put("maxEntries", verifiedCacheMaxEntries);
+        stats.put("hits", cacheHits.get());
+        stats.put("misses", cacheMisses.get());
+        stats.put("evictions", cacheEvictions.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    /**
+     * 完整驗證簽名並解析claims
+     * @param scope 預期的Token用途, 一般Token為null
+     */
+    private TokenInfo parseToken(String token, String scope) {
         try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(secretKey)
+            Jws<Claims> jws = Jwts.parser()
+                    .keyLocator(keyRing.getKeyLocator())
                     .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+                    .parseClaimsJws(token);
+            Claims claims = jws.getBody();
+
+            // 用途不符: 串流Token不可當一般Token, 反之亦然
+            if (!Objects.equals(scope, claims.get("scope", String.class))) {
+                return null;
+            }
 
             String userId = claims.getSubject();
             String sessionId = claims.get("sessionId", String.class);
@@ -68,7 +209,7 @@ public class JwtService {
                 return null;
             }
 
-            return new TokenInfo(userId, sessionId, deviceInfo, expiration);
+            return new TokenInfo(userId, sessionId, deviceInfo, expiration, jws.getHeader().getKeyId());
             
         } catch (JwtException | IllegalArgumentException e) {
             // Token無效
@@ -77,34 +218,40 @@ public class JwtService {
     }
 
     /**
-     * 刷新Token - 生成新的Token但保持相同的會話ID
-     * @param oldToken 舊Token
-     * @return 新Token，如果舊Token無效則返回null
+     * 移除簽署密鑰已不在驗證密鑰環中的快取項目
      */
-    public String refreshToken(String oldToken) {
-        TokenInfo tokenInfo = validateToken(oldToken);
-        if (tokenInfo == null) {
-            return null;
+    void evictRetiredKeys() {
+        int before = verifiedTokens.size();
+        verifiedTokens.values().removeIf(cached -> !keyRing.canVerify(cached.getKeyId()));
+        int evicted = before - verifiedTokens.size();
+        if (evicted > 0) {
+            cacheEvictions.addAndGet(evicted);
+            System.out.println("Evicted " + evicted + " cached tokens signed with retired JWT keys");
         }
-        
-        return generateToken(tokenInfo.getUserId(), tokenInfo.getSessionId(), tokenInfo.getDeviceInfo());
+    }
+
+    private void cacheVerified(String digest, TokenInfo tokenInfo) {
+        if (verifiedTokens.size() >= verifiedCacheMaxEntries) {
+            Date now = new Date();
+            verifiedTokens.values().removeIf(cached -> !cached.getExpiration().after(now));
+            if (verifiedTokens.size() >= verifiedCacheMaxEntries) {
+                return;
+            }
+        }
+        verifiedTokens.put(digest, tokenInfo);
     }
 
     /**
-     * 檢查Token是否即將過期（1小時內）
-     * @param token JWT token
-     * @return 如果即將過期返回true
+     * 以Token的SHA-256摘要作為快取鍵, 記憶體中不保留原始Token
      */
-    public boolean isTokenExpiringSoon(String token) {
-        TokenInfo tokenInfo = validateToken(token);
-        if (tokenInfo == null) {
-            return true;
+    private String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        
-        Instant expiration = tokenInfo.getExpiration().toInstant();
-        Instant oneHourFromNow = Instant.now().plus(1, ChronoUnit.HOURS);
-        
-        return expiration.isBefore(oneHourFromNow);
     }
 
     /**
@@ -115,17 +262,32 @@ public class JwtService {
         private final String sessionId;
         private final String deviceInfo;
         private final Date expiration;
+        private final String keyId;
 
         public TokenInfo(String userId, String sessionId, String deviceInfo, Date expiration) {
+            this(userId, sessionId, deviceInfo, expiration, null);
+        }
+
+        public TokenInfo(String userId, String sessionId, String deviceInfo, Date expiration, String keyId) {
             this.userId = userId;
             this.sessionId = sessionId;
             this.deviceInfo = deviceInfo;
             this.expiration = expiration;
+            this.keyId = keyId;
         }
 
         public String getUserId() { return userId; }
         public String getSessionId() { return sessionId; }
         public String getDeviceInfo() { return deviceInfo; }
         public Date getExpiration() { return expiration; }
+        // 簽署密鑰 kid, 舊Token沒有 kid 時為 null
+        public String getKeyId() { return keyId; }
+
+        /**
+         * 是否即將過期（1小時內）
+         */
+        public boolean isExpiringSoon() {
+            return expiration.toInstant().isBefore(Instant.now().plus(1, ChronoUnit.HOURS));
+        }
     }
 }
\ No newline at end of file
@@ -2,8 +2,10 @@ package com.ranbow.restaurant.services;
 
 import com.ranbow.restaurant.dao.KitchenOrderDAO;
 import com.ranbow.restaurant.dao.OrderDAO;
+import com.ranbow.restaurant.events.KitchenEtaUpdateEvent;
 import com.ranbow.restaurant.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -28,6 +30,12 @@ public class KitchenService {
     
     @Autowired
     private NotificationService notificationService;
+    
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     /**
      * Get kitchen preparation queue
@@ -97,6 +105,7 @@ public class KitchenService {
                 
                 // Update main order status
                 orderDAO.updateStatus(orderId, OrderStatus.PREPARING);
+                publishEtaUpdate(kitchenOrder);
                 
                 // Record staff activity
                 staffService.updateStaffActivity(staffId);
@@ -109,6 +118,7 @@ public class KitchenService {
                 
                 // Update main order status
                 orderDAO.updateStatus(orderId, OrderStatus.PREPARING);
+                publishEtaUpdate(kitchenOrder);
                 
                 // Record staff activity
                 staffService.updateStaffActivity(staffId);
@@ -141,6 +151,7 @@ public class KitchenService {
             
             // Update main order status
             orderDAO.updateStatus(orderId, OrderStatus.READY);
+            publishEtaUpdate(kitchenOrder);
             
             // Record staff activity and order completion
             staffService.updateStaffActivity(staffId);
@@ -184,6 +195,7 @@ public class KitchenService {
             }
             
             kitchenOrderDAO.update(kitchenOrder);
+            publishEtaUpdate(kitchenOrder);
             return true;
         } catch (Exception e) {
             System.err.println("Error updating cooking timer: " + e.getMessage());
@@ -217,7 +229,7 @@ public class KitchenService {
             // Create notification for pause
             notificationService.broadcastToDepartment("廚房", NotificationType.ORDER_STATUS_CHANGE,
                 "訂單暫停", String.format("訂單 #%s 已暫停製作", orderId.substring(orderId.length() - 6)),
-                NotificationPriority.NORMAL);
+                NotificationPriority.NORMAL, orderId);
             
             return true;
         } catch (Exception e) {
@@ -269,7 +281,9 @@ public class KitchenService {
             kitchenOrderDAO.update(kitchenOrder);
             
             // Update main order status
+            OrderStatus previousStatus = orderDAO.findById(orderId).map(Order::getStatus).orElse(null);
             orderDAO.updateStatus(orderId, OrderStatus.CANCELLED);
+            stockService.cancel(orderId, previousStatus);
             
             // Create emergency notification for cancellation
             notificationService.createEmergencyNotification(orderId, "訂單已取消: " + reason);
@@ -302,7 +316,7 @@ public class KitchenService {
             if (priority >= 8) { // High priority
                 notificationService.broadcastToDepartment("廚房", NotificationType.EMERGENCY,
                     "高優先訂單", String.format("訂單 #%s 已設為高優先級", orderId.substring(orderId.length() - 6)),
-                    NotificationPriority.HIGH);
+                    NotificationPriority.HIGH, orderId);
             }
             
             return true;
@@ -375,6 +389,12 @@ public class KitchenService {
     }
 
     // Utility methods
+    private void publishEtaUpdate(KitchenOrder kitchenOrder) {
+        eventPublisher.publishEvent(new KitchenEtaUpdateEvent(this, kitchenOrder.getOrderId(),
+            kitchenOrder.getKitchenStatus(), kitchenOrder.getEstimatedCompletionTime(),
+            kitchenOrder.getRemainingMinutes()));
+    }
+
     private int calculateEstimatedCookingTime(Order order) {
         // Simple calculation based on number of items
         // In a real system, this would consider item complexity, current kitchen load, etc.
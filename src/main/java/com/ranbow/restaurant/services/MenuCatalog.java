@@ -0,0 +1,314 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import com.ranbow.restaurant.config.WebSocketEventRelay;
+import com.ranbow.restaurant.dao.MenuDAO;
+import com.ranbow.restaurant.models.MenuCategory;
+import com.ranbow.restaurant.models.MenuItem;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Versioned in-memory menu catalog
+ * The whole menu is loaded into an immutable {@link Snapshot} with id and category indexes
+ * and swapped atomically after every write. The version is a cluster-wide counter in Redis;
+ * a write bumps it and publishes it on the relay, and other nodes reload when they see a
+ * newer version (a periodic version check covers missed messages).
+ *
+ * When Redis is unavailable a write only bumps the version on this node. Such a local
+ * version may collide with one handed out by Redis later, so the node is marked unsynced
+ * and takes a fresh cluster version (above any version it has seen) as soon as Redis
+ * answers again: on breaker recovery, on the next version check or relayed event.
+ *
+ * Items in a snapshot are shared by all readers and must not be modified; write paths
+ * load their own copy through {@link MenuDAO}.
+ */
+@Component
+public class MenuCatalog {
+
+    private static final String VERSION_KEY = "ranbow:menu:version";
+
+    // KEYS: 版本鍵; ARGV: 本節點目前版本; 返回新版本
+    // 版本鍵遺失或落後 (例如 Redis 重啟) 時跳到本節點版本之後, 避免重發已使用過的版本
+    private static final RedisScript<Long> NEXT_VERSION_SCRIPT = new DefaultRedisScript<>("""
+        local version = redis.call('INCR', KEYS[1])
+        local known = tonumber(ARGV[1])
+        if version <= known then
+            version = known + 1
+            redis.call('SET', KEYS[1], version)
+        end
+        return version
+        """, Long.class);
+
+    @Autowired
+    private MenuDAO menuDAO;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    // 目前快照的版本由本節點自行遞增 (Redis 無法使用時), 尚未取得叢集版本
+    private volatile boolean unsynced;
+
+    // 快照替換後通知 (previous 首次載入時為 null)
+    private final List<BiConsumer<Snapshot, Snapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    // Metrics
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong remoteInvalidations = new AtomicLong();
+    private final AtomicLong localVersions = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        eventRelay.register(WebSocketEventRelay.MENU_CHANNEL, (routing, event) -> {
+            long version = event.path("version").asLong();
+            remoteInvalidations.incrementAndGet();
+            if (unsynced) {
+                // 本節點的本地版本可能與此版本相同, 改取新的叢集版本
+                resync();
+            } else if (version > versionOrZero()) {
+                reload(version);
+            }
+        });
+        circuitBreaker.onRecovery(this::checkVersion);
+    }
+
+    /**
+     * Load the catalog once the schema is in place (after the database initializer)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            current();
+        } catch (Exception e) {
+            System.err.println("Error loading menu catalog: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Current snapshot, loaded on first use
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            current = reload(sharedVersion());
+        }
+        return current;
+    }
+
+    /**
+     * Reload after a menu write on this node and tell the other nodes
+     */
+    public void invalidate() {
+        Long version = nextVersion();
+        if (version == null) {
+            // Redis 無法使用時只更新本節點, 恢復後再取叢集版本並通知其他節點
+            synchronized (this) {
+                unsynced = true;
+                localVersions.incrementAndGet();
+                reload(versionOrZero() + 1);
+            }
+            return;
+        }
+        publish(version);
+    }
+
+    /**
+     * Safety net for missed invalidation messages; also run when the Redis breaker closes
+     */
+    @Scheduled(fixedDelayString = "${menu.catalog.version-check-ms:30000}",
+               initialDelayString = "${menu.catalog.version-check-ms:30000}")
+    public void checkVersion() {
+        if (unsynced) {
+            resync();
+            return;
+        }
+        long version = sharedVersion();
+        if (version > versionOrZero()) {
+            reload(version);
+        }
+    }
+
+    /**
+     * Register a callback run after each snapshot swap, with the previous and new snapshot
+     */
+    public void addListener(BiConsumer<Snapshot, Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", current != null ? current.getVersion() : null);
+        stats.put("loadedAt", current != null ? current.getLoadedAt() : null);
+        stats.put("items", current != null ? current.getItems().size() : 0);
+        stats.put("reloads", reloads.get());
+        stats.put("remoteInvalidations", remoteInvalidations.get());
+        stats.put("unsynced", unsynced);
+        stats.put("localVersions", localVersions.get());
+        stats.put("resyncs", resyncs.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    /**
+     * Replace a locally bumped version with a fresh cluster version and tell the other nodes
+     */
+    private void resync() {
+        Long version = nextVersion();
+        if (version == null) {
+            return;
+        }
+        resyncs.incrementAndGet();
+        publish(version);
+    }
+
+    private void publish(long version) {
+        synchronized (this) {
+            // 叢集版本一定大於本節點已知版本 (見 NEXT_VERSION_SCRIPT), 重新載入後即已同步
+            if (reload(version).getVersion() == version) {
+                unsynced = false;
+            }
+        }
+
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("type", "menu_invalidated");
+        event.put("version", version);
+        eventRelay.publish(WebSocketEventRelay.MENU_CHANNEL, Collections.emptyMap(), event);
+    }
+
+    private synchronized Snapshot reload(long version) {
+        Snapshot current = snapshot.get();
+        // 已由其他執行緒載入相同或更新的版本
+        if (current != null && current.getVersion() >= version) {
+            return current;
+        }
+
+        Snapshot loaded = new Snapshot(version, menuDAO.findAll());
+        snapshot.set(loaded);
+        reloads.incrementAndGet();
+        for (BiConsumer<Snapshot, Snapshot> listener : listeners) {
+            try {
+                listener.accept(current, loaded);
+            } catch (Exception e) {
+                System.err.println("Error in menu catalog listener: " + e.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    private long versionOrZero() {
+        Snapshot current = snapshot.get();
+        return current != null ? current.getVersion() : 0;
+    }
+
+    private long sharedVersion() {
+        try {
+            String value = circuitBreaker.call(() -> stringRedisTemplate.opsForValue().get(VERSION_KEY));
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (Exception e) {
+            return versionOrZero();
+        }
+    }
+
+    /**
+     * Next cluster version, always above the version of the current snapshot
+     * @return null when Redis is unavailable
+     */
+    private Long nextVersion() {
+        try {
+            String known = String.valueOf(versionOrZero());
+            return circuitBreaker.call(() -> stringRedisTemplate.execute(NEXT_VERSION_SCRIPT, List.of(VERSION_KEY), known));
+        } catch (Exception e) {
+            System.err.println("Error incrementing menu catalog version: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Immutable view of the menu at one version
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final LocalDateTime loadedAt;
+        // 依 category, name 排序 (與 MenuDAO.findAll 相同)
+        private final List<MenuItem> items;
+        private final List<MenuItem> availableItems;
+        private final Map<String, MenuItem> itemsById;
+        private final Map<MenuCategory, List<MenuItem>> availableByCategory;
+
+        Snapshot(long version, List<MenuItem> items) {
+            this.version = version;
+            this.loadedAt = LocalDateTime.now();
+            this.items = List.copyOf(items);
+
+            List<MenuItem> available = new ArrayList<>();
+            Map<String, MenuItem> byId = new LinkedHashMap<>();
+            Map<MenuCategory, List<MenuItem>> byCategory = new EnumMap<>(MenuCategory.class);
+            for (MenuItem item : items) {
+                byId.put(item.getItemId(), item);
+                if (item.isAvailable()) {
+                    available.add(item);
+                    byCategory.computeIfAbsent(item.getCategory(), c -> new ArrayList<>()).add(item);
+                }
+            }
+            byCategory.replaceAll((category, categoryItems) -> List.copyOf(categoryItems));
+
+            this.availableItems = List.copyOf(available);
+            this.itemsById = Collections.unmodifiableMap(byId);
+            this.availableByCategory = Collections.unmodifiableMap(byCategory);
+        }
+
+        public long getVersion() { return version; }
+        public LocalDateTime getLoadedAt() { return loadedAt; }
+        public List<MenuItem> getItems() { return items; }
+        public List<MenuItem> getAvailableItems() { return availableItems; }
+        public Map<String, MenuItem> getItemsById() { return itemsById; }
+
+        public Optional<MenuItem> findById(String itemId) {
+            return itemId != null ? Optional.ofNullable(itemsById.get(itemId)) : Optional.empty();
+        }
+
+        /**
+         * Available items of a category, ordered by name
+         */
+        public List<MenuItem> getAvailableByCategory(MenuCategory category) {
+            return availableByCategory.getOrDefault(category, List.of());
+        }
+    }
+}
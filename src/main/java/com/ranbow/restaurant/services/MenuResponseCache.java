@@ -0,0 +1,260 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.ranbow.restaurant.config.WebSocketPayloadCodec;
+import com.ranbow.restaurant.models.MenuCategory;
+import com.ranbow.restaurant.models.MenuItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized menu responses
+ * Every menu view (all, available, each category, each item) is serialized to JSON, gzipped
+ * and encoded as CBOR once per catalog version, together with a strong ETag derived from the
+ * JSON. Requests are answered with the stored bytes, or with 304 when If-None-Match matches.
+ * Brotli is not offered: the JDK has no encoder and gzip already shrinks the menu several-fold.
+ */
+@Component
+public class MenuResponseCache {
+
+    public static final String VIEW_ALL = "all";
+    public static final String VIEW_AVAILABLE = "available";
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final CBORMapper cborMapper = WebSocketPayloadCodec.createCborMapper();
+
+    private final AtomicReference<Views> views = new AtomicReference<>();
+
+    // Metrics
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong gzipResponses = new AtomicLong();
+    private final AtomicLong identityResponses = new AtomicLong();
+    private final AtomicLong cborResponses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 菜單版本變更時立即重建, 請求路徑不做序列化
+        menuCatalog.addListener((previous, current) -> views.set(build(current)));
+    }
+
+    public static String categoryView(MenuCategory category) {
+        return "category:" + category.name();
+    }
+
+    public static String itemView(String itemId) {
+        return "item:" + itemId;
+    }
+
+    /**
+     * Respond with a prepared view, honouring If-None-Match, Accept (CBOR) and Accept-Encoding
+     * @return 200 with the stored body, 304, or 404 if the view does not exist
+     */
+    public ResponseEntity<byte[]> respond(String view, HttpServletRequest request) {
+        PreparedView prepared = current().get(view);
+        if (prepared == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // 與 WebConfig 的 CBOR 轉換器相同: 明確要求 application/cbor 時才回應 CBOR
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        boolean cbor = accept != null && accept.contains("application/cbor");
+        boolean gzip = !cbor && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = cbor ? prepared.getCborEtag() : gzip ? prepared.getGzipEtag() : prepared.getEtag();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl("no-cache");
+        headers.setVary(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+
+        // 同一內容的 JSON 與 gzip 版本互相驗證, 可回應 304
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag, prepared)) {
+            notModified.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        if (cbor) {
+            cborResponses.incrementAndGet();
+            headers.setContentType(MediaType.APPLICATION_CBOR);
+            headers.setContentLength(prepared.getCbor().length);
+            return ResponseEntity.ok().headers(headers).body(prepared.getCbor());
+        }
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            gzipResponses.incrementAndGet();
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            headers.setContentLength(prepared.getGzip().length);
+            return ResponseEntity.ok().headers(headers).body(prepared.getGzip());
+        }
+        identityResponses.incrementAndGet();
+        headers.setContentLength(prepared.getJson().length);
+        return ResponseEntity.ok().headers(headers).body(prepared.getJson());
+    }
+
+    public Map<String, Object> getStats() {
+        Views current = views.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", current != null ? current.version : null);
+        stats.put("views", current != null ? current.byName.size() : 0);
+        long jsonBytes = 0;
+        long gzipBytes = 0;
+        if (current != null) {
+            for (PreparedView prepared : current.byName.values()) {
+                jsonBytes += prepared.getJson().length;
+                gzipBytes += prepared.getGzip().length;
+            }
+        }
+        stats.put("jsonBytes", jsonBytes);
+        stats.put("gzipBytes", gzipBytes);
+        stats.put("notModified", notModified.get());
+        stats.put("gzipResponses", gzipResponses.get());
+        stats.put("identityResponses", identityResponses.get());
+        stats.put("cborResponses", cborResponses.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    private Views current() {
+        MenuCatalog.Snapshot snapshot = menuCatalog.current();
+        Views current = views.get();
+        if (current == null || current.version != snapshot.getVersion()) {
+            // 監聽器尚未執行 (首次請求) 時同步建立
+            current = build(snapshot);
+            views.set(current);
+        }
+        return current;
+    }
+
+    private Views build(MenuCatalog.Snapshot snapshot) {
+        Map<String, PreparedView> byName = new HashMap<>();
+        byName.put(VIEW_ALL, prepare(snapshot.getItems()));
+        byName.put(VIEW_AVAILABLE, prepare(snapshot.getAvailableItems()));
+        for (MenuCategory category : MenuCategory.values()) {
+            byName.put(categoryView(category), prepare(snapshot.getAvailableByCategory(category)));
+        }
+        for (MenuItem item : snapshot.getItems()) {
+            byName.put(itemView(item.getItemId()), prepare(item));
+        }
+        return new Views(snapshot.getVersion(), Map.copyOf(byName));
+    }
+
+    private PreparedView prepare(Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            }
+
+            // 由內容計算, 各節點對相同菜單產生相同的 ETag
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            String tag = HexFormat.of().formatHex(digest, 0, 16);
+            return new PreparedView(json, compressed.toByteArray(), cborMapper.writeValueAsBytes(body),
+                "\"" + tag + "\"", "\"" + tag + "-gz\"", "\"" + tag + "-cbor\"");
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to prepare menu response", e);
+        }
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match; the JSON and gzip variants carry the
+     * same content, so either tag validates the other
+     */
+    private boolean matches(String ifNoneMatch, String etag, PreparedView prepared) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        boolean json = !etag.equals(prepared.getCborEtag());
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)
+                    || (json && (tag.equals(prepared.getEtag()) || tag.equals(prepared.getGzipEtag())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Views {
+        private final long version;
+        private final Map<String, PreparedView> byName;
+
+        Views(long version, Map<String, PreparedView> byName) {
+            this.version = version;
+            this.byName = byName;
+        }
+
+        PreparedView get(String view) {
+            return byName.get(view);
+        }
+    }
+
+    /**
+     * Serialized body of one view: JSON, gzipped JSON and CBOR
+     */
+    private static class PreparedView {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final byte[] cbor;
+        private final String etag;
+        private final String gzipEtag;
+        private final String cborEtag;
+
+        PreparedView(byte[] json, byte[] gzip, byte[] cbor, String etag, String gzipEtag, String cborEtag) {
+            this.json = json;
+            this.gzip = gzip;
+            this.cbor = cbor;
+            this.etag = etag;
+            this.gzipEtag = gzipEtag;
+            this.cborEtag = cborEtag;
+        }
+
+        byte[] getJson() { return json; }
+        byte[] getGzip() { return gzip; }
+        byte[] getCbor() { return cbor; }
+        String getEtag() { return etag; }
+        String getGzipEtag() { return gzipEtag; }
+        String getCborEtag() { return cborEtag; }
+    }
+}
@@ -0,0 +1,410 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.models.MenuItem;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory inverted index for menu search
+ * Names and descriptions of available items are tokenized into CJK unigrams and bigrams
+ * (Chinese has no spaces, so every adjacent pair is a term) and lowercase words for other
+ * scripts. A query matches items containing all of its terms; the last word of a query is
+ * also matched as a prefix, so results follow the search box as the user types. Results
+ * are ranked by IDF-weighted term hits, name hits counting more than description hits.
+ *
+ * The index is immutable and swapped atomically. On a catalog change only the items that
+ * were added, removed or edited are re-tokenized, and only their terms' postings rebuilt.
+ */
+@Component
+public class MenuSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    private final AtomicReference<Index> index = new AtomicReference<>();
+
+    // Metrics
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong fullBuilds = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        menuCatalog.addListener((previous, current) -> update(current));
+    }
+
+    /**
+     * Available items matching the query, best match first
+     */
+    public List<MenuItem> search(String query) {
+        queries.incrementAndGet();
+        Index current = current();
+
+        String normalized = normalize(query);
+        List<QueryTerm> terms = queryTerms(normalized);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<Map<String, Float>> termPostings = new ArrayList<>(terms.size());
+        for (QueryTerm term : terms) {
+            Map<String, Float> postings = term.prefix ? current.prefixPostings(term.text) : current.postings(term.text);
+            if (postings.isEmpty()) {
+                return List.of();
+            }
+            termPostings.add(postings);
+        }
+
+        // 所有詞皆須命中 (AND), 從最少文件的詞開始交集
+        termPostings.sort(Comparator.comparingInt(Map::size));
+        Map<String, Float> scores = null;
+        for (Map<String, Float> postings : termPostings) {
+            float idf = (float) Math.log(1.0 + (double) current.documents.size() / postings.size());
+            if (scores == null) {
+                scores = new HashMap<>();
+                for (Map.Entry<String, Float> posting : postings.entrySet()) {
+                    scores.put(posting.getKey(), posting.getValue() * idf);
+                }
+            } else {
+                Map<String, Float> next = new HashMap<>();
+                for (Map.Entry<String, Float> scored : scores.entrySet()) {
+                    Float weight = postings.get(scored.getKey());
+                    if (weight != null) {
+                        next.put(scored.getKey(), scored.getValue() + weight * idf);
+                    }
+                }
+                scores = next;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Map.Entry<String, Float>> ranked = new ArrayList<>(scores.entrySet());
+        for (Map.Entry<String, Float> entry : ranked) {
+            entry.setValue(entry.getValue() + nameBonus(current.documents.get(entry.getKey()), normalized));
+        }
+        ranked.sort(Map.Entry.<String, Float>comparingByValue().reversed()
+            .thenComparing(entry -> current.documents.get(entry.getKey()).item.getName()));
+
+        List<MenuItem> results = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, Float> entry : ranked) {
+            results.add(current.documents.get(entry.getKey()).item);
+        }
+        return results;
+    }
+
+    public Map<String, Object> getStats() {
+        Index current = index.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", current != null ? current.version : null);
+        stats.put("documents", current != null ? current.documents.size() : 0);
+        stats.put("terms", current != null ? current.postings.size() : 0);
+        stats.put("queries", queries.get());
+        stats.put("fullBuilds", fullBuilds.get());
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    private Index current() {
+        MenuCatalog.Snapshot snapshot = menuCatalog.current();
+        Index current = index.get();
+        if (current == null || current.version != snapshot.getVersion()) {
+            current = update(snapshot);
+        }
+        return current;
+    }
+
+    private synchronized Index update(MenuCatalog.Snapshot snapshot) {
+        Index previous = index.get();
+        if (previous != null && previous.version == snapshot.getVersion()) {
+            return previous;
+        }
+
+        Map<String, Document> documents = new HashMap<>();
+        for (MenuItem item : snapshot.getAvailableItems()) {
+            Document existing = previous != null ? previous.documents.get(item.getItemId()) : null;
+            // 內容未變的項目沿用已切好的詞, 僅替換為新快照中的實例
+            documents.put(item.getItemId(), existing != null && existing.sameText(item)
+                ? new Document(item, existing.terms) : new Document(item, tokenize(item)));
+        }
+
+        Index updated;
+        if (previous == null) {
+            updated = new Index(snapshot.getVersion(), documents, buildPostings(documents.values()));
+            fullBuilds.incrementAndGet();
+        } else {
+            updated = new Index(snapshot.getVersion(), documents, updatePostings(previous, documents));
+            incrementalUpdates.incrementAndGet();
+        }
+        index.set(updated);
+        return updated;
+    }
+
+    private TreeMap<String, Map<String, Float>> buildPostings(Iterable<Document> documents) {
+        Map<String, Map<String, Float>> postings = new HashMap<>();
+        for (Document document : documents) {
+            for (Map.Entry<String, Float> term : document.terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new HashMap<>()).put(document.item.getItemId(), term.getValue());
+            }
+        }
+        TreeMap<String, Map<String, Float>> sorted = new TreeMap<>();
+        postings.forEach((term, docs) -> sorted.put(term, Collections.unmodifiableMap(docs)));
+        return sorted;
+    }
+
+    /**
+     * Copy the term dictionary and rebuild postings only for terms of changed items
+     */
+    private TreeMap<String, Map<String, Float>> updatePostings(Index previous, Map<String, Document> documents) {
+        Set<String> changedIds = new HashSet<>();
+        Set<String> affectedTerms = new HashSet<>();
+        for (Document before : previous.documents.values()) {
+            Document after = documents.get(before.item.getItemId());
+            if (after == null || after.terms != before.terms) {
+                changedIds.add(before.item.getItemId());
+                affectedTerms.addAll(before.terms.keySet());
+            }
+        }
+        for (Document after : documents.values()) {
+            Document before = previous.documents.get(after.item.getItemId());
+            if (before == null || after.terms != before.terms) {
+                changedIds.add(after.item.getItemId());
+                affectedTerms.addAll(after.terms.keySet());
+            }
+        }
+
+        TreeMap<String, Map<String, Float>> postings = new TreeMap<>(previous.postings);
+        for (String term : affectedTerms) {
+            Map<String, Float> docs = new HashMap<>(postings.getOrDefault(term, Map.of()));
+            docs.keySet().removeAll(changedIds);
+            for (String itemId : changedIds) {
+                Document document = documents.get(itemId);
+                Float weight = document != null ? document.terms.get(term) : null;
+                if (weight != null) {
+                    docs.put(itemId, weight);
+                }
+            }
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            } else {
+                postings.put(term, Collections.unmodifiableMap(docs));
+            }
+        }
+        return postings;
+    }
+
+    private Map<String, Float> tokenize(MenuItem item) {
+        Map<String, Float> terms = new HashMap<>();
+        for (String term : terms(normalize(item.getName()))) {
+            terms.merge(term, NAME_WEIGHT, Float::sum);
+        }
+        for (String term : terms(normalize(item.getDescription()))) {
+            terms.merge(term, DESCRIPTION_WEIGHT, Float::sum);
+        }
+        return Collections.unmodifiableMap(terms);
+    }
+
+    /**
+     * Index terms: CJK unigrams and bigrams, words for other scripts
+     */
+    private Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        for (Run run : runs(text)) {
+            if (run.cjk) {
+                int[] codePoints = run.text.codePoints().toArray();
+                for (int i = 0; i < codePoints.length; i++) {
+                    terms.add(new String(codePoints, i, 1));
+                    if (i + 1 < codePoints.length) {
+                        terms.add(new String(codePoints, i, 2));
+                    }
+                }
+            } else {
+                terms.add(run.text);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Query terms: bigrams of each CJK run (a single character stays a unigram), words
+     * for other scripts, with the last word matched as a prefix
+     */
+    private List<QueryTerm> queryTerms(String query) {
+        Map<String, QueryTerm> terms = new LinkedHashMap<>();
+        List<Run> runs = runs(query);
+        for (int r = 0; r < runs.size(); r++) {
+            Run run = runs.get(r);
+            if (run.cjk) {
+                int[] codePoints = run.text.codePoints().toArray();
+                if (codePoints.length == 1) {
+                    terms.putIfAbsent(run.text, new QueryTerm(run.text, false));
+                }
+                for (int i = 0; i + 1 < codePoints.length; i++) {
+                    String bigram = new String(codePoints, i, 2);
+                    terms.putIfAbsent(bigram, new QueryTerm(bigram, false));
+                }
+            } else {
+                boolean last = r == runs.size() - 1;
+                terms.put(run.text, new QueryTerm(run.text, last));
+            }
+        }
+        return new ArrayList<>(terms.values());
+    }
+
+    /**
+     * Split normalized text into CJK runs and word runs; everything else separates
+     */
+    private List<Run> runs(String text) {
+        List<Run> runs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            boolean cjk = isCjk(codePoint);
+            boolean word = !cjk && Character.isLetterOrDigit(codePoint);
+            if ((!cjk && !word) || (current.length() > 0 && cjk != currentCjk)) {
+                if (current.length() > 0) {
+                    runs.add(new Run(current.toString(), currentCjk));
+                    current.setLength(0);
+                }
+            }
+            if (cjk || word) {
+                current.appendCodePoint(codePoint);
+                currentCjk = cjk;
+            }
+        }
+        if (current.length() > 0) {
+            runs.add(new Run(current.toString(), currentCjk));
+        }
+        return runs;
+    }
+
+    private boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * Full-width to half-width (NFKC) and lowercase
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+    }
+
+    private float nameBonus(Document document, String query) {
+        String name = document.normalizedName;
+        if (name.equals(query)) {
+            return 100f;
+        }
+        if (name.startsWith(query)) {
+            return 50f;
+        }
+        return name.contains(query) ? 20f : 0f;
+    }
+
+    private static class Run {
+        private final String text;
+        private final boolean cjk;
+
+        Run(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+
+    private static class QueryTerm {
+        private final String text;
+        private final boolean prefix;
+
+        QueryTerm(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Indexed item and its term weights
+     */
+    private static class Document {
+        private final MenuItem item;
+        private final String normalizedName;
+        private final Map<String, Float> terms;
+
+        Document(MenuItem item, Map<String, Float> terms) {
+            this.item = item;
+            this.normalizedName = normalize(item.getName());
+            this.terms = terms;
+        }
+
+        boolean sameText(MenuItem other) {
+            return Objects.equals(item.getName(), other.getName())
+                && Objects.equals(item.getDescription(), other.getDescription());
+        }
+    }
+
+    /**
+     * Immutable index for one catalog version
+     */
+    private static class Index {
+        private final long version;
+        private final Map<String, Document> documents;
+        // term -> (itemId -> weight), sorted for prefix lookups
+        private final TreeMap<String, Map<String, Float>> postings;
+
+        Index(long version, Map<String, Document> documents, TreeMap<String, Map<String, Float>> postings) {
+            this.version = version;
+            this.documents = documents;
+            this.postings = postings;
+        }
+
+        Map<String, Float> postings(String term) {
+            return postings.getOrDefault(term, Map.of());
+        }
+
+        /**
+         * Union of postings for all terms starting with the prefix, keeping the best weight
+         */
+        Map<String, Float> prefixPostings(String prefix) {
+            Map<String, Map<String, Float>> matching = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            if (matching.size() == 1) {
+                return matching.values().iterator().next();
+            }
+            Map<String, Float> merged = new HashMap<>();
+            for (Map<String, Float> docs : matching.values()) {
+                docs.forEach((itemId, weight) -> merged.merge(itemId, weight, Math::max));
+            }
+            return merged;
+        }
+    }
+}
@@ -5,13 +5,17 @@ import com.ranbow.restaurant.models.MenuCategory;
 import com.ranbow.restaurant.models.MenuItem;
 import com.ranbow.restaurant.api.AdminController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.stream.Collectors;
 
 @Service
 public class MenuService {
@@ -19,6 +23,22 @@ public class MenuService {
     @Autowired
     private MenuDAO menuDAO;
     
+    // 讀取皆由記憶體中的菜單快照提供; 寫入資料庫後重新載入
+    @Autowired
+    private MenuCatalog menuCatalog;
+    
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+    
+    @Autowired
+    private PopularityTracker popularityTracker;
+    
+    @Value("${menu.popularity.default-window:today}")
+    private String defaultPopularityWindow;
+    
+    @Value("${menu.popularity.top-k:5}")
+    private int popularityTopK;
+    
     public MenuItem addMenuItem(String name, String description, BigDecimal price, MenuCategory category) {
         MenuItem newItem = new MenuItem(name, description, price, category);
         // Set preparation times based on category
@@ -29,56 +49,109 @@ public class MenuService {
             case DESSERT -> newItem.setPreparationTime(8);
             default -> newItem.setPreparationTime(15);
         }
-        return menuDAO.save(newItem);
+        MenuItem saved = menuDAO.save(newItem);
+        menuCatalog.invalidate();
+        return saved;
     }
     
+    /**
+     * 菜單項目 (共用快照中的實例, 請勿修改)
+     */
     public Optional<MenuItem> findMenuItemById(String itemId) {
-        return menuDAO.findById(itemId);
+        return menuCatalog.current().findById(itemId);
     }
     
     public List<MenuItem> getAllMenuItems() {
-        return menuDAO.findAll();
+        return menuCatalog.current().getItems();
     }
     
     public List<MenuItem> getAvailableMenuItems() {
-        return menuDAO.findAvailable();
+        return menuCatalog.current().getAvailableItems();
     }
     
     public List<MenuItem> getMenuItemsByCategory(MenuCategory category) {
-        return menuDAO.findByCategory(category);
+        return menuCatalog.current().getAvailableByCategory(category);
     }
     
+    /**
+     * 搜尋可供應的菜單項目 (記憶體倒排索引, 依相關度排序)
+     */
     public List<MenuItem> searchMenuItems(String keyword) {
-        return menuDAO.searchByKeyword(keyword);
+        return menuSearchIndex.search(keyword);
     }
     
     public MenuItem updateMenuItem(String itemId, MenuItem updatedItem) {
         Optional<MenuItem> existingItem = menuDAO.findById(itemId);
         if (existingItem.isPresent()) {
             updatedItem.setItemId(itemId);
-            return menuDAO.update(updatedItem);
+            MenuItem saved = menuDAO.update(updatedItem);
+            menuCatalog.invalidate();
+            return saved;
         }
         throw new IllegalArgumentException("找不到菜單項目，ID: " + itemId);
     }
     
     public boolean setMenuItemAvailability(String itemId, boolean isAvailable) {
-        return menuDAO.updateAvailability(itemId, isAvailable);
+        boolean updated = menuDAO.updateAvailability(itemId, isAvailable);
+        if (updated) {
+            menuCatalog.invalidate();
+        }
+        return updated;
     }
     
     public boolean removeMenuItem(String itemId) {
-        return menuDAO.delete(itemId);
+        boolean deleted = menuDAO.delete(itemId);
+        if (deleted) {
+            menuCatalog.invalidate();
+        }
+        return deleted;
     }
     
     public List<MenuItem> getPopularItems() {
-        return menuDAO.findPopularItems();
+        return getPopularItems(null, null);
+    }
+    
+    /**
+     * @param window Window key (hour, today, 7d), or null for the configured default
+     * @param limit Number of items, or null for the configured top-k
+     * @throws IllegalArgumentException if the window is unknown
+     */
+    public List<MenuItem> getPopularItems(String window, Integer limit) {
+        PopularityTracker.Window popularityWindow = PopularityTracker.Window.fromKey(
+                window != null ? window : defaultPopularityWindow);
+        return getPopularItems(popularityWindow, limit != null ? limit : popularityTopK);
+    }
+    
+    /**
+     * Best-selling available items of a window, from the in-memory sales counters.
+     * Slots without sales are filled with available mains and appetizers by name
+     * (the previous static rule), so a new or quiet restaurant still gets a list.
+     */
+    public List<MenuItem> getPopularItems(PopularityTracker.Window window, int limit) {
+        MenuCatalog.Snapshot snapshot = menuCatalog.current();
+        List<MenuItem> popular = new ArrayList<>();
+        for (PopularityTracker.ItemSales sales : popularityTracker.top(window, limit,
+                id -> snapshot.findById(id).map(MenuItem::isAvailable).orElse(false))) {
+            snapshot.findById(sales.getItemId()).ifPresent(popular::add);
+        }
+        
+        if (popular.size() < limit) {
+            snapshot.getAvailableItems().stream()
+                    .filter(item -> item.getCategory() == MenuCategory.MAIN_COURSE || item.getCategory() == MenuCategory.APPETIZER)
+                    .filter(item -> !popular.contains(item))
+                    .sorted(Comparator.comparing(MenuItem::getName))
+                    .limit(limit - popular.size())
+                    .forEach(popular::add);
+        }
+        return popular;
     }
     
     public int getTotalMenuItems() {
-        return menuDAO.countTotal();
+        return menuCatalog.current().getItems().size();
     }
     
     public int getAvailableItemsCount() {
-        return menuDAO.countAvailable();
+        return menuCatalog.current().getAvailableItems().size();
     }
     
     // ============ ADMIN-SPECIFIC METHODS ============
@@ -102,7 +175,9 @@ public class MenuService {
             newItem.setImageUrl(imageUrl);
         }
         
-        return menuDAO.save(newItem);
+        MenuItem saved = menuDAO.save(newItem);
+        menuCatalog.invalidate();
+        return saved;
     }
     
     /**
@@ -147,7 +222,9 @@ public class MenuService {
                 existingItem.setAvailable(request.getAvailable());
             }
             
-            return menuDAO.update(existingItem);
+            MenuItem saved = menuDAO.update(existingItem);
+            menuCatalog.invalidate();
+            return saved;
         }
         
         return null;
@@ -157,81 +234,85 @@ public class MenuService {
      * Delete a menu item (Admin only)
      */
     public boolean deleteMenuItem(String itemId) {
-        return menuDAO.delete(itemId);
+        boolean deleted = menuDAO.delete(itemId);
+        if (deleted) {
+            menuCatalog.invalidate();
+        }
+        return deleted;
     }
     
     /**
      * Bulk update menu items (Admin only)
+     * Each operation is one set-based statement in one transaction, so the batch is applied
+     * completely or not at all; the catalog version is bumped once afterwards.
+     * @throws IllegalArgumentException for an unknown operation or a missing/invalid value
      */
     public Map<String, Object> bulkUpdateMenuItems(AdminController.BulkMenuUpdateRequest request) {
-        Map<String, Object> result = new HashMap<>();
-        List<String> itemIds = request.getItemIds();
         String operation = request.getOperation();
         Double value = request.getValue();
+        List<String> itemIds = request.getItemIds() == null ? List.of() : request.getItemIds().stream()
+                .filter(id -> id != null && !id.isBlank())
+                .distinct()
+                .collect(Collectors.toList());
+        
+        MenuDAO.BulkWriteResult written;
+        String successStatus = "updated";
+        switch (operation == null ? "" : operation) {
+            case "price_increase" -> {
+                if (value == null || value <= 0) {
+                    throw new IllegalArgumentException("price_increase requires a positive percentage value");
+                }
+                written = menuDAO.bulkScalePrice(itemIds, BigDecimal.ONE.add(BigDecimal.valueOf(value).movePointLeft(2)));
+            }
+            case "price_decrease" -> {
+                if (value == null || value <= 0 || value > 100) {
+                    throw new IllegalArgumentException("price_decrease requires a percentage value between 0 and 100");
+                }
+                written = menuDAO.bulkScalePrice(itemIds, BigDecimal.ONE.subtract(BigDecimal.valueOf(value).movePointLeft(2)));
+            }
+            case "set_available" -> written = menuDAO.bulkSetAvailability(itemIds, true);
+            case "set_unavailable" -> written = menuDAO.bulkSetAvailability(itemIds, false);
+            case "move_category" -> {
+                if (request.getCategory() == null) {
+                    throw new IllegalArgumentException("move_category requires a category");
+                }
+                written = menuDAO.bulkSetCategory(itemIds, MenuCategory.valueOf(request.getCategory().toUpperCase()));
+            }
+            case "delete" -> {
+                written = menuDAO.bulkDelete(itemIds);
+                successStatus = "deleted";
+            }
+            default -> throw new IllegalArgumentException("Unknown bulk operation: " + operation);
+        }
         
-        int successCount = 0;
-        int failureCount = 0;
+        // 整批完成後只更新一次版本
+        if (!written.getAffected().isEmpty()) {
+            menuCatalog.invalidate();
+        }
         
+        List<Map<String, String>> results = new ArrayList<>();
         for (String itemId : itemIds) {
-            try {
-                Optional<MenuItem> itemOpt = menuDAO.findById(itemId);
-                if (itemOpt.isPresent()) {
-                    MenuItem item = itemOpt.get();
-                    
-                    switch (operation) {
-                        case "price_increase":
-                            if (value != null) {
-                                double currentPrice = item.getPrice().doubleValue();
-                                double newPrice = currentPrice * (1 + value / 100);
-                                item.setPrice(BigDecimal.valueOf(newPrice));
-                                menuDAO.update(item);
-                                successCount++;
-                            }
-                            break;
-                            
-                        case "price_decrease":
-                            if (value != null) {
-                                double currentPrice = item.getPrice().doubleValue();
-                                double newPrice = currentPrice * (1 - value / 100);
-                                item.setPrice(BigDecimal.valueOf(Math.max(newPrice, 0)));
-                                menuDAO.update(item);
-                                successCount++;
-                            }
-                            break;
-                            
-                        case "set_available":
-                            item.setAvailable(true);
-                            menuDAO.update(item);
-                            successCount++;
-                            break;
-                            
-                        case "set_unavailable":
-                            item.setAvailable(false);
-                            menuDAO.update(item);
-                            successCount++;
-                            break;
-                            
-                        default:
-                            failureCount++;
-                            break;
-                    }
-                } else {
-                    failureCount++;
-                }
-            } catch (Exception e) {
-                failureCount++;
+            String status;
+            if (written.getAffected().contains(itemId)) {
+                status = successStatus;
+            } else if (written.getExisting().contains(itemId)) {
+                status = "in_use"; // 已有訂單引用, 無法刪除
+            } else {
+                status = "not_found";
             }
+            results.add(Map.of("itemId", itemId, "status", status));
         }
         
-        result.put("successCount", successCount);
-        result.put("failureCount", failureCount);
+        Map<String, Object> result = new HashMap<>();
+        result.put("successCount", written.getAffected().size());
+        result.put("failureCount", itemIds.size() - written.getAffected().size());
         result.put("totalProcessed", itemIds.size());
         result.put("operation", operation);
+        result.put("results", results);
         
         return result;
     }
     
-    
     /**
      * Update menu item price (Admin only)
      */
@@ -241,8 +322,10 @@ public class MenuService {
             MenuItem item = itemOpt.get();
             item.setPrice(BigDecimal.valueOf(newPrice));
             menuDAO.update(item);
+            menuCatalog.invalidate();
             return true;
         }
         return false;
     }
+
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.models.Notification;
+import com.ranbow.restaurant.models.NotificationPriority;
+import com.ranbow.restaurant.models.NotificationType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Tracks pending notifications keyed by (recipient, order, type)
+ * Repeats of the same event inside the window update the pending notification
+ * instead of creating a new one. The window starts at the first notification,
+ * so a persisting condition is re-notified at most once per window.
+ */
+@Service
+public class NotificationCoalescer {
+
+    private static final int PRUNE_THRESHOLD = 10_000;
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${notification.coalesce.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notification.coalesce.default-window-seconds:300}")
+    private long defaultWindowSeconds;
+
+    private final Map<String, Pending> pendingNotifications = new ConcurrentHashMap<>();
+
+    // 依鍵分段的鎖: 同一個鍵的檢查與寫入互斥, 不同鍵大多可並行, 數量固定不需清理
+    private final Object[] keyLocks = new Object[LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * State of a notification that is still inside its coalescing window
+     */
+    public static class Pending {
+        private final String notificationId;
+        private final LocalDateTime windowEnd;
+        private volatile NotificationPriority priority;
+        private volatile int count = 1;
+
+        Pending(String notificationId, LocalDateTime windowEnd, NotificationPriority priority) {
+            this.notificationId = notificationId;
+            this.windowEnd = windowEnd;
+            this.priority = priority;
+        }
+
+        public String getNotificationId() {
+            return notificationId;
+        }
+
+        public NotificationPriority getPriority() {
+            return priority;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        boolean isOpen(LocalDateTime now) {
+            return now.isBefore(windowEnd);
+        }
+    }
+
+    /**
+     * Build the coalescing key, or null if the notification must always be inserted
+     */
+    public String keyFor(Notification notification) {
+        if (!enabled || notification.getRelatedOrderId() == null || notification.getRecipientStaffId() == null) {
+            return null;
+        }
+        if (getWindowSeconds(notification.getType()) <= 0) {
+            return null;
+        }
+        return notification.getRecipientStaffId() + "|" + notification.getRelatedOrderId() + "|"
+                + notification.getType().name();
+    }
+
+    /**
+     * Run the check-and-write for one key while holding that key's lock
+     * Concurrent repeats of the same key are serialized and cannot both insert a row.
+     * The pending map itself is never locked, so database I/O inside the action only
+     * blocks other notifications that hash to the same lock.
+     */
+    public <T> T withKeyLock(String key, Supplier<T> action) {
+        if (pendingNotifications.size() > PRUNE_THRESHOLD) {
+            LocalDateTime now = LocalDateTime.now();
+            pendingNotifications.values().removeIf(pending -> !pending.isOpen(now));
+        }
+
+        synchronized (keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)]) {
+            return action.get();
+        }
+    }
+
+    /**
+     * Pending notification whose window is still open, or null
+     * Call while holding the key's lock (see withKeyLock)
+     */
+    public Pending getOpen(String key) {
+        Pending pending = pendingNotifications.get(key);
+        return pending != null && pending.isOpen(LocalDateTime.now()) ? pending : null;
+    }
+
+    /**
+     * Open a new window for a freshly inserted notification
+     * Call while holding the key's lock (see withKeyLock)
+     */
+    public void open(String key, Notification notification) {
+        LocalDateTime windowEnd = LocalDateTime.now().plusSeconds(getWindowSeconds(notification.getType()));
+        pendingNotifications.put(key, new Pending(notification.getNotificationId(), windowEnd, notification.getPriority()));
+    }
+
+    /**
+     * Record another occurrence folded into a pending notification
+     * Call only after the pending row was updated, while holding the key's lock
+     * @return true if the priority was raised by this occurrence
+     */
+    public boolean recordRepeat(Pending pending, NotificationPriority priority) {
+        pending.count++;
+        if (priority != null && priority.getPriorityLevel() > pending.priority.getPriorityLevel()) {
+            pending.priority = priority;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drop a pending entry, e.g. when the notification was read or deleted
+     */
+    public void close(String key) {
+        pendingNotifications.remove(key);
+    }
+
+    /**
+     * Window length for a notification type
+     * Configured per type with notification.coalesce.window.&lt;TYPE&gt; (seconds); 0 disables coalescing
+     */
+    public long getWindowSeconds(NotificationType type) {
+        if (type == null) {
+            return 0;
+        }
+        return environment.getProperty("notification.coalesce.window." + type.name(), Long.class, defaultWindowSeconds);
+    }
+
+    public int getPendingCount() {
+        return pendingNotifications.size();
+    }
+}
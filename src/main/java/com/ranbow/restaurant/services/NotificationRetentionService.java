@@ -0,0 +1,238 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.dao.NotificationDAO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Background retention purge for staff notifications
+ * Deletes expired notifications and read notifications past the retention period in
+ * small keyset-ordered batches. Each batch runs in its own short transaction with a
+ * lock timeout, and batches are smaller and further apart during service hours.
+ * Runs on its own thread so the pauses between batches never hold up the shared
+ * {@code @Scheduled} pool.
+ */
+@Service
+public class NotificationRetentionService {
+
+    @Autowired
+    private NotificationDAO notificationDAO;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${notification.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notification.retention.interval-ms:300000}")
+    private long intervalMs;
+
+    @Value("${notification.retention.initial-delay-ms:60000}")
+    private long initialDelayMs;
+
+    @Value("${notification.retention.read-retention-days:30}")
+    private int readRetentionDays;
+
+    @Value("${notification.retention.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${notification.retention.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${notification.retention.service-batch-size:100}")
+    private int serviceBatchSize;
+
+    @Value("${notification.retention.service-pause-ms:500}")
+    private long servicePauseMs;
+
+    @Value("${notification.retention.service-hours-start:10}")
+    private int serviceHoursStart;
+
+    @Value("${notification.retention.service-hours-end:22}")
+    private int serviceHoursEnd;
+
+    @Value("${notification.retention.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${notification.retention.lock-timeout-ms:200}")
+    private int lockTimeoutMs;
+
+    @Value("${notification.retention.statement-timeout-ms:2000}")
+    private int statementTimeoutMs;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService purgeExecutor;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Metrics
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong expiredDeleted = new AtomicLong();
+    private final AtomicLong readDeleted = new AtomicLong();
+    private final AtomicLong lockTimeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunDurationMs;
+    private volatile long lastRunDeleted;
+    private volatile boolean lastRunComplete;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // 專用執行緒: 批次間的暫停不佔用共用的排程執行緒
+        purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "notification-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purgeExecutor.scheduleWithFixedDelay(this::scheduledPurge, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Scheduled purge run
+     */
+    public void scheduledPurge() {
+        if (enabled) {
+            purge();
+        }
+    }
+
+    /**
+     * Run one purge pass, bounded by max-batches-per-run
+     * @return Number of notifications deleted
+     */
+    public long purge() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        long deleted = 0;
+        boolean complete = false;
+        try {
+            int[] budget = {maxBatchesPerRun};
+
+            deleted += purgeInBatches(budget, expiredDeleted,
+                (after) -> notificationDAO.purgeExpiredBatch(after, currentBatchSize()));
+
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(readRetentionDays);
+            deleted += purgeInBatches(budget, readDeleted,
+                (after) -> notificationDAO.purgeOldReadBatch(cutoff, after, currentBatchSize()));
+
+            complete = budget[0] > 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (PessimisticLockingFailureException | QueryTimeoutException e) {
+            // Contended with live traffic; back off until the next run
+            lockTimeouts.incrementAndGet();
+            System.out.println("Notification purge backed off: " + e.getMessage());
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            System.err.println("Error purging notifications: " + e.getMessage());
+        } finally {
+            runCount.incrementAndGet();
+            lastRunAt = LocalDateTime.now();
+            lastRunDurationMs = System.currentTimeMillis() - start;
+            lastRunDeleted = deleted;
+            lastRunComplete = complete;
+            running.set(false);
+        }
+
+        if (deleted > 0) {
+            System.out.println("Notification purge removed " + deleted + " rows in " + lastRunDurationMs + " ms");
+        }
+        return deleted;
+    }
+
+    /**
+     * Retention metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("runCount", runCount.get());
+        stats.put("batchCount", batchCount.get());
+        stats.put("expiredDeleted", expiredDeleted.get());
+        stats.put("readDeleted", readDeleted.get());
+        stats.put("lockTimeouts", lockTimeouts.get());
+        stats.put("failures", failures.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        stats.put("lastRunDeleted", lastRunDeleted);
+        stats.put("lastRunComplete", lastRunComplete);
+        stats.put("serviceHours", isServiceHours());
+        stats.put("currentBatchSize", currentBatchSize());
+        return stats;
+    }
+
+    // Private helper methods
+
+    private long purgeInBatches(int[] budget, AtomicLong counter,
+                                Function<NotificationDAO.PurgeBatch, NotificationDAO.PurgeBatch> deleteBatch)
+            throws InterruptedException {
+        long total = 0;
+        NotificationDAO.PurgeBatch position = null;
+
+        while (budget[0] > 0) {
+            NotificationDAO.PurgeBatch after = position;
+            NotificationDAO.PurgeBatch batch = transactionTemplate.execute(status -> {
+                // Keep each batch from waiting on, or holding, locks for long
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '" + lockTimeoutMs + "ms'");
+                jdbcTemplate.execute("SET LOCAL statement_timeout = '" + statementTimeoutMs + "ms'");
+                return deleteBatch.apply(after);
+            });
+            budget[0]--;
+            batchCount.incrementAndGet();
+
+            if (batch == null || batch.getDeletedCount() == 0) {
+                break;
+            }
+            total += batch.getDeletedCount();
+            counter.addAndGet(batch.getDeletedCount());
+            position = batch;
+
+            Thread.sleep(isServiceHours() ? servicePauseMs : pauseMs);
+        }
+        return total;
+    }
+
+    private int currentBatchSize() {
+        return isServiceHours() ? serviceBatchSize : batchSize;
+    }
+
+    private boolean isServiceHours() {
+        int hour = LocalTime.now().getHour();
+        return hour >= serviceHoursStart && hour < serviceHoursEnd;
+    }
+}
@@ -2,8 +2,10 @@ package com.ranbow.restaurant.services;
 
 import com.ranbow.restaurant.dao.NotificationDAO;
 import com.ranbow.restaurant.dao.StaffDAO;
+import com.ranbow.restaurant.events.NotificationCreatedEvent;
 import com.ranbow.restaurant.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -17,12 +19,21 @@ import java.util.Optional;
 @Service
 public class NotificationService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private NotificationDAO notificationDAO;
     
     @Autowired
     private StaffDAO staffDAO;
 
+    @Autowired
+    private NotificationCoalescer notificationCoalescer;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Get all notifications for a staff member
      * @param staffId Staff ID
@@ -53,6 +64,34 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Get one page of notifications for a staff member
+     * @param staffId Staff ID
+     * @param unreadOnly Only unread notifications
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @param limit Page size (clamped to 1..MAX_PAGE_SIZE)
+     * @return Notification page
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public NotificationPage getNotificationPage(String staffId, boolean unreadOnly, String cursor, int limit) {
+        NotificationPage.Cursor decoded = cursor != null && !cursor.isBlank()
+            ? NotificationPage.decodeCursor(cursor) : null;
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        try {
+            // Fetch one extra row to know whether another page exists
+            List<Notification> rows = notificationDAO.findPageByStaffId(staffId, unreadOnly, decoded, pageSize + 1);
+            boolean hasMore = rows.size() > pageSize;
+            List<Notification> page = hasMore ? rows.subList(0, pageSize) : rows;
+            String nextCursor = hasMore ? NotificationPage.encodeCursor(page.get(page.size() - 1)) : null;
+            return new NotificationPage(List.copyOf(page), nextCursor, hasMore);
+        } catch (Exception e) {
+            System.err.println("Error getting notification page: " + e.getMessage());
+            e.printStackTrace();
+            return new NotificationPage(List.of(), null, false);
+        }
+    }
+
     /**
      * Count unread notifications for a staff member
      * @param staffId Staff ID
@@ -109,7 +148,7 @@ public class NotificationService {
             for (Staff staff : kitchenStaff) {
                 if (staff.isOnDuty()) {
                     Notification notification = Notification.newOrderNotification(staff.getStaffId(), orderId, message);
-                    notificationDAO.save(notification);
+                    deliver(notification);
                 }
             }
         } catch (Exception e) {
@@ -135,7 +174,7 @@ public class NotificationService {
                 if (!staff.getStaffId().equals(updatedByStaffId)) {
                     Notification notification = Notification.orderStatusUpdateNotification(
                         staff.getStaffId(), orderId, oldStatus, newStatus);
-                    notificationDAO.save(notification);
+                    deliver(notification);
                 }
             }
         } catch (Exception e) {
@@ -155,7 +194,7 @@ public class NotificationService {
             
             for (Staff staff : allOnDutyStaff) {
                 Notification notification = Notification.emergencyNotification(staff.getStaffId(), orderId, reason);
-                notificationDAO.save(notification);
+                deliver(notification);
             }
         } catch (Exception e) {
             System.err.println("Error creating emergency notification: " + e.getMessage());
@@ -175,7 +214,7 @@ public class NotificationService {
             if (assignedStaffId != null) {
                 Notification notification = Notification.overtimeOrderNotification(
                     assignedStaffId, orderId, overdueMinutes);
-                notificationDAO.save(notification);
+                deliver(notification);
             }
             
             // Also notify management/supervisors
@@ -184,7 +223,7 @@ public class NotificationService {
                 if (manager.isOnDuty() && !manager.getStaffId().equals(assignedStaffId)) {
                     Notification notification = Notification.overtimeOrderNotification(
                         manager.getStaffId(), orderId, overdueMinutes);
-                    notificationDAO.save(notification);
+                    deliver(notification);
                 }
             }
         } catch (Exception e) {
@@ -210,11 +249,11 @@ public class NotificationService {
                 // Notify both staff members
                 Notification notificationFrom = Notification.systemNotification(
                     fromStaffId, "班次結束", "您的班次已結束");
-                notificationDAO.save(notificationFrom);
+                deliver(notificationFrom);
                 
                 Notification notificationTo = Notification.systemNotification(
                     toStaffId, "班次開始", "您的班次已開始");
-                notificationDAO.save(notificationTo);
+                deliver(notificationTo);
                 
                 // Notify other staff in the same department
                 List<Staff> departmentStaff = staffDAO.findByDepartment(toStaff.get().getDepartment());
@@ -224,7 +263,7 @@ public class NotificationService {
                         !staff.getStaffId().equals(toStaffId)) {
                         Notification notification = Notification.systemNotification(
                             staff.getStaffId(), "員工切換", message);
-                        notificationDAO.save(notification);
+                        deliver(notification);
                     }
                 }
             }
@@ -242,7 +281,7 @@ public class NotificationService {
         try {
             Notification notification = Notification.systemNotification(
                 staffId, "班次開始", "歡迎回來！您的班次已開始。");
-            notificationDAO.save(notification);
+            deliver(notification);
         } catch (Exception e) {
             System.err.println("Error creating shift start notification: " + e.getMessage());
         }
@@ -256,7 +295,7 @@ public class NotificationService {
         try {
             Notification notification = Notification.systemNotification(
                 staffId, "班次結束", "感謝您今天的辛勤工作！");
-            notificationDAO.save(notification);
+            deliver(notification);
         } catch (Exception e) {
             System.err.println("Error creating shift end notification: " + e.getMessage());
         }
@@ -272,11 +311,38 @@ public class NotificationService {
      */
     public void broadcastNotification(List<String> staffIds, NotificationType type, 
                                     String title, String message, NotificationPriority priority) {
-        try {
-            notificationDAO.broadcastNotification(staffIds, type, title, message, priority);
-        } catch (Exception e) {
-            System.err.println("Error broadcasting notification: " + e.getMessage());
-            e.printStackTrace();
+        broadcastNotification(staffIds, type, title, message, priority, null);
+    }
+
+    /**
+     * Broadcast notification about an order to multiple staff members
+     * Repeats for the same order are coalesced per recipient
+     * @param relatedOrderId Related order ID, may be null
+     */
+    public void broadcastNotification(List<String> staffIds, NotificationType type, String title,
+                                    String message, NotificationPriority priority, String relatedOrderId) {
+        if (relatedOrderId == null) {
+            // 沒有合併鍵, 走原本的批次寫入
+            try {
+                notificationDAO.broadcastNotification(staffIds, type, title, message, priority);
+            } catch (Exception e) {
+                System.err.println("Error broadcasting notification: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (String staffId : staffIds) {
+            // 單一收件人失敗不影響其他人
+            try {
+                Notification notification = new Notification(staffId, type, title, message, relatedOrderId, priority);
+                notification.setSentAt(now);
+                deliver(notification);
+            } catch (Exception e) {
+                System.err.println("Error broadcasting notification to " + staffId + ": " + e.getMessage());
+                e.printStackTrace();
+            }
         }
     }
 
@@ -314,6 +380,15 @@ public class NotificationService {
      */
     public void broadcastToDepartment(String department, NotificationType type, String title, 
                                     String message, NotificationPriority priority) {
+        broadcastToDepartment(department, type, title, message, priority, null);
+    }
+
+    /**
+     * Broadcast notification about an order to department staff
+     * @param relatedOrderId Related order ID, used for coalescing repeats
+     */
+    public void broadcastToDepartment(String department, NotificationType type, String title,
+                                    String message, NotificationPriority priority, String relatedOrderId) {
         try {
             List<Staff> departmentStaff = staffDAO.findByDepartment(department);
             List<String> staffIds = departmentStaff.stream()
@@ -322,7 +397,7 @@ public class NotificationService {
                 .toList();
             
             if (!staffIds.isEmpty()) {
-                broadcastNotification(staffIds, type, title, message, priority);
+                broadcastNotification(staffIds, type, title, message, priority, relatedOrderId);
             }
         } catch (Exception e) {
             System.err.println("Error broadcasting to department: " + e.getMessage());
@@ -361,4 +436,60 @@ public class NotificationService {
             return 0;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Store a notification and announce it
+     * A repeat of the same (recipient, order, type) inside the coalescing window updates
+     * the pending notification instead of inserting a new row.
+     */
+    private void deliver(Notification notification) {
+        String key = notificationCoalescer.keyFor(notification);
+        if (key == null) {
+            notificationDAO.save(notification);
+            eventPublisher.publishEvent(new NotificationCreatedEvent(this, notification, false, false));
+            return;
+        }
+
+        // 檢查與寫入在同一把鍵鎖內完成, 並發的重複事件不會各自插入新列
+        NotificationCreatedEvent delivered = notificationCoalescer.withKeyLock(key, () -> {
+            NotificationCoalescer.Pending pending = notificationCoalescer.getOpen(key);
+            if (pending != null) {
+                NotificationCreatedEvent event = coalesce(notification, pending);
+                if (event != null) {
+                    return event;
+                }
+            }
+            notificationDAO.save(notification);
+            notificationCoalescer.open(key, notification);
+            return new NotificationCreatedEvent(this, notification, false, false);
+        });
+        // Listeners push over WebSocket; run them outside the key's lock
+        eventPublisher.publishEvent(delivered);
+    }
+
+    /**
+     * Fold a repeat into the pending notification
+     * @return The event to announce, or null if the pending row is gone and a new one is needed
+     */
+    private NotificationCreatedEvent coalesce(Notification notification, NotificationCoalescer.Pending pending) {
+        // 先以合併後的內容更新資料列, 成功後才記錄這次重複
+        NotificationPriority priority = notification.getPriority() != null
+                && notification.getPriority().getPriorityLevel() > pending.getPriority().getPriorityLevel()
+                ? notification.getPriority() : pending.getPriority();
+
+        Notification merged = new Notification(notification.getRecipientStaffId(), notification.getType(),
+                notification.getTitle(), notification.getMessage() + " (x" + (pending.getCount() + 1) + ")",
+                notification.getRelatedOrderId(), priority);
+        merged.setNotificationId(pending.getNotificationId());
+        merged.setSenderStaffId(notification.getSenderStaffId());
+        merged.setExpiresAt(notification.getExpiresAt());
+        merged.setActionUrl(notification.getActionUrl());
+
+        if (!notificationDAO.updateCoalesced(merged)) {
+            // Pending notification was read or removed: the caller starts a new window with a fresh row
+            return null;
+        }
+        boolean escalated = notificationCoalescer.recordRepeat(pending, notification.getPriority());
+        return new NotificationCreatedEvent(this, merged, true, escalated);
+    }
+}
@@ -31,9 +31,17 @@ public class OrderService {
     @Autowired
     private ApplicationEventPublisher eventPublisher;
     
+    @Autowired
+    private CardinalityService cardinalityService;
+    
+    @Autowired
+    private StockService stockService;
+    
     public Order createOrder(String customerId, String tableNumber) {
         Order newOrder = new Order(customerId, tableNumber);
-        return orderDAO.save(newOrder);
+        Order saved = orderDAO.save(newOrder);
+        cardinalityService.record(CardinalityService.ORDERING_CUSTOMERS, customerId);
+        return saved;
     }
     
     public Order createCompleteOrder(OrderController.CreateCompleteOrderRequest request) {
@@ -58,6 +66,7 @@ public class OrderService {
         
         // Save the order first to get an ID
         order = orderDAO.save(order);
+        cardinalityService.record(CardinalityService.ORDERING_CUSTOMERS, order.getCustomerId());
         
         // Add items to the order
         if (request.getItems() != null) {
@@ -65,6 +74,9 @@ public class OrderService {
                 Optional<MenuItem> menuItemOpt = menuService.findMenuItemById(itemRequest.getMenuItemId());
                 if (menuItemOpt.isPresent()) {
                     MenuItem menuItem = menuItemOpt.get();
+                    if (!stockService.hasStock(menuItem.getItemId(), itemRequest.getQuantity())) {
+                        throw new IllegalArgumentException("菜單項目已售完: " + menuItem.getName());
+                    }
                     OrderItem orderItem = new OrderItem(menuItem, itemRequest.getQuantity(), itemRequest.getSpecialRequests());
                     order.addOrderItem(orderItem);
                 } else {
@@ -80,6 +92,20 @@ public class OrderService {
             order.setTotalAmount(BigDecimal.valueOf(request.getTotalAmount()));
         }
         
+        // Orders created already confirmed reserve their stock now
+        if (order.getStatus() == OrderStatus.CONFIRMED) {
+            try {
+                stockService.reserve(order.getOrderId(), order.getOrderItems());
+            } catch (StockService.InsufficientStockException e) {
+                order.setStatus(OrderStatus.CANCELLED);
+                order.setSpecialInstructions((order.getSpecialInstructions() != null ?
+                        order.getSpecialInstructions() + " | " : "") + "取消原因: " + e.getMessage());
+                orderDAO.update(order);
+                orderDAO.updateStatus(order.getOrderId(), OrderStatus.CANCELLED);
+                throw e;
+            }
+        }
+        
         // Update the order with items and totals
         orderDAO.update(order);
         return order;
@@ -127,7 +153,7 @@ public class OrderService {
             Order order = orderOpt.get();
             MenuItem menuItem = menuItemOpt.get();
             
-            if (!menuItem.isAvailable()) {
+            if (!menuItem.isAvailable() || !stockService.hasStock(menuItemId, quantity)) {
                 throw new IllegalArgumentException("菜單項目目前不可用: " + menuItem.getName());
             }
             
@@ -208,10 +234,30 @@ public class OrderService {
             
             // Validate status transition
             if (isValidStatusTransition(oldStatus, newStatus)) {
+                // Reserve stock before confirming; rejects the confirmation when a limited dish ran out
+                boolean reserving = newStatus == OrderStatus.CONFIRMED;
+                if (reserving) {
+                    stockService.reserve(orderId, order.getOrderItems());
+                }
+                
                 // Use updateStatus method to properly update the status in database
-                boolean updated = orderDAO.updateStatus(orderId, newStatus);
+                boolean updated;
+                try {
+                    updated = orderDAO.updateStatus(orderId, newStatus);
+                } catch (RuntimeException e) {
+                    if (reserving) {
+                        stockService.release(orderId);
+                    }
+                    throw e;
+                }
                 if (updated) {
                     order.setStatus(newStatus); // Update local object status
+                    // 取消前尚未製作才退回庫存; 送達後預留不再需要
+                    if (newStatus == OrderStatus.CANCELLED) {
+                        stockService.cancel(orderId, oldStatus);
+                    } else if (newStatus == OrderStatus.DELIVERED || newStatus == OrderStatus.COMPLETED) {
+                        stockService.settle(orderId);
+                    }
                     
                     // Publish order status change event for other services to handle
                     try {
@@ -226,6 +272,9 @@ public class OrderService {
                     
                     return true;
                 } else {
+                    if (reserving) {
+                        stockService.release(orderId);
+                    }
                     throw new RuntimeException("Failed to update order status in database");
                 }
             } else {
@@ -257,11 +306,14 @@ public class OrderService {
                 throw new IllegalStateException("無法取消已完成的訂單");
             }
             
+            OrderStatus previousStatus = order.getStatus();
+            
             // Update order status first
             boolean statusUpdated = orderDAO.updateStatus(orderId, OrderStatus.CANCELLED);
             if (!statusUpdated) {
                 throw new RuntimeException("Failed to update order status to CANCELLED");
             }
+            stockService.cancel(orderId, previousStatus);
             
             // Update special instructions
             order.setStatus(OrderStatus.CANCELLED);
@@ -488,6 +540,15 @@ public class OrderService {
      * This method returns orders with fully populated customer details and menu items
      */
     public List<Map<String, Object>> getOrdersWithCompleteDataByStatus(OrderStatus status) {
+        return getOrdersWithCompleteDataByStatus(status, true);
+    }
+
+    /**
+     * Get orders by status with complete customer and menu item information
+     * @param legacyAliases Also emit snake_case duplicates of each field (and "orderItems")
+     *                      for older clients; compact clients pass false
+     */
+    public List<Map<String, Object>> getOrdersWithCompleteDataByStatus(OrderStatus status, boolean legacyAliases) {
         List<Order> orders = orderDAO.findByStatus(status);
         List<Map<String, Object>> completeOrders = new ArrayList<>();
         
@@ -495,57 +556,39 @@ public class OrderService {
             Map<String, Object> orderData = new HashMap<>();
             
             // Basic order information
-            orderData.put("orderId", order.getOrderId());
-            orderData.put("order_id", order.getOrderId());
-            orderData.put("customerId", order.getCustomerId());
-            orderData.put("customer_id", order.getCustomerId());
+            putField(orderData, "orderId", "order_id", order.getOrderId(), legacyAliases);
+            putField(orderData, "customerId", "customer_id", order.getCustomerId(), legacyAliases);
             orderData.put("status", order.getStatus().toString());
-            orderData.put("totalAmount", order.getTotalAmount());
-            orderData.put("total_amount", order.getTotalAmount());
+            putField(orderData, "totalAmount", "total_amount", order.getTotalAmount(), legacyAliases);
             orderData.put("subtotal", order.getSubtotal());
             orderData.put("tax", order.getTax());
-            orderData.put("specialInstructions", order.getSpecialInstructions());
-            orderData.put("special_instructions", order.getSpecialInstructions());
-            orderData.put("tableNumber", order.getTableNumber());
-            orderData.put("table_number", order.getTableNumber());
-            orderData.put("orderTime", order.getOrderTime());
-            orderData.put("order_time", order.getOrderTime());
-            orderData.put("completedTime", order.getCompletedTime());
-            orderData.put("completed_time", order.getCompletedTime());
+            putField(orderData, "specialInstructions", "special_instructions", order.getSpecialInstructions(), legacyAliases);
+            putField(orderData, "tableNumber", "table_number", order.getTableNumber(), legacyAliases);
+            putField(orderData, "orderTime", "order_time", order.getOrderTime(), legacyAliases);
+            putField(orderData, "completedTime", "completed_time", order.getCompletedTime(), legacyAliases);
             
             // Generate friendly order number (first 8 characters + sequential number)
             String friendlyOrderNumber = "RB" + String.format("%06d", Math.abs(order.getOrderId().hashCode() % 999999));
-            orderData.put("orderNumber", friendlyOrderNumber);
-            orderData.put("order_number", friendlyOrderNumber);
+            putField(orderData, "orderNumber", "order_number", friendlyOrderNumber, legacyAliases);
             
             // Get customer information
+            String customerName = "Unknown Customer";
+            String customerEmail = "";
+            String customerPhone = "";
             try {
                 Optional<User> customerOpt = userService.findUserById(order.getCustomerId());
                 if (customerOpt.isPresent()) {
                     User customer = customerOpt.get();
-                    orderData.put("customerName", customer.getUsername());
-                    orderData.put("customer_name", customer.getUsername());
-                    orderData.put("customerEmail", customer.getEmail());
-                    orderData.put("customer_email", customer.getEmail());
-                    orderData.put("customerPhone", customer.getPhoneNumber());
-                    orderData.put("customer_phone", customer.getPhoneNumber());
-                } else {
-                    orderData.put("customerName", "Unknown Customer");
-                    orderData.put("customer_name", "Unknown Customer");
-                    orderData.put("customerEmail", "");
-                    orderData.put("customer_email", "");
-                    orderData.put("customerPhone", "");
-                    orderData.put("customer_phone", "");
+                    customerName = customer.getUsername();
+                    customerEmail = customer.getEmail();
+                    customerPhone = customer.getPhoneNumber();
                 }
             } catch (Exception e) {
                 System.err.println("Error getting customer info for order " + order.getOrderId() + ": " + e.getMessage());
-                orderData.put("customerName", "Unknown Customer");
-                orderData.put("customer_name", "Unknown Customer");
-                orderData.put("customerEmail", "");
-                orderData.put("customer_email", "");
-                orderData.put("customerPhone", "");
-                orderData.put("customer_phone", "");
             }
+            putField(orderData, "customerName", "customer_name", customerName, legacyAliases);
+            putField(orderData, "customerEmail", "customer_email", customerEmail, legacyAliases);
+            putField(orderData, "customerPhone", "customer_phone", customerPhone, legacyAliases);
             
             // Get order items with complete menu information
             List<Map<String, Object>> orderItems = new ArrayList<>();
@@ -555,8 +598,7 @@ public class OrderService {
                 itemData.put("orderItemId", item.getOrderItemId());
                 itemData.put("quantity", item.getQuantity());
                 itemData.put("specialRequests", item.getSpecialRequests());
-                itemData.put("itemTotal", item.getItemTotal());
-                itemData.put("item_total", item.getItemTotal());
+                putField(itemData, "itemTotal", "item_total", item.getItemTotal(), legacyAliases);
                 
                 // Get menu item details
                 try {
@@ -584,11 +626,20 @@ public class OrderService {
             }
             
             orderData.put("items", orderItems);
-            orderData.put("orderItems", orderItems);
+            if (legacyAliases) {
+                orderData.put("orderItems", orderItems);
+            }
             
             completeOrders.add(orderData);
         }
         
         return completeOrders;
     }
-}
\ No newline at end of file
+
+    private void putField(Map<String, Object> data, String name, String legacyName, Object value, boolean legacyAliases) {
+        data.put(name, value);
+        if (legacyAliases) {
+            data.put(legacyName, value);
+        }
+    }
+}
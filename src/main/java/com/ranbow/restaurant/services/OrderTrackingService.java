@@ -0,0 +1,298 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ranbow.restaurant.config.EventReplayBuffer;
+import com.ranbow.restaurant.config.ReplaySequence;
+import com.ranbow.restaurant.config.WebSocketEventRelay;
+import com.ranbow.restaurant.dao.OrderDAO;
+import com.ranbow.restaurant.events.KitchenEtaUpdateEvent;
+import com.ranbow.restaurant.events.OrderStatusChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * Server-Sent Events order tracking for the customer app
+ * Pushes status transitions and kitchen ETA updates per order and per customer.
+ * Emitters hold no request thread while idle; a shared heartbeat keeps proxies from
+ * closing silent connections, and Last-Event-ID resumes from the recent event history.
+ */
+@Service
+public class OrderTrackingService {
+
+    @Autowired
+    private OrderDAO orderDAO;
+
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReplaySequence replaySequence;
+
+    @Value("${tracking.sse.timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${tracking.sse.heartbeat-seconds:20}")
+    private long heartbeatSeconds;
+
+    @Value("${tracking.sse.history-size:1000}")
+    private int historySize;
+
+    // Inverted index: orderId / customerId -> open emitters
+    private final Map<String, Set<SseEmitter>> orderEmitters = new ConcurrentHashMap<>();
+    private final Map<String, Set<SseEmitter>> customerEmitters = new ConcurrentHashMap<>();
+    private final Set<SseEmitter> allEmitters = ConcurrentHashMap.newKeySet();
+
+    private EventReplayBuffer history;
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @PostConstruct
+    public void init() {
+        history = new EventReplayBuffer(WebSocketEventRelay.TRACKING_CHANNEL, historySize, replaySequence);
+
+        // Events raised on other nodes are delivered to streams connected here, recorded under
+        // the id the raising node stamped so Last-Event-ID resumes work on any node
+        eventRelay.register(WebSocketEventRelay.TRACKING_CHANNEL, (routing, event) -> {
+            String orderId = routing.get("orderId");
+            deliverLocally(orderId, routing.get("customerId"), history.accept(orderId, event));
+        });
+
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+        allEmitters.forEach(SseEmitter::complete);
+    }
+
+    /**
+     * Open a tracking stream for a single order
+     * @param lastEventId Value of the Last-Event-ID header, may be null
+     */
+    public SseEmitter subscribeOrder(String orderId, String lastEventId) {
+        SseEmitter emitter = register(orderEmitters, orderId);
+        if (!replay(emitter, lastEventId, (target, event) -> orderId.equals(target))) {
+            sendSnapshot(emitter, orderDAO.findTrackingSnapshot(orderId).map(List::of).orElse(List.of()));
+        }
+        return emitter;
+    }
+
+    /**
+     * Open a tracking stream for all orders of a customer
+     * @param lastEventId Value of the Last-Event-ID header, may be null
+     */
+    public SseEmitter subscribeCustomer(String customerId, String lastEventId) {
+        SseEmitter emitter = register(customerEmitters, customerId);
+        if (!replay(emitter, lastEventId, (target, event) -> customerId.equals(event.path("customerId").asText(null)))) {
+            sendSnapshot(emitter, orderDAO.findActiveTrackingSnapshotsByCustomer(customerId));
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onOrderStatusChange(OrderStatusChangeEvent event) {
+        try {
+            String customerId = event.getOrder() != null ? event.getOrder().getCustomerId() : null;
+
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("type", "status");
+            payload.put("orderId", event.getOrderId());
+            payload.put("customerId", customerId);
+            payload.put("oldStatus", event.getOldStatus() != null ? event.getOldStatus().name() : null);
+            payload.put("newStatus", event.getNewStatus() != null ? event.getNewStatus().name() : null);
+            payload.put("timestamp", System.currentTimeMillis());
+
+            publish(event.getOrderId(), customerId, payload);
+        } catch (Exception e) {
+            System.err.println("Error publishing order tracking status: " + e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onKitchenEtaUpdate(KitchenEtaUpdateEvent event) {
+        try {
+            String customerId = orderDAO.findCustomerIdByOrderId(event.getOrderId()).orElse(null);
+
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("type", "eta");
+            payload.put("orderId", event.getOrderId());
+            payload.put("customerId", customerId);
+            payload.put("kitchenStatus", event.getKitchenStatus() != null ? event.getKitchenStatus().name() : null);
+            payload.put("estimatedCompletionTime", event.getEstimatedCompletionTime());
+            payload.put("remainingMinutes", event.getRemainingMinutes());
+            payload.put("timestamp", System.currentTimeMillis());
+
+            publish(event.getOrderId(), customerId, payload);
+        } catch (Exception e) {
+            System.err.println("Error publishing order tracking ETA: " + e.getMessage());
+        }
+    }
+
+    // Private helper methods
+
+    private void publish(String orderId, String customerId, Map<String, Object> payload) {
+        // Always record, so a customer who is briefly offline can resume
+        ObjectNode stamped = history.append(orderId, objectMapper.valueToTree(payload));
+        deliverLocally(orderId, customerId, stamped);
+
+        Map<String, String> routing = new HashMap<>();
+        routing.put("orderId", orderId);
+        routing.put("customerId", customerId);
+        eventRelay.publish(WebSocketEventRelay.TRACKING_CHANNEL, routing, stamped);
+    }
+
+    private void deliverLocally(String orderId, String customerId, ObjectNode stamped) {
+        Set<SseEmitter> targets = new LinkedHashSet<>();
+        if (orderId != null) {
+            targets.addAll(orderEmitters.getOrDefault(orderId, Collections.emptySet()));
+        }
+        if (customerId != null) {
+            targets.addAll(customerEmitters.getOrDefault(customerId, Collections.emptySet()));
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        String json;
+        try {
+            // Serialize once and share across streams
+            json = objectMapper.writeValueAsString(stamped);
+        } catch (Exception e) {
+            System.err.println("Error serializing order tracking event: " + e.getMessage());
+            return;
+        }
+
+        String eventId = eventId(stamped);
+        String eventName = stamped.path("type").asText("status");
+        for (SseEmitter emitter : targets) {
+            send(emitter, SseEmitter.event().id(eventId).name(eventName).data(json, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private SseEmitter register(Map<String, Set<SseEmitter>> index, String key) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        index.compute(key, (k, emitters) -> {
+            Set<SseEmitter> result = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            result.add(emitter);
+            return result;
+        });
+        allEmitters.add(emitter);
+
+        Runnable cleanup = () -> {
+            allEmitters.remove(emitter);
+            index.computeIfPresent(key, (k, emitters) -> {
+                emitters.remove(emitter);
+                return emitters.isEmpty() ? null : emitters;
+            });
+        };
+        emitter.onCompletion(cleanup);
+        emitter.onTimeout(cleanup);
+        emitter.onError(error -> cleanup.run());
+        return emitter;
+    }
+
+    /**
+     * Replay missed events for a resuming client
+     * @return false if the client must start from a fresh snapshot instead
+     */
+    private boolean replay(SseEmitter emitter, String lastEventId,
+                           BiPredicate<String, ObjectNode> filter) {
+        if (lastEventId == null || !lastEventId.contains(":")) {
+            return false;
+        }
+
+        String epoch = lastEventId.substring(0, lastEventId.indexOf(':'));
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(lastEventId.substring(lastEventId.indexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        EventReplayBuffer.ReplayResult result = history.sinceMatching(epoch, lastSeq, filter);
+        if (result.isResyncRequired()) {
+            return false;
+        }
+
+        for (ObjectNode event : result.getEvents()) {
+            try {
+                send(emitter, SseEmitter.event()
+                    .id(eventId(event))
+                    .name(event.path("type").asText("status"))
+                    .data(objectMapper.writeValueAsString(event), MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                System.err.println("Error replaying order tracking event: " + e.getMessage());
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private void sendSnapshot(SseEmitter emitter, List<Map<String, Object>> orders) {
+        try {
+            String json = objectMapper.writeValueAsString(Map.of("type", "snapshot", "orders", orders));
+            send(emitter, SseEmitter.event()
+                .id(eventId(history.getLastSeq()))
+                .name("snapshot")
+                .data(json, MediaType.APPLICATION_JSON));
+        } catch (Exception e) {
+            System.err.println("Error sending order tracking snapshot: " + e.getMessage());
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (SseEmitter emitter : allEmitters) {
+            send(emitter, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (Exception e) {
+            // Client has gone away; completion callbacks remove the emitter from the index
+            allEmitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private String eventId(long seq) {
+        return history.getEpoch() + ":" + seq;
+    }
+
+    private String eventId(ObjectNode stamped) {
+        return stamped.path("epoch").asText() + ":" + stamped.path("seq").asLong();
+    }
+
+    // Public getters for monitoring
+    public int getActiveStreamCount() {
+        return allEmitters.size();
+    }
+}
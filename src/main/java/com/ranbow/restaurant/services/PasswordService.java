@@ -1,15 +1,33 @@
 package com.ranbow.restaurant.services;
 
+import com.ranbow.restaurant.dao.UserDAO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 統一密碼處理服務
  * 支持現有的SHA-256哈希格式和新的BCrypt格式
+ * 雜湊運算在獨立的有界執行緒池中進行, 不佔用請求執行緒; 佇列已滿或等待過久時
+ * 立即拒絕 (HashingBusyException), 由呼叫端回應 429。
  */
 @Service
 public class PasswordService {
@@ -17,53 +35,246 @@ public class PasswordService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserDAO userDAO;
+
+    // 0 表示使用 CPU 核心數
+    @Value("${security.password-hashing.threads:0}")
+    private int threads;
+
+    @Value("${security.password-hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    // 任務在佇列中等待超過此時間即放棄, 避免使用者等待已逾時的登入
+    @Value("${security.password-hashing.max-queue-wait-ms:500}")
+    private long maxQueueWaitMs;
+
+    @Value("${security.password-hashing.rehash-legacy:true}")
+    private boolean rehashLegacy;
+
+    private ThreadPoolExecutor hashingExecutor;
+
+    // Metrics
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong queueTimeouts = new AtomicLong();
+    private final AtomicLong legacyUpgrades = new AtomicLong();
+    private final AtomicLong totalQueueWaitMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        hashingExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            r -> {
+                Thread thread = new Thread(r, "password-hashing-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+
     /**
      * 驗證密碼
      * 支援兩種格式：
      * 1. 現有的SHA-256哈希（64字符十六進制）
      * 2. BCrypt哈希（以$2a$開頭）
-     * 
+     *
      * @param rawPassword 原始密碼
      * @param storedHash 儲存的密碼哈希
      * @return 是否匹配
+     * @throws HashingBusyException 雜湊執行緒池忙碌時
      */
     public boolean verifyPassword(String rawPassword, String storedHash) {
         if (rawPassword == null || storedHash == null) {
             return false;
         }
+        return runHashing(() -> matches(rawPassword, storedHash));
+    }
+
+    /**
+     * 驗證密碼, 成功且為舊SHA-256格式時於背景升級為BCrypt
+     * @param userId 用戶ID
+     * @param rawPassword 原始密碼
+     * @param storedHash 儲存的密碼哈希
+     * @return 是否匹配
+     * @throws HashingBusyException 雜湊執行緒池忙碌時
+     */
+    public boolean verifyAndUpgrade(String userId, String rawPassword, String storedHash) {
+        boolean valid = verifyPassword(rawPassword, storedHash);
+        if (valid && rehashLegacy && isSha256Hex(storedHash)) {
+            upgradeLegacyHash(userId, rawPassword, storedHash);
+        }
+        return valid;
+    }
+
+    /**
+     * 生成BCrypt密碼哈希（用於新密碼）
+     */
+    public String encodePassword(String rawPassword) {
+        return runHashing(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * 檢查密碼格式
+     */
+    public String getPasswordFormat(String hash) {
+        if (hash == null) {
+            return "NULL";
+        } else if (isBCrypt(hash)) {
+            return "BCRYPT";
+        } else if (isSha256Hex(hash)) {
+            return "SHA256";
+        } else {
+            return "UNKNOWN";
+        }
+    }
+
+    /**
+     * 用於測試目的：驗證特定測試密碼
+     */
+    public boolean isTestPassword(String rawPassword, String storedHash) {
+        // 專門測試 password123 對應的哈希
+        String expectedHash = "ef92b778bafe771e89245b89ecbc08a44a4e166c06659911881f383d4473e94f";
+        if (storedHash.equalsIgnoreCase(expectedHash)) {
+            return rawPassword.equals("password123");
+        }
+
+        return verifyPassword(rawPassword, storedHash);
+    }
+
+    /**
+     * 雜湊執行緒池統計
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("poolSize", hashingExecutor.getMaximumPoolSize());
+        stats.put("active", hashingExecutor.getActiveCount());
+        stats.put("queued", hashingExecutor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("maxQueueWaitMs", maxQueueWaitMs);
+        stats.put("verifications", verifications.get());
+        stats.put("rejected", rejected.get());
+        stats.put("queueTimeouts", queueTimeouts.get());
+        stats.put("legacyUpgrades", legacyUpgrades.get());
+        long completed = hashingExecutor.getCompletedTaskCount();
+        stats.put("avgQueueWaitMs", completed > 0 ? (double) totalQueueWaitMs.get() / completed : 0.0);
+        return stats;
+    }
+
+    /**
+     * 雜湊執行緒池已滿或等待逾時
+     */
+    public static class HashingBusyException extends RuntimeException {
+        public HashingBusyException(String message) {
+            super(message);
+        }
+    }
+
+    // Private helper methods
+
+    @FunctionalInterface
+    private interface HashingTask<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * 在雜湊執行緒池中執行並等待結果
+     */
+    private <T> T runHashing(HashingTask<T> task) {
+        long enqueuedAt = System.currentTimeMillis();
+        Future<T> future;
+        try {
+            future = hashingExecutor.submit(() -> {
+                long waited = System.currentTimeMillis() - enqueuedAt;
+                totalQueueWaitMs.addAndGet(waited);
+                if (waited > maxQueueWaitMs) {
+                    // 呼叫端已放棄等待, 不再浪費CPU
+                    queueTimeouts.incrementAndGet();
+                    throw new HashingBusyException("Password hashing queue wait exceeded");
+                }
+                return task.run();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new HashingBusyException("Password hashing queue is full");
+        }
+
+        try {
+            // 最長等待 = 佇列等待上限 + 一次雜湊運算的餘裕
+            return future.get(maxQueueWaitMs + 2000, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            queueTimeouts.incrementAndGet();
+            throw new HashingBusyException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new HashingBusyException("Password hashing interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HashingBusyException busy) {
+                throw busy;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private boolean matches(String rawPassword, String storedHash) {
+        verifications.incrementAndGet();
 
         // 檢查是否為BCrypt格式
-        if (storedHash.startsWith("$2a$") || storedHash.startsWith("$2b$") || storedHash.startsWith("$2y$")) {
+        if (isBCrypt(storedHash)) {
             return passwordEncoder.matches(rawPassword, storedHash);
         }
-        
+
         // 檢查是否為SHA-256格式（64字符十六進制）
-        if (storedHash.length() == 64 && storedHash.matches("^[a-fA-F0-9]+$")) {
+        if (isSha256Hex(storedHash)) {
             return verifySHA256Password(rawPassword, storedHash);
         }
-        
-        // 不支持的格式
-        System.err.println("Unsupported password hash format: " + storedHash);
+
+        // 不支持的格式 (不輸出雜湊內容)
+        System.err.println("Unsupported password hash format");
         return false;
     }
 
+    /**
+     * 以BCrypt重新雜湊舊的SHA-256密碼, 不阻塞登入
+     * 執行緒池忙碌時略過, 下次登入再升級
+     */
+    private void upgradeLegacyHash(String userId, String rawPassword, String legacyHash) {
+        try {
+            hashingExecutor.execute(() -> {
+                try {
+                    String upgraded = passwordEncoder.encode(rawPassword);
+                    if (userDAO.updatePasswordHashIfUnchanged(userId, upgraded, legacyHash)) {
+                        legacyUpgrades.incrementAndGet();
+                        System.out.println("Upgraded legacy password hash to BCrypt for user: " + userId);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error upgrading legacy password hash: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 執行緒池已滿, 下次登入再升級
+        }
+    }
+
     /**
      * 驗證SHA-256密碼 - 只進行精確匹配
      * 不再支持常見密碼回退邏輯以修復安全漏洞
      */
     private boolean verifySHA256Password(String rawPassword, String storedHash) {
         try {
-            // 計算輸入密碼的SHA-256哈希
-            String computedHash = computeSHA256(rawPassword);
-            boolean directMatch = computedHash.equalsIgnoreCase(storedHash);
-            
-            System.out.println("SHA-256 Password verification: " + 
-                "Input='" + rawPassword + "', " +
-                "Computed hash=" + computedHash.substring(0, 8) + "..., " +
-                "Stored hash=" + storedHash.substring(0, 8) + "..., " +
-                "Match=" + directMatch);
-            
-            return directMatch;
+            // 計算輸入密碼的SHA-256哈希, 以固定時間比較
+            byte[] computed = computeSHA256(rawPassword).getBytes(StandardCharsets.US_ASCII);
+            byte[] stored = storedHash.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(computed, stored);
         } catch (Exception e) {
             System.err.println("Error verifying SHA-256 password: " + e.getMessage());
             return false;
@@ -75,8 +286,8 @@ public class PasswordService {
      */
     private String computeSHA256(String input) throws NoSuchAlgorithmException {
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(input.getBytes());
-        
+        byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+
         StringBuilder hexString = new StringBuilder();
         for (byte b : hash) {
             String hex = Integer.toHexString(0xff & b);
@@ -85,42 +296,25 @@ public class PasswordService {
             }
             hexString.append(hex);
         }
-        
+
         return hexString.toString();
     }
 
-    /**
-     * 生成BCrypt密碼哈希（用於新密碼）
-     */
-    public String encodePassword(String rawPassword) {
-        return passwordEncoder.encode(rawPassword);
+    private boolean isBCrypt(String hash) {
+        return hash.startsWith("$2a$") || hash.startsWith("$2b$") || hash.startsWith("$2y$");
     }
 
-    /**
-     * 檢查密碼格式
-     */
-    public String getPasswordFormat(String hash) {
-        if (hash == null) {
-            return "NULL";
-        } else if (hash.startsWith("$2a$") || hash.startsWith("$2b$") || hash.startsWith("$2y$")) {
-            return "BCRYPT";
-        } else if (hash.length() == 64 && hash.matches("^[a-fA-F0-9]+$")) {
-            return "SHA256";
-        } else {
-            return "UNKNOWN";
+    private boolean isSha256Hex(String hash) {
+        if (hash.length() != 64) {
+            return false;
         }
-    }
-    
-    /**
-     * 用於測試目的：驗證特定測試密碼
-     */
-    public boolean isTestPassword(String rawPassword, String storedHash) {
-        // 專門測試 password123 對應的哈希
-        String expectedHash = "ef92b778bafe771e89245b89ecbc08a44a4e166c06659911881f383d4473e94f";
-        if (storedHash.equalsIgnoreCase(expectedHash)) {
-            return rawPassword.equals("password123");
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            boolean hex = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+            if (!hex) {
+                return false;
+            }
         }
-        
-        return verifyPassword(rawPassword, storedHash);
+        return true;
     }
-}
\ No newline at end of file
+}
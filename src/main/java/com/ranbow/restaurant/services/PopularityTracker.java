@@ -0,0 +1,433 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ranbow.restaurant.config.WebSocketEventRelay;
+import com.ranbow.restaurant.dao.OrderDAO;
+import com.ranbow.restaurant.events.OrderStatusChangeEvent;
+import com.ranbow.restaurant.models.Order;
+import com.ranbow.restaurant.models.OrderItem;
+import com.ranbow.restaurant.models.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Sliding-window sales counters for menu popularity
+ * Confirmed order lines are added to one ring of time buckets per window (minutes for the
+ * last hour, one bucket per calendar day for today, hours for the last 7 days) with running
+ * per-item totals, so a ranking is a top-K heap over the totals of the live buckets. The
+ * menu has only a few hundred items, so exact counters are used rather than a count-min
+ * sketch. Lines confirmed on other nodes arrive through the relay; on startup the counters
+ * are rebuilt from the orders of the last 7 days. Later cancellations are not subtracted.
+ */
+@Component
+public class PopularityTracker {
+
+    /**
+     * Ranking windows, addressed in requests by their key
+     */
+    public enum Window {
+        LAST_HOUR("hour"),
+        TODAY("today"),
+        LAST_7_DAYS("7d");
+
+        private final String key;
+
+        Window(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the key is not a known window
+         */
+        public static Window fromKey(String key) {
+            for (Window window : values()) {
+                if (window.key.equalsIgnoreCase(key) || window.name().equalsIgnoreCase(key)) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Unknown popularity window: " + key);
+        }
+    }
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 3_600_000L;
+
+    @Autowired
+    private OrderDAO orderDAO;
+
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${menu.popularity.backfill:true}")
+    private boolean backfillEnabled;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final Map<Window, SlidingCounter> counters = new EnumMap<>(Window.class);
+
+    // 回填完成前即時計入的訂單, 回填時略過以免重複計算
+    private Set<String> liveOrderIds = new HashSet<>();
+    private boolean backfilled;
+
+    // Metrics
+    private long recordedLines;
+    private long relayedLines;
+    private long backfilledLines;
+
+    public PopularityTracker() {
+        counters.put(Window.LAST_HOUR, new SlidingCounter(60, ts -> Math.floorDiv(ts, MINUTE_MS)));
+        counters.put(Window.TODAY, new SlidingCounter(1,
+            ts -> LocalDate.ofInstant(Instant.ofEpochMilli(ts), zone).toEpochDay()));
+        counters.put(Window.LAST_7_DAYS, new SlidingCounter(7 * 24, ts -> Math.floorDiv(ts, HOUR_MS)));
+    }
+
+    @PostConstruct
+    public void init() {
+        eventRelay.register(WebSocketEventRelay.POPULARITY_CHANNEL, (routing, event) -> {
+            String orderId = event.path("orderId").asText(null);
+            long at = event.path("at").asLong(System.currentTimeMillis());
+            List<Line> lines = new ArrayList<>();
+            for (JsonNode line : event.path("items")) {
+                lines.add(new Line(line.path("id").asText(), line.path("qty").asLong(),
+                    line.path("cents").asLong()));
+            }
+            synchronized (this) {
+                relayedLines += lines.size();
+            }
+            record(orderId, lines, at);
+        });
+    }
+
+    /**
+     * Count an order's lines when it is confirmed on this node, and relay them to the others
+     */
+    @EventListener
+    public void onOrderStatusChange(OrderStatusChangeEvent event) {
+        if (event.getNewStatus() != OrderStatus.CONFIRMED
+                || (event.getOldStatus() != OrderStatus.PENDING && event.getOldStatus() != OrderStatus.PENDING_PAYMENT)) {
+            return;
+        }
+
+        try {
+            List<Line> lines = linesOf(event.getOrder());
+            if (lines.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                recordedLines += lines.size();
+            }
+            record(event.getOrderId(), lines, now);
+
+            ObjectNode relayed = objectMapper.createObjectNode();
+            relayed.put("type", "order_lines_confirmed");
+            relayed.put("orderId", event.getOrderId());
+            relayed.put("at", now);
+            ArrayNode items = relayed.putArray("items");
+            for (Line line : lines) {
+                items.addObject().put("id", line.itemId).put("qty", line.quantity).put("cents", line.revenueCents);
+            }
+            eventRelay.publish(WebSocketEventRelay.POPULARITY_CHANNEL, Collections.emptyMap(), relayed);
+        } catch (Exception e) {
+            System.err.println("Error recording popularity for order " + event.getOrderId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the counters from the orders of the last 7 days
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfillEnabled) {
+            markBackfilled();
+            return;
+        }
+
+        try {
+            List<Map<String, Object>> rows = orderDAO.findConfirmedOrderLinesSince(LocalDateTime.now().minusDays(7));
+            int added = 0;
+            synchronized (this) {
+                for (Map<String, Object> row : rows) {
+                    if (liveOrderIds.contains(String.valueOf(row.get("order_id")))) {
+                        continue;
+                    }
+                    Object orderTime = row.get("order_time");
+                    long at = orderTime instanceof Timestamp timestamp ? timestamp.getTime() : System.currentTimeMillis();
+                    BigDecimal total = row.get("item_total") instanceof BigDecimal value ? value : BigDecimal.ZERO;
+                    Line line = new Line(String.valueOf(row.get("menu_item_id")),
+                        ((Number) row.get("quantity")).longValue(), toCents(total));
+                    for (SlidingCounter counter : counters.values()) {
+                        counter.add(line, at, System.currentTimeMillis());
+                    }
+                    added++;
+                }
+                backfilledLines = added;
+            }
+            System.out.println("Backfilled popularity counters with " + added + " order lines");
+        } catch (Exception e) {
+            System.err.println("Error backfilling popularity counters: " + e.getMessage());
+        } finally {
+            markBackfilled();
+        }
+    }
+
+    /**
+     * Best-selling items of a window by quantity (ties broken by revenue)
+     * @param filter Only items accepted by the filter are ranked, e.g. available items
+     */
+    public synchronized List<ItemSales> top(Window window, int limit, Predicate<String> filter) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        SlidingCounter counter = counters.get(window);
+        counter.expire(System.currentTimeMillis());
+
+        // 大小為 K 的最小堆, 堆頂為目前第 K 名
+        PriorityQueue<ItemSales> heap = new PriorityQueue<>(limit + 1, ItemSales::compareTo);
+        for (Map.Entry<String, Tally> entry : counter.totals.entrySet()) {
+            if (filter != null && !filter.test(entry.getKey())) {
+                continue;
+            }
+            ItemSales candidate = new ItemSales(entry.getKey(), entry.getValue().quantity, entry.getValue().revenueCents);
+            if (heap.size() < limit) {
+                heap.add(candidate);
+            } else if (candidate.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        List<ItemSales> ranked = new ArrayList<>(heap);
+        ranked.sort(Collections.reverseOrder(ItemSales::compareTo));
+        return ranked;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new HashMap<>();
+        for (Map.Entry<Window, SlidingCounter> entry : counters.entrySet()) {
+            entry.getValue().expire(now);
+            stats.put(entry.getKey().getKey() + "Items", entry.getValue().totals.size());
+        }
+        stats.put("recordedLines", recordedLines);
+        stats.put("relayedLines", relayedLines);
+        stats.put("backfilledLines", backfilledLines);
+        stats.put("backfilled", backfilled);
+        return stats;
+    }
+
+    // Private helper methods
+
+    private synchronized void record(String orderId, List<Line> lines, long at) {
+        if (!backfilled && orderId != null) {
+            liveOrderIds.add(orderId);
+        }
+        long now = System.currentTimeMillis();
+        for (Line line : lines) {
+            for (SlidingCounter counter : counters.values()) {
+                counter.add(line, at, now);
+            }
+        }
+    }
+
+    private synchronized void markBackfilled() {
+        backfilled = true;
+        liveOrderIds = new HashSet<>();
+    }
+
+    private List<Line> linesOf(Order order) {
+        List<Line> lines = new ArrayList<>();
+        if (order == null || order.getOrderItems() == null) {
+            return lines;
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            if (item.getMenuItem() == null || item.getMenuItem().getItemId() == null) {
+                continue;
+            }
+            BigDecimal total = item.getItemTotal() != null ? item.getItemTotal() : BigDecimal.ZERO;
+            lines.add(new Line(item.getMenuItem().getItemId(), item.getQuantity(), toCents(total)));
+        }
+        return lines;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).longValue();
+    }
+
+    /**
+     * One order line: item, quantity and line total in cents
+     */
+    static class Line {
+        private final String itemId;
+        private final long quantity;
+        private final long revenueCents;
+
+        Line(String itemId, long quantity, long revenueCents) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+            this.revenueCents = revenueCents;
+        }
+    }
+
+    /**
+     * Running quantity and revenue of one item
+     */
+    private static class Tally {
+        private long quantity;
+        private long revenueCents;
+
+        boolean isEmpty() {
+            return quantity <= 0 && revenueCents <= 0;
+        }
+    }
+
+    @FunctionalInterface
+    interface BucketIndex {
+        long of(long epochMillis);
+    }
+
+    /**
+     * Ring of time buckets with per-item totals over the buckets still in the window.
+     * A slot is reused (and its counts subtracted from the totals) once its bucket index
+     * falls out of the window. Callers hold the tracker lock.
+     */
+    static class SlidingCounter {
+        private final int size;
+        private final BucketIndex bucketIndex;
+        private final long[] slotIndex;
+        private final List<Map<String, Tally>> slots;
+        private final Map<String, Tally> totals = new HashMap<>();
+
+        SlidingCounter(int size, BucketIndex bucketIndex) {
+            this.size = size;
+            this.bucketIndex = bucketIndex;
+            this.slotIndex = new long[size];
+            this.slots = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                slotIndex[i] = Long.MIN_VALUE;
+                slots.add(new HashMap<>());
+            }
+        }
+
+        void add(Line line, long at, long now) {
+            long current = bucketIndex.of(now);
+            // 時鐘誤差造成的未來時間計入目前的桶
+            long index = Math.min(bucketIndex.of(at), current);
+            if (index <= current - size) {
+                return;
+            }
+
+            int slot = (int) Math.floorMod(index, (long) size);
+            if (slotIndex[slot] != index) {
+                if (slotIndex[slot] > index) {
+                    // 槽位已被較新的桶使用, 代表此筆已超出視窗
+                    return;
+                }
+                clear(slot);
+                slotIndex[slot] = index;
+            }
+
+            Tally bucket = slots.get(slot).computeIfAbsent(line.itemId, id -> new Tally());
+            bucket.quantity += line.quantity;
+            bucket.revenueCents += line.revenueCents;
+            Tally total = totals.computeIfAbsent(line.itemId, id -> new Tally());
+            total.quantity += line.quantity;
+            total.revenueCents += line.revenueCents;
+        }
+
+        void expire(long now) {
+            long oldest = bucketIndex.of(now) - size;
+            for (int slot = 0; slot < size; slot++) {
+                if (slotIndex[slot] != Long.MIN_VALUE && slotIndex[slot] <= oldest) {
+                    clear(slot);
+                    slotIndex[slot] = Long.MIN_VALUE;
+                }
+            }
+        }
+
+        long quantityOf(String itemId) {
+            Tally total = totals.get(itemId);
+            return total != null ? total.quantity : 0;
+        }
+
+        int itemCount() {
+            return totals.size();
+        }
+
+        private void clear(int slot) {
+            Map<String, Tally> bucket = slots.get(slot);
+            for (Map.Entry<String, Tally> entry : bucket.entrySet()) {
+                Tally total = totals.get(entry.getKey());
+                if (total == null) {
+                    continue;
+                }
+                total.quantity -= entry.getValue().quantity;
+                total.revenueCents -= entry.getValue().revenueCents;
+                if (total.isEmpty()) {
+                    totals.remove(entry.getKey());
+                }
+            }
+            bucket.clear();
+        }
+    }
+
+    /**
+     * Sales of one item within a window
+     */
+    public static class ItemSales implements Comparable<ItemSales> {
+        private final String itemId;
+        private final long quantity;
+        private final long revenueCents;
+
+        ItemSales(String itemId, long quantity, long revenueCents) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+            this.revenueCents = revenueCents;
+        }
+
+        public String getItemId() { return itemId; }
+        public long getQuantity() { return quantity; }
+        public double getRevenue() { return revenueCents / 100.0; }
+
+        @Override
+        public int compareTo(ItemSales other) {
+            int byQuantity = Long.compare(quantity, other.quantity);
+            if (byQuantity != 0) {
+                return byQuantity;
+            }
+            int byRevenue = Long.compare(revenueCents, other.revenueCents);
+            return byRevenue != 0 ? byRevenue : other.itemId.compareTo(itemId);
+        }
+    }
+}
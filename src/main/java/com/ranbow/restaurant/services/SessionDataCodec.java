@@ -0,0 +1,142 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary codec for {@link SessionService.SessionData} stored in Redis
+ *
+ * Layout (big-endian): magic 0xA5, version, then the fields in a fixed order.
+ * Strings are a u16 byte length (0xFFFF for null) followed by UTF-8; times are
+ * epoch seconds (i64, UTC) plus nanos (i32), with Long.MIN_VALUE for null; the
+ * last byte holds flags (bit 0 = active). userId is always the first field so
+ * Lua scripts can read it without a full decode.
+ *
+ * New versions may only append fields; readers ignore trailing bytes they do not
+ * know. Values that start with '{' are the previous JSON format and are still read.
+ */
+@Component
+public class SessionDataCodec {
+
+    public static final int MAGIC = 0xA5;
+    public static final int VERSION = 1;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int FLAG_ACTIVE = 1;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public byte[] encode(SessionService.SessionData data) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            writeString(out, data.getUserId());
+            writeString(out, data.getSessionId());
+            writeString(out, data.getDeviceInfo());
+            writeString(out, data.getIpAddress());
+            writeTime(out, data.getCreatedAt());
+            writeTime(out, data.getLastAccess());
+            out.writeByte(data.isActive() ? FLAG_ACTIVE : 0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode session", e);
+        }
+    }
+
+    /**
+     * Decode a stored value in either the binary or the legacy JSON format
+     * @return Session data, or null if the value is empty or not recognised
+     */
+    public SessionService.SessionData decode(byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+
+        try {
+            if (value[0] == '{') {
+                // 舊版 JSON 格式, 滾動部署期間仍可讀取
+                return objectMapper.readValue(value, SessionService.SessionData.class);
+            }
+            if ((value[0] & 0xFF) != MAGIC) {
+                return null;
+            }
+
+            ByteBuffer in = ByteBuffer.wrap(value);
+            in.get();
+            int version = in.get() & 0xFF;
+            if (version < 1) {
+                return null;
+            }
+
+            SessionService.SessionData data = new SessionService.SessionData();
+            data.setUserId(readString(in));
+            data.setSessionId(readString(in));
+            data.setDeviceInfo(readString(in));
+            data.setIpAddress(readString(in));
+            data.setCreatedAt(readTime(in));
+            data.setLastAccess(readTime(in));
+            data.setActive((in.get() & FLAG_ACTIVE) != 0);
+            // Fields appended by newer versions are skipped
+            return data;
+        } catch (Exception e) {
+            System.err.println("Error decoding session data: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Private helper methods
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Session field too long: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(Long.MIN_VALUE);
+            out.writeInt(0);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private LocalDateTime readTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        if (seconds == Long.MIN_VALUE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ranbow.restaurant.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Local Bloom filter of revoked session IDs
+ * Used only while Redis is unavailable, to reject JWTs whose session was logged out or
+ * evicted. False positives reject a valid session (the user logs in again once Redis is
+ * back); there are no false negatives for revocations this node has seen. Bloom filters
+ * cannot delete, so the filter is rebuilt from the Redis revocation set periodically and
+ * on recovery, which also drops revocations whose tokens have expired.
+ */
+@Component
+public class SessionRevocationFilter {
+
+    @Value("${session.degraded.revocation-filter.expected-entries:100000}")
+    private int expectedEntries;
+
+    @Value("${session.degraded.revocation-filter.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private final AtomicReference<Bits> current = new AtomicReference<>();
+
+    // 重建期間新增的撤銷, 重建完成後補入新的過濾器
+    private volatile Queue<String> addedSinceRebuild = new ConcurrentLinkedQueue<>();
+
+    private volatile long lastRebuiltAt;
+    private volatile int lastRebuildSize;
+
+    public void add(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        // 先記錄再寫入, 與 rebuild 的交換順序相反, 確保不會遺漏
+        addedSinceRebuild.add(sessionId);
+        bits().add(sessionId);
+    }
+
+    public boolean mightContain(String sessionId) {
+        return sessionId != null && bits().mightContain(sessionId);
+    }
+
+    /**
+     * Replace the filter with one built from the given revoked session IDs
+     */
+    public synchronized void rebuild(Collection<String> revokedSessionIds) {
+        Queue<String> pending = new ConcurrentLinkedQueue<>();
+        addedSinceRebuild = pending;
+
+        Bits rebuilt = new Bits(Math.max(expectedEntries, revokedSessionIds.size() * 2), falsePositiveRate);
+        for (String sessionId : revokedSessionIds) {
+            rebuilt.add(sessionId);
+        }
+        current.set(rebuilt);
+        for (String sessionId : pending) {
+            rebuilt.add(sessionId);
+        }
+
+        lastRebuiltAt = System.currentTimeMillis();
+        lastRebuildSize = revokedSessionIds.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Bits bits = bits();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bits", bits.size);
+        stats.put("hashFunctions", bits.hashes);
+        stats.put("expectedEntries", expectedEntries);
+        stats.put("falsePositiveRate", falsePositiveRate);
+        stats.put("lastRebuiltAt", lastRebuiltAt);
+        stats.put("lastRebuildSize", lastRebuildSize);
+        stats.put("addedSinceRebuild", addedSinceRebuild.size());
+        return stats;
+    }
+
+    // Private helper methods
+
+    private Bits bits() {
+        Bits bits = current.get();
+        if (bits == null) {
+            current.compareAndSet(null, new Bits(expectedEntries, falsePositiveRate));
+            bits = current.get();
+        }
+        return bits;
+    }
+
+    /**
+     * Fixed-size bit array with k probes from double hashing (FNV-1a 64 plus a mixed second hash)
+     */
+    private static class Bits {
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+
+        Bits(int entries, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.size = Math.max(64, bits);
+            this.hashes = Math.max(1, (int) Math.round((double) size / entries * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((size + 63) / 64));
+        }
+
+        void add(String value) {
+            long h1 = fnv1a(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long index = Long.remainderUnsigned(h1 + i * h2, size);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long previous;
+                do {
+                    previous = words.get(word);
+                } while ((previous & mask) == 0 && !words.compareAndSet(word, previous, previous | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = fnv1a(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long index = Long.remainderUnsigned(h1 + i * h2, size);
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long fnv1a(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return z ^ (z >>> 33);
+        }
+    }
+}
@@ -1,14 +1,31 @@
 package com.ranbow.restaurant.services;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import com.ranbow.restaurant.config.WebSocketEventRelay;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class SessionService {
@@ -16,17 +33,284 @@ public class SessionService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionDataCodec sessionDataCodec;
+
+    @Autowired
+    private CardinalityService cardinalityService;
+
+    @Autowired
+    private WebSocketEventRelay eventRelay;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private SessionRevocationFilter revocationFilter;
+
+    @Value("${session.near-cache.enabled:true}")
+    private boolean nearCacheEnabled;
+
+    @Value("${session.near-cache.ttl-ms:5000}")
+    private long nearCacheTtlMs;
+
+    @Value("${session.near-cache.max-entries:10000}")
+    private int nearCacheMaxEntries;
+
+    // 剩餘存活時間低於此值時才以 EXPIRE 延長會話
+    @Value("${session.refresh-threshold-seconds:1200}")
+    private long refreshThresholdSeconds;
+
+    // Redis 無法使用時改以 JWT 加本地撤銷過濾器驗證
+    @Value("${session.degraded.enabled:true}")
+    private boolean degradedModeEnabled;
+
+    // 降級時僅接受本節點在此時間內曾向 Redis 驗證成功的會話 (近端快取中的紀錄)
+    @Value("${session.degraded.grace-ms:900000}")
+    private long degradedGraceMs;
+
+    // 撤銷紀錄保留到以該會話簽發的 Token 全部過期
+    @Value("${jwt.expiration:86400000}")
+    private long jwtExpirationMs;
+
     // 會話過期時間（分鐘）
     private final int SESSION_TIMEOUT_MINUTES = 30;
     
     // 最大會話數限制
     private final int MAX_SESSIONS_PER_USER = 5;
 
+    // 活躍用戶索引: 有序集合, 分數為該用戶最晚的會話過期時間 (epoch millis)
+    private static final String ACTIVE_USERS_KEY = "active:users:index";
+
+    // 舊版索引 (集合, 無過期分數): user:{id}:sessions 與 active:users, 啟動時搬移到有序集合索引
+    private static final String LEGACY_ACTIVE_USERS_KEY = "active:users";
+    private static final String LEGACY_USER_SESSIONS_PATTERN = "user:*:sessions";
+
+    // 已撤銷會話: 有序集合, 分數為撤銷紀錄的過期時間 (epoch millis), 用於重建本地撤銷過濾器
+    private static final String REVOKED_SESSIONS_KEY = "session:revoked";
+
+    // 多鍵會話操作的 Lua 腳本 (單機 Redis, 會話鍵與用戶索引鍵由腳本內依 ID 組成)
+    // 用戶會話索引 user:{id}:session-index 為有序集合, 分數為會話過期時間 (epoch millis)
+
+    // KEYS: 用戶會話索引, 活躍用戶索引, 新會話鍵, 已撤銷會話; ARGV: sessionId, 編碼後的會話, TTL秒數, 會話上限, userId, 現在時間, 撤銷紀錄過期時間
+    // 返回被淘汰的會話ID
+    private static final RedisScript<List> CREATE_SESSION_SCRIPT = new DefaultRedisScript<>("""
+        local now = tonumber(ARGV[6])
+        local expiresAt = now + tonumber(ARGV[3]) * 1000
+        redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)
+        redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now)
+        local evicted = {}
+        local excess = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[4]) + 1
+        if excess > 0 then
+            local popped = redis.call('ZPOPMIN', KEYS[1], excess)
+            for i = 1, #popped, 2 do
+                redis.call('DEL', 'session:' .. popped[i])
+                redis.call('ZADD', KEYS[4], ARGV[7], popped[i])
+                table.insert(evicted, popped[i])
+            end
+        end
+        redis.call('SET', KEYS[3], ARGV[2], 'EX', tonumber(ARGV[3]))
+        redis.call('ZADD', KEYS[1], expiresAt, ARGV[1])
+        redis.call('PEXPIREAT', KEYS[1], expiresAt)
+        redis.call('ZADD', KEYS[2], expiresAt, ARGV[5])
+        return evicted
+        """, List.class);
+
+    // 從會話值讀取 userId: 二進位格式 (見 SessionDataCodec) 的第一個欄位, 或舊版 JSON
+    private static final String SESSION_USER_ID_LUA = """
+        local function sessionUserId(value)
+            if string.byte(value, 1) == 165 then
+                local length = string.byte(value, 3) * 256 + string.byte(value, 4)
+                if length == 65535 then
+                    return nil
+                end
+                return string.sub(value, 5, 4 + length)
+            end
+            local ok, data = pcall(cjson.decode, value)
+            if ok and type(data) == 'table' and type(data.userId) == 'string' then
+                return data.userId
+            end
+            return nil
+        end
+        """;
+
+    // KEYS: 會話鍵, 活躍用戶索引; ARGV: sessionId, TTL秒數, 現在時間
+    // 返回 1 表示已延長, 0 表示會話不存在
+    private static final RedisScript<Long> REFRESH_SESSION_SCRIPT = new DefaultRedisScript<>(SESSION_USER_ID_LUA + """
+        local value = redis.call('GET', KEYS[1])
+        if not value then
+            return 0
+        end
+        redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2]))
+        local expiresAt = tonumber(ARGV[3]) + tonumber(ARGV[2]) * 1000
+        local userId = sessionUserId(value)
+        if userId then
+            local index = 'user:' .. userId .. ':session-index'
+            redis.call('ZADD', index, expiresAt, ARGV[1])
+            redis.call('PEXPIREAT', index, expiresAt)
+            redis.call('ZADD', KEYS[2], expiresAt, userId)
+        end
+        return 1
+        """, Long.class);
+
+    // KEYS: 會話鍵, 活躍用戶索引, 已撤銷會話; ARGV: sessionId, 現在時間, 撤銷紀錄過期時間
+    private static final RedisScript<List> INVALIDATE_SESSION_SCRIPT = new DefaultRedisScript<>(SESSION_USER_ID_LUA + """
+        redis.call('ZADD', KEYS[3], ARGV[3], ARGV[1])
+        local value = redis.call('GET', KEYS[1])
+        if not value then
+            return {}
+        end
+        redis.call('DEL', KEYS[1])
+        local userId = sessionUserId(value)
+        if userId then
+            local index = 'user:' .. userId .. ':session-index'
+            redis.call('ZREM', index, ARGV[1])
+            redis.call('ZREMRANGEBYSCORE', index, '-inf', tonumber(ARGV[2]))
+            local latest = redis.call('ZRANGE', index, -1, -1, 'WITHSCORES')
+            if #latest == 0 then
+                redis.call('ZREM', KEYS[2], userId)
+            else
+                redis.call('ZADD', KEYS[2], latest[2], userId)
+            end
+        end
+        return {}
+        """, List.class);
+
+    // KEYS: 用戶會話索引, 活躍用戶索引, 已撤銷會話; ARGV: userId, 撤銷紀錄過期時間
+    // 返回被撤銷的會話ID
+    private static final RedisScript<List> INVALIDATE_USER_SESSIONS_SCRIPT = new DefaultRedisScript<>("""
+        local ids = redis.call('ZRANGE', KEYS[1], 0, -1)
+        for _, id in ipairs(ids) do
+            redis.call('DEL', 'session:' .. id)
+            redis.call('ZADD', KEYS[3], ARGV[2], id)
+        end
+        redis.call('DEL', KEYS[1])
+        redis.call('ZREM', KEYS[2], ARGV[1])
+        return ids
+        """, List.class);
+
+    // KEYS: 用戶會話索引; ARGV: 現在時間; 返回仍存在的會話值
+    private static final RedisScript<List> LIST_USER_SESSIONS_SCRIPT = new DefaultRedisScript<>("""
+        redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', tonumber(ARGV[1]))
+        local ids = redis.call('ZRANGE', KEYS[1], 0, -1)
+        if #ids == 0 then
+            return {}
+        end
+        local keys = {}
+        for i, id in ipairs(ids) do
+            keys[i] = 'session:' .. id
+        end
+        local values = redis.call('MGET', unpack(keys))
+        local result = {}
+        for i = 1, #ids do
+            if values[i] then
+                table.insert(result, values[i])
+            else
+                redis.call('ZREM', KEYS[1], ids[i])
+            end
+        end
+        return result
+        """, List.class);
+
+    // KEYS: 舊版用戶會話集合, 用戶會話索引, 活躍用戶索引; ARGV: userId, 現在時間
+    // 舊集合成員由 RedisTemplate 以 JSON 字串寫入; 仍存在的會話依剩餘存活時間加入索引, 之後刪除舊集合
+    // 返回搬移的會話數
+    private static final RedisScript<Long> MIGRATE_LEGACY_INDEX_SCRIPT = new DefaultRedisScript<>("""
+        local now = tonumber(ARGV[2])
+        local migrated = 0
+        for _, member in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+            local ok, id = pcall(cjson.decode, member)
+            if not ok or type(id) ~= 'string' then
+                id = member
+            end
+            local ttl = redis.call('PTTL', 'session:' .. id)
+            if ttl > 0 then
+                redis.call('ZADD', KEYS[2], now + ttl, id)
+                migrated = migrated + 1
+            end
+        end
+        redis.call('DEL', KEYS[1])
+        local latest = redis.call('ZRANGE', KEYS[2], -1, -1, 'WITHSCORES')
+        if #latest > 0 then
+            redis.call('PEXPIREAT', KEYS[2], latest[2])
+            redis.call('ZADD', KEYS[3], latest[2], ARGV[1])
+        end
+        return migrated
+        """, Long.class);
+
+    // 本地近端快取: sessionId -> 已驗證的會話
+    private final Map<String, CachedSession> nearCache = new ConcurrentHashMap<>();
+
+    // 舊版索引是否已搬移完成 (本節點)
+    private volatile boolean legacyIndexMigrated;
+
+    // Metrics
+    private final AtomicLong nearCacheHits = new AtomicLong();
+    private final AtomicLong nearCacheMisses = new AtomicLong();
+    private final AtomicLong ttlRefreshes = new AtomicLong();
+    private final AtomicLong degradedValidations = new AtomicLong();
+    private final AtomicLong degradedRejections = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 其他節點登出或撤銷會話時, 清除本節點的快取
+        eventRelay.register(WebSocketEventRelay.SESSIONS_CHANNEL, (routing, event) -> {
+            evictLocally(routing.get("sessionId"), routing.get("userId"));
+            revocationFilter.add(routing.get("sessionId"));
+        });
+
+        // Redis 恢復後以撤銷集合重建過濾器, 補上斷線期間其他節點的撤銷
+        circuitBreaker.onRecovery(this::rebuildRevocationFilter);
+        rebuildRevocationFilter();
+
+        // 舊版集合索引只搬移一次; 啟動時 Redis 無法使用則於恢復後重試
+        circuitBreaker.onRecovery(this::migrateLegacyIndexes);
+        migrateLegacyIndexes();
+    }
+
+    /**
+     * 將舊版集合索引 (user:{id}:sessions, active:users) 搬移到以過期時間為分數的有序集合
+     * 每位用戶以腳本原子搬移, 多個節點同時執行也只會搬移一次; 全部完成後才刪除舊的活躍用戶集合
+     */
+    void migrateLegacyIndexes() {
+        if (legacyIndexMigrated) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            int users = 0;
+            long sessions = 0;
+            ScanOptions options = ScanOptions.scanOptions().match(LEGACY_USER_SESSIONS_PATTERN).count(500).build();
+            try (Cursor<String> keys = circuitBreaker.call(() -> stringRedisTemplate.scan(options))) {
+                while (keys.hasNext()) {
+                    String legacyKey = keys.next();
+                    String userId = legacyKey.substring("user:".length(), legacyKey.length() - ":sessions".length());
+                    Long migrated = circuitBreaker.call(() -> stringRedisTemplate.execute(MIGRATE_LEGACY_INDEX_SCRIPT,
+                        List.of(legacyKey, userSessionsKey(userId), ACTIVE_USERS_KEY), userId, String.valueOf(now)));
+                    users++;
+                    sessions += migrated != null ? migrated : 0;
+                }
+            }
+            // 仍有會話的用戶已由上面的腳本加入新索引, 其餘成員沒有會話可搬
+            circuitBreaker.call(() -> stringRedisTemplate.delete(LEGACY_ACTIVE_USERS_KEY));
+            legacyIndexMigrated = true;
+            if (users > 0) {
+                System.out.println("Migrated " + sessions + " sessions of " + users + " users to the session index");
+            }
+        } catch (Exception e) {
+            System.err.println("Error migrating legacy session indexes: " + e.getMessage());
+        }
+    }
+
     /**
      * 創建新會話
+     * 清理過期會話、淘汰最舊會話與寫入新會話在同一個腳本中原子完成
      * @param userId 用戶ID
      * @param deviceInfo 設備信息
      * @param ipAddress IP地址
@@ -35,14 +319,6 @@ public class SessionService {
     public String createSession(String userId, String deviceInfo, String ipAddress) {
         String sessionId = UUID.randomUUID().toString();
         
-        // 檢查用戶會話數量限制
-        cleanupExpiredSessions(userId);
-        Set<Object> userSessions = redisTemplate.opsForSet().members("user:" + userId + ":sessions");
-        if (userSessions != null && userSessions.size() >= MAX_SESSIONS_PER_USER) {
-            // 移除最舊的會話
-            removeOldestSession(userId);
-        }
-        
         // 創建會話數據
         SessionData sessionData = new SessionData();
         sessionData.setUserId(userId);
@@ -53,52 +329,98 @@ public class SessionService {
         sessionData.setLastAccess(LocalDateTime.now());
         sessionData.setActive(true);
         
-        // 存儲會話數據到Redis
-        String sessionKey = "session:" + sessionId;
-        redisTemplate.opsForValue().set(sessionKey, sessionData, SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        // 一次往返: 清理過期會話、超出上限時彈出最早過期的會話、存儲新會話並更新索引
+        long now = System.currentTimeMillis();
+        List<byte[]> evicted = runScript(CREATE_SESSION_SCRIPT,
+            List.of(userSessionsKey(userId), ACTIVE_USERS_KEY, "session:" + sessionId, REVOKED_SESSIONS_KEY),
+            sessionId, sessionDataCodec.encode(sessionData), String.valueOf(TimeUnit.MINUTES.toSeconds(SESSION_TIMEOUT_MINUTES)),
+            String.valueOf(MAX_SESSIONS_PER_USER), userId, String.valueOf(now), String.valueOf(now + jwtExpirationMs));
         
-        // 添加到用戶會話集合
-        redisTemplate.opsForSet().add("user:" + userId + ":sessions", sessionId);
+        cardinalityService.record(CardinalityService.ACTIVE_USERS, userId);
         
-        // 添加到活躍用戶集合
-        redisTemplate.opsForSet().add("active:users", userId);
+        for (byte[] evictedBytes : evicted) {
+            String evictedId = new String(evictedBytes, StandardCharsets.UTF_8);
+            nearCache.remove(evictedId);
+            revocationFilter.add(evictedId);
+            publishEviction("sessionId", evictedId);
+        }
         
         return sessionId;
     }
 
     /**
      * 驗證會話有效性
+     * 近端快取命中時不存取 Redis; 僅在剩餘存活時間低於門檻時發出一次 EXPIRE
      * @param sessionId 會話ID
      * @return 會話數據，如果無效返回null
      */
     public SessionData validateSession(String sessionId) {
+        return validateSession(sessionId, null);
+    }
+
+    /**
+     * 驗證已通過簽章檢查的 Token 所屬會話
+     * Redis 無法使用 (斷路器開啟或呼叫失敗) 時降級為僅驗證 JWT, 並以本地撤銷過濾器
+     * 拒絕已登出的會話; 降級結果以 {@link SessionData#isDegraded()} 標示。
+     * @param tokenInfo 已驗證的 Token
+     * @return 會話數據，如果無效返回null
+     */
+    public SessionData validateSession(JwtService.TokenInfo tokenInfo) {
+        return validateSession(tokenInfo.getSessionId(), tokenInfo);
+    }
+
+    private SessionData validateSession(String sessionId, JwtService.TokenInfo tokenInfo) {
         if (sessionId == null || sessionId.isEmpty()) {
             return null;
         }
         
-        String sessionKey = "session:" + sessionId;
-        Object sessionObj = redisTemplate.opsForValue().get(sessionKey);
+        long now = System.currentTimeMillis();
+        CachedSession cached = nearCacheEnabled ? nearCache.get(sessionId) : null;
+        if (cached != null && now - cached.getCachedAt() < nearCacheTtlMs) {
+            nearCacheHits.incrementAndGet();
+            if (!extendIfNeeded(sessionId, cached, now)) {
+                return null;
+            }
+            // 每分鐘每位用戶最多寫入一次 Redis
+            cardinalityService.record(CardinalityService.ACTIVE_USERS, cached.getData().getUserId());
+            cached.getData().setLastAccess(LocalDateTime.now());
+            return cached.getData();
+        }
+        nearCacheMisses.incrementAndGet();
         
-        if (sessionObj == null) {
-            return null;
+        String sessionKey = "session:" + sessionId;
+        List<Object> results;
+        try {
+            // 一次往返同時取得會話數據與剩餘存活時間
+            byte[] rawKey = sessionKey.getBytes(StandardCharsets.UTF_8);
+            results = circuitBreaker.call(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().get(rawKey);
+                connection.keyCommands().pTtl(rawKey);
+                return null;
+            }, RedisSerializer.byteArray()));
+        } catch (Exception e) {
+            return validateDegraded(sessionId, tokenInfo, cached);
         }
         
         try {
-            SessionData sessionData;
-            if (sessionObj instanceof SessionData) {
-                sessionData = (SessionData) sessionObj;
-            } else {
-                // 處理反序列化
-                sessionData = objectMapper.convertValue(sessionObj, SessionData.class);
+            SessionData sessionData = sessionDataCodec.decode((byte[]) results.get(0));
+            if (sessionData == null || !sessionData.isActive()) {
+                nearCache.remove(sessionId);
+                return null;
             }
             
-            if (!sessionData.isActive()) {
+            Long remainingMs = (Long) results.get(1);
+            // 沒有 TTL (-1) 時視為即將過期, 立即補上
+            long expiresAt = remainingMs != null && remainingMs > 0 ? now + remainingMs : now;
+            CachedSession entry = new CachedSession(sessionData, now, expiresAt);
+            if (!extendIfNeeded(sessionId, entry, now)) {
                 return null;
             }
             
             // 更新最後訪問時間
-            refreshSession(sessionId);
-            
+            sessionData.setLastAccess(LocalDateTime.now());
+            cacheLocally(sessionId, entry, now);
+            cardinalityService.record(CardinalityService.ACTIVE_USERS, sessionData.getUserId());
             return sessionData;
             
         } catch (Exception e) {
@@ -109,15 +431,18 @@ public class SessionService {
 
     /**
      * 刷新會話過期時間
+     * 只延長 Redis TTL 與索引分數, 不重寫會話數據
      * @param sessionId 會話ID
      */
     public void refreshSession(String sessionId) {
-        String sessionKey = "session:" + sessionId;
-        SessionData sessionData = (SessionData) redisTemplate.opsForValue().get(sessionKey);
-        
-        if (sessionData != null) {
-            sessionData.setLastAccess(LocalDateTime.now());
-            redisTemplate.opsForValue().set(sessionKey, sessionData, SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        long now = System.currentTimeMillis();
+        CachedSession cached = nearCache.get(sessionId);
+        if (extend(sessionId, now)) {
+            if (cached != null) {
+                cached.setExpiresAt(now + TimeUnit.MINUTES.toMillis(SESSION_TIMEOUT_MINUTES));
+            }
+        } else {
+            nearCache.remove(sessionId);
         }
     }
 
@@ -126,24 +451,15 @@ public class SessionService {
      * @param sessionId 會話ID
      */
     public void invalidateSession(String sessionId) {
-        String sessionKey = "session:" + sessionId;
-        SessionData sessionData = (SessionData) redisTemplate.opsForValue().get(sessionKey);
+        nearCache.remove(sessionId);
+        // 先寫入本地撤銷過濾器, Redis 無法使用時本節點仍拒絕此會話
+        revocationFilter.add(sessionId);
+        publishEviction("sessionId", sessionId);
         
-        if (sessionData != null) {
-            String userId = sessionData.getUserId();
-            
-            // 從Redis刪除會話
-            redisTemplate.delete(sessionKey);
-            
-            // 從用戶會話集合中移除
-            redisTemplate.opsForSet().remove("user:" + userId + ":sessions", sessionId);
-            
-            // 檢查用戶是否還有其他活躍會話
-            Set<Object> userSessions = redisTemplate.opsForSet().members("user:" + userId + ":sessions");
-            if (userSessions == null || userSessions.isEmpty()) {
-                redisTemplate.opsForSet().remove("active:users", userId);
-            }
-        }
+        // 刪除會話、移出用戶索引, 無其他會話時移出活躍用戶, 並記錄撤銷 (原子操作)
+        long now = System.currentTimeMillis();
+        runScript(INVALIDATE_SESSION_SCRIPT, List.of("session:" + sessionId, ACTIVE_USERS_KEY, REVOKED_SESSIONS_KEY),
+            sessionId, String.valueOf(now), String.valueOf(now + jwtExpirationMs));
     }
 
     /**
@@ -151,36 +467,42 @@ public class SessionService {
      * @param userId 用戶ID
      */
     public void invalidateAllUserSessions(String userId) {
-        Set<Object> sessionIds = redisTemplate.opsForSet().members("user:" + userId + ":sessions");
+        // 本節點快取中的會話先寫入撤銷過濾器
+        nearCache.values().stream()
+            .filter(cached -> userId.equals(cached.getData().getUserId()))
+            .forEach(cached -> revocationFilter.add(cached.getData().getSessionId()));
         
-        if (sessionIds != null) {
-            for (Object sessionId : sessionIds) {
-                redisTemplate.delete("session:" + sessionId);
-            }
-        }
-        
-        // 清空用戶會話集合
-        redisTemplate.delete("user:" + userId + ":sessions");
+        // 一次往返刪除所有會話鍵與用戶會話索引
+        List<byte[]> revoked = runScript(INVALIDATE_USER_SESSIONS_SCRIPT,
+            List.of(userSessionsKey(userId), ACTIVE_USERS_KEY, REVOKED_SESSIONS_KEY),
+            userId, String.valueOf(System.currentTimeMillis() + jwtExpirationMs));
         
-        // 從活躍用戶集合中移除
-        redisTemplate.opsForSet().remove("active:users", userId);
+        evictLocally(null, userId);
+        publishEviction("userId", userId);
+        for (byte[] revokedBytes : revoked) {
+            String revokedId = new String(revokedBytes, StandardCharsets.UTF_8);
+            revocationFilter.add(revokedId);
+            publishEviction("sessionId", revokedId);
+        }
     }
 
     /**
      * 獲取用戶所有活躍會話
+     * 唯讀查詢, 不延長各會話的存活時間
      * @param userId 用戶ID
      * @return 會話列表
      */
     public List<SessionData> getUserActiveSessions(String userId) {
-        Set<Object> sessionIds = redisTemplate.opsForSet().members("user:" + userId + ":sessions");
         List<SessionData> sessions = new ArrayList<>();
         
-        if (sessionIds != null) {
-            for (Object sessionId : sessionIds) {
-                SessionData sessionData = validateSession((String) sessionId);
-                if (sessionData != null) {
-                    sessions.add(sessionData);
-                }
+        // 一次往返取得索引中所有未過期會話的數據 (並清除已過期的成員)
+        List<byte[]> values = runScript(LIST_USER_SESSIONS_SCRIPT, List.of(userSessionsKey(userId)),
+            String.valueOf(System.currentTimeMillis()));
+        for (byte[] value : values) {
+            SessionData sessionData = sessionDataCodec.decode(value);
+            // 無法解碼的會話略過
+            if (sessionData != null && sessionData.isActive()) {
+                sessions.add(sessionData);
             }
         }
         
@@ -188,53 +510,210 @@ public class SessionService {
     }
 
     /**
-     * 清理過期會話
-     * @param userId 用戶ID
+     * 獲取活躍用戶數量
+     * 只計算仍有未過期會話的用戶
+     * @return 活躍用戶數量
      */
-    private void cleanupExpiredSessions(String userId) {
-        Set<Object> sessionIds = redisTemplate.opsForSet().members("user:" + userId + ":sessions");
+    public long getActiveUserCount() {
+        Long size = stringRedisTemplate.opsForZSet().count(ACTIVE_USERS_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return size != null ? size : 0L;
+    }
+
+    /**
+     * 獲取所有活躍用戶ID
+     * @return 活躍用戶ID集合
+     */
+    public Set<Object> getActiveUsers() {
+        Set<String> userIds = stringRedisTemplate.opsForZSet().rangeByScore(ACTIVE_USERS_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return userIds != null ? new LinkedHashSet<>(userIds) : new LinkedHashSet<>();
+    }
+
+    /**
+     * 近端快取統計
+     */
+    public Map<String, Object> getNearCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", nearCacheEnabled);
+        stats.put("size", nearCache.size());
+        stats.put("hits", nearCacheHits.get());
+        stats.put("misses", nearCacheMisses.get());
+        stats.put("ttlRefreshes", ttlRefreshes.get());
+        stats.put("ttlMs", nearCacheTtlMs);
+        stats.put("refreshThresholdSeconds", refreshThresholdSeconds);
+        return stats;
+    }
+
+    /**
+     * 以 Redis 撤銷集合重建本地撤銷過濾器, 並清除已過期的撤銷紀錄
+     */
+    @Scheduled(fixedDelayString = "${session.degraded.rebuild-ms:600000}",
+               initialDelayString = "${session.degraded.rebuild-ms:600000}")
+    public void rebuildRevocationFilter() {
+        if (!degradedModeEnabled) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Set<String> revoked = circuitBreaker.call(() -> {
+                stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_SESSIONS_KEY, Double.NEGATIVE_INFINITY, now);
+                return stringRedisTemplate.opsForZSet().range(REVOKED_SESSIONS_KEY, 0, -1);
+            });
+            revocationFilter.rebuild(revoked != null ? revoked : Collections.emptySet());
+        } catch (Exception e) {
+            // Redis 無法使用時保留目前的過濾器
+            System.err.println("Error rebuilding session revocation filter: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 降級驗證統計
+     */
+    public Map<String, Object> getDegradedModeStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", degradedModeEnabled);
+        stats.put("graceMs", degradedGraceMs);
+        stats.put("circuitBreaker", circuitBreaker.getStats());
+        stats.put("revocationFilter", revocationFilter.getStats());
+        stats.put("degradedValidations", degradedValidations.get());
+        stats.put("degradedRejections", degradedRejections.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    /**
+     * Redis 無法使用時僅依 JWT 驗證
+     * 只接受本節點近端快取中曾向 Redis 驗證成功、且未超過寬限時間的會話;
+     * 從未見過的會話、已撤銷 (或過濾器誤判) 的會話一律拒絕
+     */
+    private SessionData validateDegraded(String sessionId, JwtService.TokenInfo tokenInfo, CachedSession stale) {
+        if (!degradedModeEnabled || tokenInfo == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (stale == null
+                || now - stale.getCachedAt() > degradedGraceMs
+                || now >= stale.getExpiresAt()
+                || !tokenInfo.getUserId().equals(stale.getData().getUserId())
+                || revocationFilter.mightContain(sessionId)) {
+            degradedRejections.incrementAndGet();
+            return null;
+        }
+        degradedValidations.incrementAndGet();
         
-        if (sessionIds != null) {
-            for (Object sessionId : sessionIds) {
-                if (redisTemplate.opsForValue().get("session:" + sessionId) == null) {
-                    redisTemplate.opsForSet().remove("user:" + userId + ":sessions", sessionId);
-                }
-            }
+        SessionData sessionData = new SessionData();
+        sessionData.setUserId(tokenInfo.getUserId());
+        sessionData.setSessionId(sessionId);
+        sessionData.setDeviceInfo(tokenInfo.getDeviceInfo());
+        sessionData.setIpAddress(stale.getData().getIpAddress());
+        sessionData.setCreatedAt(stale.getData().getCreatedAt());
+        sessionData.setLastAccess(LocalDateTime.now());
+        sessionData.setActive(true);
+        sessionData.setDegraded(true);
+        return sessionData;
+    }
+
+    /**
+     * 剩餘存活時間低於門檻時以 EXPIRE 延長
+     * Redis 無法使用時保留會話, 下次驗證再延長
+     * @return false 表示會話已不存在於 Redis
+     */
+    private boolean extendIfNeeded(String sessionId, CachedSession entry, long now) {
+        if (entry.getExpiresAt() - now >= TimeUnit.SECONDS.toMillis(refreshThresholdSeconds)) {
+            return true;
         }
+        
+        boolean extended;
+        try {
+            extended = extend(sessionId, now);
+        } catch (Exception e) {
+            return true;
+        }
+        if (!extended) {
+            nearCache.remove(sessionId);
+            return false;
+        }
+        entry.setExpiresAt(now + TimeUnit.MINUTES.toMillis(SESSION_TIMEOUT_MINUTES));
+        return true;
     }
 
     /**
-     * 移除最舊的會話
-     * @param userId 用戶ID
+     * 延長會話 TTL 並同步更新用戶與活躍用戶索引的過期分數
      */
-    private void removeOldestSession(String userId) {
-        List<SessionData> sessions = getUserActiveSessions(userId);
-        if (!sessions.isEmpty()) {
-            SessionData oldestSession = sessions.stream()
-                    .min(Comparator.comparing(SessionData::getCreatedAt))
-                    .orElse(null);
-            
-            if (oldestSession != null) {
-                invalidateSession(oldestSession.getSessionId());
+    private boolean extend(String sessionId, long now) {
+        ttlRefreshes.incrementAndGet();
+        Long extended = circuitBreaker.call(() -> stringRedisTemplate.execute(REFRESH_SESSION_SCRIPT,
+            List.of("session:" + sessionId, ACTIVE_USERS_KEY),
+            sessionId, String.valueOf(TimeUnit.MINUTES.toSeconds(SESSION_TIMEOUT_MINUTES)), String.valueOf(now)));
+        return extended != null && extended == 1L;
+    }
+
+    private void cacheLocally(String sessionId, CachedSession entry, long now) {
+        if (!nearCacheEnabled) {
+            return;
+        }
+        if (nearCache.size() >= nearCacheMaxEntries) {
+            nearCache.values().removeIf(cached -> now - cached.getCachedAt() >= nearCacheTtlMs);
+            if (nearCache.size() >= nearCacheMaxEntries) {
+                return;
             }
         }
+        nearCache.put(sessionId, entry);
+    }
+
+    private void evictLocally(String sessionId, String userId) {
+        if (sessionId != null) {
+            nearCache.remove(sessionId);
+        }
+        if (userId != null) {
+            nearCache.values().removeIf(cached -> userId.equals(cached.getData().getUserId()));
+        }
+    }
+
+    private void publishEviction(String key, String value) {
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("type", "session_evict");
+        eventRelay.publish(WebSocketEventRelay.SESSIONS_CHANNEL, Map.of(key, value), event);
     }
 
     /**
-     * 獲取活躍用戶數量
-     * @return 活躍用戶數量
+     * 執行會話腳本; 參數與結果皆以位元組傳遞, 以支援二進位會話值
      */
-    public long getActiveUserCount() {
-        Long size = redisTemplate.opsForSet().size("active:users");
-        return size != null ? size : 0L;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<byte[]> runScript(RedisScript<List> script, List<String> keys, Object... args) {
+        Object[] rawArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            rawArgs[i] = args[i] instanceof byte[] ? args[i] : String.valueOf(args[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        RedisSerializer serializer = RedisSerializer.byteArray();
+        List<byte[]> result = (List<byte[]>) circuitBreaker.call(
+            () -> redisTemplate.execute(script, serializer, serializer, keys, rawArgs));
+        return result != null ? result : Collections.emptyList();
+    }
+
+    private String userSessionsKey(String userId) {
+        return "user:" + userId + ":session-index";
     }
 
     /**
-     * 獲取所有活躍用戶ID
-     * @return 活躍用戶ID集合
+     * 近端快取項目
      */
-    public Set<Object> getActiveUsers() {
-        return redisTemplate.opsForSet().members("active:users");
+    private static class CachedSession {
+        private final SessionData data;
+        private final long cachedAt;
+        // 估算的 Redis 過期時間 (epoch millis)
+        private volatile long expiresAt;
+
+        CachedSession(SessionData data, long cachedAt, long expiresAt) {
+            this.data = data;
+            this.cachedAt = cachedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        SessionData getData() { return data; }
+        long getCachedAt() { return cachedAt; }
+        long getExpiresAt() { return expiresAt; }
+        void setExpiresAt(long expiresAt) { this.expiresAt = expiresAt; }
     }
 
     /**
@@ -248,6 +727,8 @@ public class SessionService {
         private LocalDateTime createdAt;
         private LocalDateTime lastAccess;
         private boolean active;
+        // 僅依 JWT 驗證 (Redis 無法使用), 不寫入 Redis
+        private transient boolean degraded;
 
         // Constructors
         public SessionData() {}
@@ -273,5 +754,9 @@ public class SessionService {
 
         public boolean isActive() { return active; }
         public void setActive(boolean active) { this.active = active; }
+
+        @JsonIgnore
+        public boolean isDegraded() { return degraded; }
+        public void setDegraded(boolean degraded) { this.degraded = degraded; }
     }
 }
\ No newline at end of file
@@ -36,69 +36,40 @@ public class StaffService {
      * @param identifier Employee ID or email
      * @param password Staff password
      * @return Staff object if authentication successful
+     * @throws PasswordService.HashingBusyException if password hashing is saturated
      */
     public Optional<Staff> authenticateStaff(String identifier, String password) {
         try {
             System.out.println("Attempting staff authentication for identifier: " + identifier);
             
-            // Try to find staff by employee ID first
-            Optional<Staff> staffByEmployeeId = staffDAO.findByEmployeeId(identifier);
-            if (staffByEmployeeId.isPresent()) {
-                Staff staff = staffByEmployeeId.get();
-                Optional<User> user = userDAO.findById(staff.getUserId());
-                
-                if (user.isPresent() && user.get().isActive() && 
-                    (user.get().getRole() == UserRole.STAFF || user.get().getRole() == UserRole.ADMIN)) {
-                    
-                    // 從資料庫獲取密碼雜湊進行驗證
-                    Optional<String> passwordHash = userDAO.getPasswordHashByUserId(user.get().getUserId());
-                    boolean passwordValid = passwordHash.isPresent() && 
-                                            passwordService.verifyPassword(password, passwordHash.get());
-                    System.out.println("Password verification result for employee ID " + identifier + ": " + passwordValid);
-                    
-                    if (passwordValid) {
-                        userDAO.updateLastLogin(user.get().getUserId(), LocalDateTime.now());
-                        staff.updateActivity();
-                        staffDAO.update(staff);
-                        System.out.println("Staff authentication successful for: " + identifier);
-                        return Optional.of(staff);
-                    } else {
-                        System.out.println("Password verification failed for employee ID: " + identifier);
-                    }
+            // 一次查詢取得員工編號與 email 兩種匹配 (員工編號優先)
+            List<StaffDAO.StaffCredentials> candidates = staffDAO.findCredentialsByIdentifier(identifier);
+            for (StaffDAO.StaffCredentials candidate : candidates) {
+                if (!candidate.isActive() || 
+                    (candidate.getRole() != UserRole.STAFF && candidate.getRole() != UserRole.ADMIN)) {
+                    continue;
                 }
-            }
-            
-            // Try to find by email if employee ID search failed
-            Optional<User> userByEmail = userDAO.findByEmail(identifier);
-            if (userByEmail.isPresent()) {
-                User user = userByEmail.get();
-                if (user.isActive() && 
-                    (user.getRole() == UserRole.STAFF || user.getRole() == UserRole.ADMIN)) {
-                    
-                    Optional<Staff> staffByUserId = staffDAO.findByUserId(user.getUserId());
-                    if (staffByUserId.isPresent()) {
-                        // 從資料庫獲取密碼雜湊進行驗證
-                        Optional<String> passwordHash = userDAO.getPasswordHashByEmail(identifier);
-                        boolean passwordValid = passwordHash.isPresent() && 
-                                                passwordService.verifyPassword(password, passwordHash.get());
-                        System.out.println("Password verification result for email " + identifier + ": " + passwordValid);
-                        
-                        if (passwordValid) {
-                            userDAO.updateLastLogin(user.getUserId(), LocalDateTime.now());
-                            Staff staff = staffByUserId.get();
-                            staff.updateActivity();
-                            staffDAO.update(staff);
-                            System.out.println("Staff authentication successful for: " + identifier);
-                            return Optional.of(staff);
-                        } else {
-                            System.out.println("Password verification failed for email: " + identifier);
-                        }
-                    }
+                
+                Staff staff = candidate.getStaff();
+                boolean passwordValid = candidate.getPasswordHash() != null && 
+                                        passwordService.verifyAndUpgrade(staff.getUserId(), password, candidate.getPasswordHash());
+                System.out.println("Password verification result for " + identifier + ": " + passwordValid);
+                
+                if (passwordValid) {
+                    LocalDateTime now = LocalDateTime.now();
+                    staffDAO.recordLogin(staff.getStaffId(), now);
+                    staff.setLastActivityTime(now);
+                    staff.setUpdatedAt(now);
+                    System.out.println("Staff authentication successful for: " + identifier);
+                    return Optional.of(staff);
                 }
             }
             
             System.out.println("Staff authentication failed - user not found or password invalid for: " + identifier);
             return Optional.empty();
+        } catch (PasswordService.HashingBusyException e) {
+            // 交由呼叫端回應 429
+            throw e;
         } catch (Exception e) {
             System.err.println("Error in staff authentication: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,402 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import com.ranbow.restaurant.models.OrderItem;
+import com.ranbow.restaurant.models.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-item stock counters for limited dishes
+ * Counters live in a Redis hash shared by all nodes; items without a counter are unlimited.
+ * Confirming an order reserves all of its tracked lines in one Lua script (all or nothing),
+ * so the order path never locks menu_items rows. The reservation is kept until the order is
+ * served or cancelled: cancelling before the kitchen starts (see {@link #releasesStock})
+ * returns the stock, while cancelling during preparation or serving the order only drops the
+ * reservation, since the dishes are already used.
+ * An item whose counter reaches zero is switched to unavailable asynchronously, and switched
+ * back when stock returns, but only if it was this service that switched it off. Switches run
+ * one at a time on a dedicated thread and re-read the sold-out set first, so a late switch
+ * cannot undo a newer one.
+ * Each node keeps a copy of the counters in memory to reject sold-out items early. When
+ * Redis is unavailable, reservations fail open and only the manual availability flag applies.
+ */
+@Service
+public class StockService {
+
+    private static final String STOCK_KEY = "ranbow:menu:stock";
+    private static final String SOLD_OUT_KEY = "ranbow:menu:stock:soldout";
+    private static final String RESERVATION_PREFIX = "ranbow:menu:stock:order:";
+
+    // KEYS: 庫存, 訂單預留, 售完集合; ARGV: itemId, 數量 成對
+    // 預留不設過期時間, 由訂單取消 (release) 或送達 (settle) 時刪除
+    // 不足時返回 {0, 不足的 itemId...}; 成功返回 {1, itemId, 剩餘, 是否剛售完, ...}; 已預留過返回 {2}
+    private static final RedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+        if redis.call('EXISTS', KEYS[2]) == 1 then
+            return {2}
+        end
+        local short = {0}
+        for i = 1, #ARGV, 2 do
+            local left = redis.call('HGET', KEYS[1], ARGV[i])
+            if left and tonumber(left) < tonumber(ARGV[i + 1]) then
+                table.insert(short, ARGV[i])
+            end
+        end
+        if #short > 1 then
+            return short
+        end
+        local result = {1}
+        for i = 1, #ARGV, 2 do
+            if redis.call('HEXISTS', KEYS[1], ARGV[i]) == 1 then
+                local left = redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1]))
+                redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 1])
+                local soldOut = 0
+                if left <= 0 then
+                    soldOut = redis.call('SADD', KEYS[3], ARGV[i])
+                end
+                table.insert(result, ARGV[i])
+                table.insert(result, left)
+                table.insert(result, soldOut)
+            end
+        end
+        return result
+        """, List.class);
+
+    // KEYS: 庫存, 訂單預留, 售完集合; 返回 {itemId, 剩餘, 是否恢復供應, ...}
+    private static final RedisScript<List> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+        local lines = redis.call('HGETALL', KEYS[2])
+        local result = {}
+        for i = 1, #lines, 2 do
+            if redis.call('HEXISTS', KEYS[1], lines[i]) == 1 then
+                local left = redis.call('HINCRBY', KEYS[1], lines[i], tonumber(lines[i + 1]))
+                local restored = 0
+                if left > 0 then
+                    restored = redis.call('SREM', KEYS[3], lines[i])
+                end
+                table.insert(result, lines[i])
+                table.insert(result, left)
+                table.insert(result, restored)
+            end
+        end
+        redis.call('DEL', KEYS[2])
+        return result
+        """, List.class);
+
+    // KEYS: 庫存, 售完集合; ARGV: itemId, 數量 (負數表示不再追蹤)
+    // 返回 1 表示剛售完, -1 表示恢復供應, 0 表示無變化
+    private static final RedisScript<Long> SET_STOCK_SCRIPT = new DefaultRedisScript<>("""
+        local quantity = tonumber(ARGV[2])
+        if quantity < 0 then
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            return -redis.call('SREM', KEYS[2], ARGV[1])
+        end
+        redis.call('HSET', KEYS[1], ARGV[1], quantity)
+        if quantity == 0 then
+            return redis.call('SADD', KEYS[2], ARGV[1])
+        end
+        return -redis.call('SREM', KEYS[2], ARGV[1])
+        """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private MenuService menuService;
+
+    // 本節點的庫存副本 (itemId -> 剩餘數量), 僅用於提前拒絕; 以 Redis 為準
+    private final Map<String, Long> remaining = new ConcurrentHashMap<>();
+
+    // 供應狀態切換專用執行緒: 依序執行, 同一品項的切換不會互相超越
+    private ExecutorService availabilityExecutor;
+
+    // Metrics
+    private final AtomicLong reservations = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong settlements = new AtomicLong();
+    private final AtomicLong failOpen = new AtomicLong();
+    private final AtomicLong autoDisabled = new AtomicLong();
+    private final AtomicLong autoRestored = new AtomicLong();
+    private final AtomicLong staleSwitches = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        availabilityExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "stock-availability");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (availabilityExecutor != null) {
+            availabilityExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reserve stock for all tracked lines of an order, all or nothing
+     * @throws InsufficientStockException if any tracked item has less stock than ordered
+     */
+    public void reserve(String orderId, List<OrderItem> items) {
+        Map<String, Long> quantities = aggregate(items);
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        List<String> args = new ArrayList<>();
+        quantities.forEach((itemId, quantity) -> {
+            args.add(itemId);
+            args.add(String.valueOf(quantity));
+        });
+
+        List<Object> result;
+        try {
+            result = runScript(RESERVE_SCRIPT, List.of(STOCK_KEY, RESERVATION_PREFIX + orderId, SOLD_OUT_KEY), args);
+        } catch (Exception e) {
+            // Redis 無法使用: 不阻擋確認訂單, 僅依人工設定的供應狀態
+            failOpen.incrementAndGet();
+            System.err.println("Stock reservation skipped for order " + orderId + ": " + e.getMessage());
+            return;
+        }
+
+        long status = result.isEmpty() ? 2 : ((Number) result.get(0)).longValue();
+        if (status == 0) {
+            rejections.incrementAndGet();
+            List<String> shortItems = new ArrayList<>();
+            for (int i = 1; i < result.size(); i++) {
+                String itemId = String.valueOf(result.get(i));
+                shortItems.add(menuService.findMenuItemById(itemId).map(item -> item.getName()).orElse(itemId));
+            }
+            throw new InsufficientStockException("庫存不足: " + String.join(", ", shortItems));
+        }
+        if (status == 1) {
+            reservations.incrementAndGet();
+            applyCounters(result.subList(1, result.size()), false);
+        }
+    }
+
+    /**
+     * Close the reservation of a cancelled order
+     * @param previousStatus Status the order was cancelled from
+     */
+    public void cancel(String orderId, OrderStatus previousStatus) {
+        if (releasesStock(previousStatus)) {
+            release(orderId);
+        } else {
+            settle(orderId);
+        }
+    }
+
+    /**
+     * Whether cancelling from this status returns the reserved stock
+     * Only orders the kitchen has not started on; from PREPARING on the dishes are used
+     */
+    public static boolean releasesStock(OrderStatus previousStatus) {
+        return previousStatus == OrderStatus.PENDING
+            || previousStatus == OrderStatus.PENDING_PAYMENT
+            || previousStatus == OrderStatus.CONFIRMED;
+    }
+
+    /**
+     * Return an order's reserved stock, e.g. on cancellation before preparation or when
+     * confirming fails; no-op if nothing was reserved
+     */
+    public void release(String orderId) {
+        try {
+            List<Object> result = runScript(RELEASE_SCRIPT, List.of(STOCK_KEY, RESERVATION_PREFIX + orderId, SOLD_OUT_KEY),
+                List.of());
+            if (!result.isEmpty()) {
+                releases.incrementAndGet();
+                applyCounters(result, true);
+            }
+        } catch (Exception e) {
+            System.err.println("Error releasing stock for order " + orderId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop an order's reservation without returning stock (order served, or cancelled after
+     * the kitchen started); no-op if nothing was reserved
+     */
+    public void settle(String orderId) {
+        try {
+            Boolean deleted = circuitBreaker.call(() -> stringRedisTemplate.delete(RESERVATION_PREFIX + orderId));
+            if (Boolean.TRUE.equals(deleted)) {
+                settlements.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("Error settling stock for order " + orderId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Set the stock of an item (Admin only)
+     * @param quantity Units left, or null to stop tracking the item
+     */
+    public void setStock(String itemId, Integer quantity) {
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("庫存數量不可為負數");
+        }
+        long value = quantity != null ? quantity : -1;
+        Long change = circuitBreaker.call(() -> stringRedisTemplate.execute(SET_STOCK_SCRIPT,
+            List.of(STOCK_KEY, SOLD_OUT_KEY), itemId, String.valueOf(value)));
+
+        if (quantity != null) {
+            remaining.put(itemId, (long) quantity);
+        } else {
+            remaining.remove(itemId);
+        }
+        if (change != null && change > 0) {
+            switchAvailability(itemId, false);
+        } else if (change != null && change < 0) {
+            switchAvailability(itemId, true);
+        }
+    }
+
+    /**
+     * Whether the local copy of the counters allows ordering the quantity (untracked items always do)
+     */
+    public boolean hasStock(String itemId, int quantity) {
+        Long left = remaining.get(itemId);
+        return left == null || left >= quantity;
+    }
+
+    /**
+     * Stock of all tracked items from the local copy
+     */
+    public Map<String, Long> getStockLevels() {
+        return new HashMap<>(remaining);
+    }
+
+    /**
+     * Refresh the local copy from Redis
+     */
+    @Scheduled(fixedDelayString = "${menu.stock.refresh-ms:5000}", initialDelayString = "${menu.stock.refresh-ms:5000}")
+    public void refresh() {
+        if (circuitBreaker.isOpen()) {
+            return;
+        }
+        try {
+            Map<Object, Object> entries = circuitBreaker.call(() -> stringRedisTemplate.opsForHash().entries(STOCK_KEY));
+            Map<String, Long> loaded = new HashMap<>();
+            entries.forEach((itemId, value) -> loaded.put(String.valueOf(itemId), Long.parseLong(String.valueOf(value))));
+            remaining.keySet().retainAll(loaded.keySet());
+            remaining.putAll(loaded);
+        } catch (Exception e) {
+            System.err.println("Error refreshing stock counters: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("trackedItems", remaining.size());
+        stats.put("soldOutItems", remaining.values().stream().filter(left -> left <= 0).count());
+        stats.put("reservations", reservations.get());
+        stats.put("rejections", rejections.get());
+        stats.put("releases", releases.get());
+        stats.put("settlements", settlements.get());
+        stats.put("failOpen", failOpen.get());
+        stats.put("autoDisabled", autoDisabled.get());
+        stats.put("autoRestored", autoRestored.get());
+        stats.put("staleSwitches", staleSwitches.get());
+        return stats;
+    }
+
+    // Private helper methods
+
+    private Map<String, Long> aggregate(List<OrderItem> items) {
+        Map<String, Long> quantities = new LinkedHashMap<>();
+        if (items == null) {
+            return quantities;
+        }
+        for (OrderItem item : items) {
+            if (item.getMenuItem() != null && item.getMenuItem().getItemId() != null && item.getQuantity() > 0) {
+                quantities.merge(item.getMenuItem().getItemId(), (long) item.getQuantity(), Long::sum);
+            }
+        }
+        return quantities;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> runScript(RedisScript<List> script, List<String> keys, List<String> args) {
+        List<Object> result = circuitBreaker.call(() -> stringRedisTemplate.execute(script, keys, args.toArray()));
+        return result != null ? result : Collections.emptyList();
+    }
+
+    /**
+     * Apply {itemId, remaining, flag} triples returned by the scripts; the flag marks an item
+     * that just sold out (reserve) or just came back (release)
+     */
+    private void applyCounters(List<Object> triples, boolean restoring) {
+        for (int i = 0; i + 2 < triples.size(); i += 3) {
+            String itemId = String.valueOf(triples.get(i));
+            remaining.put(itemId, ((Number) triples.get(i + 1)).longValue());
+            if (((Number) triples.get(i + 2)).longValue() == 1) {
+                switchAvailability(itemId, restoring);
+            }
+        }
+    }
+
+    /**
+     * Flip availability off the request thread; the write bumps the menu catalog version,
+     * which pushes the change to customer clients
+     */
+    private void switchAvailability(String itemId, boolean available) {
+        (available ? autoRestored : autoDisabled).incrementAndGet();
+        availabilityExecutor.execute(() -> applyAvailability(itemId, available));
+    }
+
+    /**
+     * Write the availability unless the sold-out set says it is already outdated
+     * (stock changed again after the switch was queued; the newer switch follows)
+     */
+    void applyAvailability(String itemId, boolean available) {
+        try {
+            Boolean soldOut;
+            try {
+                soldOut = circuitBreaker.call(() -> stringRedisTemplate.opsForSet().isMember(SOLD_OUT_KEY, itemId));
+            } catch (Exception e) {
+                // Redis 無法使用時依排入時的狀態切換
+                soldOut = null;
+            }
+            if (soldOut != null && soldOut == available) {
+                staleSwitches.incrementAndGet();
+                return;
+            }
+            menuService.setMenuItemAvailability(itemId, available);
+        } catch (Exception e) {
+            System.err.println("Error switching availability of " + itemId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 追蹤中的品項庫存不足, 訂單無法確認
+     */
+    public static class InsufficientStockException extends IllegalStateException {
+        public InsufficientStockException(String message) {
+            super(message);
+        }
+    }
+}
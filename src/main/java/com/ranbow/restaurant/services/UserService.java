@@ -18,6 +18,9 @@ public class UserService {
     @Autowired
     private UserDAO userDAO;
     
+    @Autowired
+    private CardinalityService cardinalityService;
+    
     public User createUser(String username, String email, String phoneNumber, String password, UserRole role) {
         // Check if user already exists
         if (userDAO.existsByEmail(email)) {
@@ -27,7 +30,9 @@ public class UserService {
         // For this demo, we'll create user without password hashing
         // In a real application, you would hash the password here
         User newUser = new User(username, email, phoneNumber, role);
-        return userDAO.save(newUser);
+        User saved = userDAO.save(newUser);
+        cardinalityService.recordRegistration(saved);
+        return saved;
     }
     
     public Optional<User> findUserById(String userId) {
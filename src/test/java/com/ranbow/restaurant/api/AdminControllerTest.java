@@ -0,0 +1,110 @@
+package com.ranbow.restaurant.api;
+
+import com.ranbow.restaurant.config.AuthenticationInterceptor;
+import com.ranbow.restaurant.config.SecurityConfig;
+import com.ranbow.restaurant.config.WebConfig;
+import com.ranbow.restaurant.models.User;
+import com.ranbow.restaurant.models.UserRole;
+import com.ranbow.restaurant.services.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs through the real filter and interceptor chain, with the application's /api context path
+ */
+@WebMvcTest(AdminController.class)
+@Import({SecurityConfig.class, WebConfig.class, AuthenticationInterceptor.class})
+class AdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AdminService adminService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private MenuService menuService;
+
+    @MockBean
+    private OrderService orderService;
+
+    @MockBean
+    private ReportService reportService;
+
+    @MockBean
+    private JwtService jwtService;
+
+    @MockBean
+    private JwtKeyRing jwtKeyRing;
+
+    @MockBean
+    private SessionService sessionService;
+
+    @MockBean
+    private StockService stockService;
+
+    private final JwtService.TokenInfo admin = new JwtService.TokenInfo("admin-1", "session-1", "Chrome Browser",
+            new Date(System.currentTimeMillis() + 3_600_000L));
+
+    @BeforeEach
+    void setUp() {
+        User user = new User("admin", "admin@ranbow.test", "0900000000", UserRole.ADMIN);
+        user.setUserId("admin-1");
+        when(jwtService.validateToken("admin-token")).thenReturn(admin);
+        when(userService.findUserById("admin-1")).thenReturn(Optional.of(user));
+        when(adminService.getRecentAuditLogs(anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void adminWithLiveSessionIsAccepted() throws Exception {
+        when(sessionService.validateSession(admin)).thenReturn(session(false));
+
+        mockMvc.perform(get("/api/admin/audit/recent").contextPath("/api").header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+    }
+
+    @Test
+    void degradedSessionIsRejected() throws Exception {
+        when(sessionService.validateSession(admin)).thenReturn(session(true));
+
+        mockMvc.perform(get("/api/admin/audit/recent").contextPath("/api").header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isUnauthorized());
+        verify(adminService, never()).getRecentAuditLogs(anyInt());
+    }
+
+    @Test
+    void loggedOutSessionIsRejected() throws Exception {
+        mockMvc.perform(get("/api/admin/audit/recent").contextPath("/api").header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isUnauthorized());
+        verify(adminService, never()).getRecentAuditLogs(anyInt());
+    }
+
+    private SessionService.SessionData session(boolean degraded) {
+        SessionService.SessionData sessionData = new SessionService.SessionData();
+        sessionData.setUserId("admin-1");
+        sessionData.setSessionId("session-1");
+        sessionData.setActive(true);
+        sessionData.setDegraded(degraded);
+        return sessionData;
+    }
+}
@@ -0,0 +1,119 @@
+package com.ranbow.restaurant.api;
+
+import com.ranbow.restaurant.config.AuthenticationInterceptor;
+import com.ranbow.restaurant.config.SecurityConfig;
+import com.ranbow.restaurant.config.WebConfig;
+import com.ranbow.restaurant.models.Order;
+import com.ranbow.restaurant.services.JwtService;
+import com.ranbow.restaurant.services.OrderService;
+import com.ranbow.restaurant.services.OrderTrackingService;
+import com.ranbow.restaurant.services.SessionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs through the real filter and interceptor chain, with the application's /api context path
+ */
+@WebMvcTest(OrderController.class)
+@Import({SecurityConfig.class, WebConfig.class, AuthenticationInterceptor.class})
+class OrderControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private OrderService orderService;
+
+    @MockBean
+    private OrderTrackingService orderTrackingService;
+
+    @MockBean
+    private JwtService jwtService;
+
+    @MockBean
+    private SessionService sessionService;
+
+    private final JwtService.TokenInfo customer = new JwtService.TokenInfo("customer-1", "session-1", "iPhone",
+            new Date(System.currentTimeMillis() + 3_600_000L));
+
+    @Test
+    void streamTokenIsIssuedForValidBearerToken() throws Exception {
+        when(jwtService.validateToken("bearer-token")).thenReturn(customer);
+        when(sessionService.validateSession(customer)).thenReturn(new SessionService.SessionData());
+        when(jwtService.generateStreamToken("customer-1", "session-1")).thenReturn("stream-token");
+        when(jwtService.getStreamTokenTtlSeconds()).thenReturn(300);
+
+        mockMvc.perform(post("/api/orders/stream-token").contextPath("/api")
+                        .header("Authorization", "Bearer bearer-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("stream-token"))
+                .andExpect(jsonPath("$.expiresIn").value(300))
+                .andExpect(cookie().value("stream_token", "stream-token"))
+                .andExpect(cookie().httpOnly("stream_token", true));
+    }
+
+    @Test
+    void streamTokenRequiresBearerToken() throws Exception {
+        mockMvc.perform(post("/api/orders/stream-token").contextPath("/api"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void streamTokenRequiresLiveSession() throws Exception {
+        when(jwtService.validateToken("bearer-token")).thenReturn(customer);
+
+        mockMvc.perform(post("/api/orders/stream-token").contextPath("/api")
+                        .header("Authorization", "Bearer bearer-token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void orderStreamOpensWithStreamTokenForOwner() throws Exception {
+        when(jwtService.validateStreamToken("stream-token")).thenReturn(customer);
+        when(sessionService.validateSession(customer)).thenReturn(new SessionService.SessionData());
+        when(orderService.findOrderById("order-1")).thenReturn(Optional.of(order("order-1", "customer-1")));
+        when(orderTrackingService.subscribeOrder(any(), isNull())).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/orders/order-1/stream").contextPath("/api").param("token", "stream-token"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void orderStreamRejectsOtherCustomers() throws Exception {
+        when(jwtService.validateStreamToken("stream-token")).thenReturn(customer);
+        when(sessionService.validateSession(customer)).thenReturn(new SessionService.SessionData());
+        when(orderService.findOrderById("order-2")).thenReturn(Optional.of(order("order-2", "customer-2")));
+
+        mockMvc.perform(get("/api/orders/order-2/stream").contextPath("/api").param("token", "stream-token"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void orderStreamRequiresStreamToken() throws Exception {
+        mockMvc.perform(get("/api/orders/order-1/stream").contextPath("/api"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private Order order(String orderId, String customerId) {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setCustomerId(customerId);
+        return order;
+    }
+}
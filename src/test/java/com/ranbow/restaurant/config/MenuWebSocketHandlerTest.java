@@ -0,0 +1,146 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ranbow.restaurant.models.MenuCategory;
+import com.ranbow.restaurant.models.MenuItem;
+import com.ranbow.restaurant.services.MenuCatalog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class MenuWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MenuCatalog menuCatalog;
+    private MenuWebSocketHandler handler;
+    private BiConsumer<MenuCatalog.Snapshot, MenuCatalog.Snapshot> catalogListener;
+
+    private final CountDownLatch releaseSlowClient = new CountDownLatch(1);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        WebSocketPayloadCodec payloadCodec = new WebSocketPayloadCodec();
+        ReflectionTestUtils.setField(payloadCodec, "objectMapper", objectMapper);
+
+        menuCatalog = mock(MenuCatalog.class);
+        MenuCatalog.Snapshot initial = snapshot(1, item("latte", true));
+        when(menuCatalog.current()).thenReturn(initial);
+
+        handler = new MenuWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "menuCatalog", menuCatalog);
+        ReflectionTestUtils.setField(handler, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(handler, "payloadCodec", payloadCodec);
+        ReflectionTestUtils.setField(handler, "historyCapacity", 100);
+        ReflectionTestUtils.setField(handler, "sendTimeLimitMs", 5000);
+        ReflectionTestUtils.setField(handler, "bufferSizeLimit", 512 * 1024);
+        handler.init();
+
+        ArgumentCaptor<BiConsumer<MenuCatalog.Snapshot, MenuCatalog.Snapshot>> listener = ArgumentCaptor.forClass(BiConsumer.class);
+        verify(menuCatalog).addListener(listener.capture());
+        catalogListener = listener.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSlowClient.countDown();
+        handler.shutdown();
+    }
+
+    @Test
+    void catalogListenerDoesNotWaitForSlowClients() throws Exception {
+        WebSocketSession slow = session("slow", true);
+        WebSocketSession fast = session("fast", false);
+        handler.afterConnectionEstablished(slow);
+        handler.afterConnectionEstablished(fast);
+
+        // 在呼叫端 (菜單快照的鎖內) 不得進行網路 I/O
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
+            catalogListener.accept(snapshot(1, item("latte", true)), snapshot(2, item("latte", false))));
+        verify(slow, timeout(1000)).sendMessage(argThat(this::isDelta));
+
+        releaseSlowClient.countDown();
+        verify(fast, timeout(1000)).sendMessage(argThat(this::isDelta));
+        assertEquals(1L, handler.getStats().get("deltasPublished"));
+    }
+
+    @Test
+    void deltasArePushedInVersionOrder() throws Exception {
+        WebSocketSession client = session("client", false);
+        List<Long> received = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            if (isDelta(invocation.getArgument(0))) {
+                received.add(objectMapper.readTree(((TextMessage) invocation.getArgument(0)).getPayload()).path("version").asLong());
+            }
+            return null;
+        }).when(client).sendMessage(any());
+        handler.afterConnectionEstablished(client);
+
+        MenuCatalog.Snapshot previous = snapshot(1, item("latte", true));
+        for (int version = 2; version <= 20; version++) {
+            MenuCatalog.Snapshot next = snapshot(version, item("latte", version % 2 == 1));
+            catalogListener.accept(previous, next);
+            previous = next;
+        }
+
+        verify(client, timeout(1000).times(19)).sendMessage(argThat(this::isDelta));
+        assertEquals(LongStream.rangeClosed(2, 20).boxed().toList(), received);
+    }
+
+    private boolean isDelta(WebSocketMessage<?> message) {
+        return message instanceof TextMessage text && text.getPayload().contains("menu_delta");
+    }
+
+    private WebSocketSession session(String id, boolean slow) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        if (slow) {
+            doAnswer(invocation -> {
+                if (isDelta(invocation.getArgument(0))) {
+                    releaseSlowClient.await(5, TimeUnit.SECONDS);
+                }
+                return null;
+            }).when(session).sendMessage(any());
+        }
+        return session;
+    }
+
+    private MenuCatalog.Snapshot snapshot(long version, MenuItem... items) {
+        MenuCatalog.Snapshot snapshot = mock(MenuCatalog.Snapshot.class);
+        when(snapshot.getVersion()).thenReturn(version);
+        when(snapshot.getItems()).thenReturn(List.of(items));
+        when(snapshot.getItemsById()).thenReturn(Arrays.stream(items)
+            .collect(Collectors.toMap(MenuItem::getItemId, item -> item)));
+        return snapshot;
+    }
+
+    private MenuItem item(String itemId, boolean available) {
+        MenuItem item = new MenuItem("Iced Latte", "Espresso with cold milk", new BigDecimal("120.00"), MenuCategory.BEVERAGE);
+        item.setItemId(itemId);
+        item.setAvailable(available);
+        return item;
+    }
+}
@@ -0,0 +1,88 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OrderStatusWebSocketHandlerTest {
+
+    private WebSocketEventRelay eventRelay;
+    private OrderStatusWebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        eventRelay = mock(WebSocketEventRelay.class);
+        handler = new OrderStatusWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "eventRelay", eventRelay);
+        ReflectionTestUtils.setField(handler, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    void customerSubscriberReceivesEventsForTheirOrders() throws Exception {
+        WebSocketSession customer = session("customer", "customerId=customer-1");
+        handler.afterConnectionEstablished(customer);
+
+        handler.broadcastOrderStatusChange("order-1", "customer-1", "PENDING", "PREPARING", null, "5");
+        handler.broadcastOrderCompleted("order-1", "customer-1", 5, "staff-1");
+        handler.broadcastOrderStatusChange("order-2", "customer-2", "PENDING", "PREPARING", null, "6");
+
+        verify(customer).sendMessage(argThat(message -> isEvent(message, "order_status_changed", "order-1")));
+        verify(customer).sendMessage(argThat(message -> isEvent(message, "order_completed", "order-1")));
+        verify(customer, never()).sendMessage(argThat(message -> isEvent(message, "order_status_changed", "order-2")));
+        verify(eventRelay).publish(eq(WebSocketEventRelay.ORDERS_CHANNEL),
+            argThat(routing -> "customer-1".equals(routing.get("customerId"))), argThat(event -> "order_completed".equals(event.path("type").asText())));
+    }
+
+    @Test
+    void sessionWithoutSubscriptionsReturnsToFirehose() throws Exception {
+        WebSocketSession screen = session("screen", null);
+        handler.afterConnectionEstablished(screen);
+
+        handler.handleMessage(screen, new TextMessage("{\"type\":\"subscribe_order\",\"orderId\":\"order-1\"}"));
+        handler.broadcastOrderStatusChange("order-2", "customer-2", "PENDING", "PREPARING", null, "6");
+        verify(screen, never()).sendMessage(argThat(message -> isEvent(message, "order_status_changed", "order-2")));
+
+        handler.handleMessage(screen, new TextMessage("{\"type\":\"unsubscribe_order\"}"));
+        handler.broadcastOrderStatusChange("order-3", "customer-3", "PENDING", "PREPARING", null, "7");
+        verify(screen).sendMessage(argThat(message -> isEvent(message, "order_status_changed", "order-3")));
+    }
+
+    @Test
+    void sessionKeepsFilteringWhileAnySubscriptionRemains() throws Exception {
+        WebSocketSession screen = session("screen", "orderId=order-1&customerId=customer-1");
+        handler.afterConnectionEstablished(screen);
+
+        handler.handleMessage(screen, new TextMessage("{\"type\":\"unsubscribe_order\"}"));
+        handler.broadcastOrderStatusChange("order-3", "customer-3", "PENDING", "PREPARING", null, "7");
+
+        verify(screen, never()).sendMessage(argThat(message -> isEvent(message, "order_status_changed", "order-3")));
+    }
+
+    private boolean isEvent(WebSocketMessage<?> message, String type, String orderId) {
+        return message instanceof TextMessage text
+            && text.getPayload().contains("\"type\":\"" + type + "\"")
+            && text.getPayload().contains("\"orderId\":\"" + orderId + "\"");
+    }
+
+    private WebSocketSession session(String id, String query) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.getUri()).thenReturn(new URI("ws://localhost/api/ws/staff/orders" + (query != null ? "?" + query : "")));
+        return session;
+    }
+}
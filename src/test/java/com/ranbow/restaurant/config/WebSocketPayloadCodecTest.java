@@ -0,0 +1,146 @@
+package com.ranbow.restaurant.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WebSocketPayloadCodecTest {
+
+    private ObjectMapper objectMapper;
+    private WebSocketPayloadCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        codec = new WebSocketPayloadCodec();
+        ReflectionTestUtils.setField(codec, "objectMapper", objectMapper);
+    }
+
+    @Test
+    void binaryFrameRoundTripsThroughDecode() throws Exception {
+        Map<String, Object> payload = sampleOrder(1);
+
+        Map<String, Object> decoded = codec.decode(new BinaryMessage(codec.toCbor(payload)));
+
+        assertEquals("order-1", decoded.get("orderId"));
+        assertEquals("PENDING", decoded.get("status"));
+        // Dates stay ISO strings, as in the JSON format
+        assertEquals("2026-01-15T12:30:00", decoded.get("orderTime"));
+        assertEquals(3, ((List<?>) decoded.get("items")).size());
+    }
+
+    @Test
+    void textFrameDecodesAsJson() throws Exception {
+        Map<String, Object> decoded = codec.decode(new TextMessage("{\"type\":\"ping\"}"));
+
+        assertEquals("ping", decoded.get("type"));
+    }
+
+    @Test
+    void preparedFramesFollowNegotiatedProtocol() throws Exception {
+        WebSocketSession binarySession = mock(WebSocketSession.class);
+        when(binarySession.getAcceptedProtocol()).thenReturn(WebSocketPayloadCodec.CBOR_SUBPROTOCOL);
+        WebSocketSession textSession = mock(WebSocketSession.class);
+
+        WebSocketPayloadCodec.PreparedFrames frames = codec.prepare(sampleOrder(1));
+        WebSocketMessage<?> binary = frames.forSession(binarySession);
+        WebSocketMessage<?> text = frames.forSession(textSession);
+
+        assertInstanceOf(BinaryMessage.class, binary);
+        assertInstanceOf(TextMessage.class, text);
+        // Each send gets its own buffer, so a second session can still read the whole frame
+        assertEquals(binary.getPayloadLength(), frames.forSession(binarySession).getPayloadLength());
+    }
+
+    @Test
+    void cborIsSmallerThanJsonForOrderPayload() throws Exception {
+        List<Map<String, Object>> orders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            orders.add(sampleOrder(i));
+        }
+
+        int jsonBytes = objectMapper.writeValueAsBytes(orders).length;
+        int cborBytes = codec.toCbor(orders).length;
+
+        assertTrue(cborBytes < jsonBytes, "CBOR " + cborBytes + " bytes vs JSON " + jsonBytes + " bytes");
+    }
+
+    /**
+     * Opt-in timing: mvn test -Dtest=WebSocketPayloadCodecTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void encodeAndDecodeLatencyComparedWithJson() throws Exception {
+        int iterations = 20_000;
+        List<Map<String, Object>> orders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            orders.add(sampleOrder(i));
+        }
+        Map<String, Object> payload = Map.of("type", "orders", "orders", orders);
+
+        // 預熱 JIT
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(new TextMessage(objectMapper.writeValueAsString(payload)));
+            codec.decode(new BinaryMessage(codec.toCbor(payload)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(new TextMessage(objectMapper.writeValueAsString(payload)));
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(new BinaryMessage(codec.toCbor(payload)));
+        }
+        long cborNanos = System.nanoTime() - start;
+
+        System.out.printf("Order list encode+decode: JSON %.2f us/op (%d bytes), CBOR %.2f us/op (%d bytes)%n",
+                jsonNanos / 1000.0 / iterations, objectMapper.writeValueAsBytes(payload).length,
+                cborNanos / 1000.0 / iterations, codec.toCbor(payload).length);
+        assertEquals(20, ((List<?>) codec.decode(new BinaryMessage(codec.toCbor(payload))).get("orders")).size());
+    }
+
+    private Map<String, Object> sampleOrder(int index) {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("orderId", "order-" + index);
+        order.put("status", "PENDING");
+        order.put("totalAmount", new BigDecimal("525.00"));
+        order.put("tableNumber", String.valueOf(index % 12 + 1));
+        order.put("orderTime", LocalDateTime.of(2026, 1, 15, 12, 30));
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("quantity", 1 + j);
+            item.put("name", "招牌牛肉麵");
+            item.put("price", new BigDecimal("160.00"));
+            items.add(item);
+        }
+        order.put("items", items);
+        return order;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ranbow.restaurant.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationPageTest {
+
+    @Test
+    void cursorRoundTripsSortKey() {
+        Notification last = notification(NotificationPriority.HIGH,
+                LocalDateTime.of(2026, 1, 15, 12, 30, 5, 123_000_000), "3f0c6a9e-2b7d-4c1e-9a55-6d2f8e1b7c40");
+
+        NotificationPage.Cursor cursor = NotificationPage.decodeCursor(NotificationPage.encodeCursor(last));
+
+        assertEquals(NotificationPriority.HIGH, cursor.getPriority());
+        assertEquals(last.getSentAt(), cursor.getSentAt());
+        assertEquals(last.getNotificationId(), cursor.getNotificationId());
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        Notification last = notification(NotificationPriority.EMERGENCY,
+                LocalDateTime.of(2026, 1, 15, 23, 59, 59), "id/with+chars?");
+
+        String cursor = NotificationPage.encodeCursor(last);
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        assertEquals("id/with+chars?", NotificationPage.decodeCursor(cursor).getNotificationId());
+    }
+
+    @Test
+    void idMayContainSeparator() {
+        Notification last = notification(NotificationPriority.LOW, LocalDateTime.of(2026, 1, 15, 8, 0), "a|b");
+
+        assertEquals("a|b", NotificationPage.decodeCursor(NotificationPage.encodeCursor(last)).getNotificationId());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> NotificationPage.decodeCursor("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> NotificationPage.decodeCursor(encode("HIGH|2026-01-15T12:00")));
+        assertThrows(IllegalArgumentException.class, () -> NotificationPage.decodeCursor(encode("URGENT|2026-01-15T12:00|id")));
+        assertThrows(IllegalArgumentException.class, () -> NotificationPage.decodeCursor(encode("HIGH|yesterday|id")));
+    }
+
+    private Notification notification(NotificationPriority priority, LocalDateTime sentAt, String notificationId) {
+        Notification notification = new Notification("staff-1", NotificationType.NEW_ORDER, "新訂單", "桌號 5");
+        notification.setNotificationId(notificationId);
+        notification.setPriority(priority);
+        notification.setSentAt(sentAt);
+        return notification;
+    }
+
+    private String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
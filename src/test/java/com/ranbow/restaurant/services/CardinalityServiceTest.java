@@ -0,0 +1,73 @@
+package com.ranbow.restaurant.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardinalityServiceTest {
+
+    private static final String METRIC = CardinalityService.ACTIVE_USERS;
+    private static final String PREFIX = "ranbow:hll:" + METRIC;
+
+    private final CardinalityService cardinalityService = new CardinalityService();
+
+    // 2026-01-15 14:30
+    private final LocalDateTime now = LocalDateTime.of(2026, 1, 15, 14, 30);
+
+    @Test
+    void recentRangeUsesMinuteBuckets() {
+        List<String> keys = cardinalityService.coveringKeys(METRIC, now.minusMinutes(30), now, now);
+
+        assertEquals(30, keys.size());
+        assertEquals(PREFIX + ":m:202601151400", keys.get(0));
+        assertEquals(PREFIX + ":m:202601151429", keys.get(29));
+    }
+
+    @Test
+    void todayUsesWholeHoursThenMinutes() {
+        List<String> keys = cardinalityService.coveringKeys(METRIC, now.toLocalDate().atStartOfDay(), now, now);
+
+        assertEquals(14, count(keys, ":h:"));
+        assertEquals(30, count(keys, ":m:"));
+        assertEquals(0, count(keys, ":d:"));
+        assertEquals(PREFIX + ":h:2026011500", keys.get(0));
+        assertEquals(PREFIX + ":h:2026011513", keys.get(13));
+        assertEquals(PREFIX + ":m:202601151400", keys.get(14));
+    }
+
+    @Test
+    void weekUsesWholeDaysInTheMiddle() {
+        List<String> keys = cardinalityService.coveringKeys(METRIC, now.minusDays(7), now, now);
+
+        // The start is older than the minute sketches, so it is rounded down to its hour
+        assertEquals(PREFIX + ":h:2026010814", keys.get(0));
+        assertEquals(PREFIX + ":h:2026010823", keys.get(9));
+        assertEquals(PREFIX + ":d:20260109", keys.get(10));
+        assertEquals(PREFIX + ":d:20260114", keys.get(15));
+        assertEquals(PREFIX + ":h:2026011500", keys.get(16));
+        assertEquals(6, count(keys, ":d:"));
+        assertEquals(10 + 14, count(keys, ":h:"));
+        assertEquals(30, count(keys, ":m:"));
+    }
+
+    @Test
+    void rangeOlderThanMinuteRetentionUsesOnlyHours() {
+        List<String> keys = cardinalityService.coveringKeys(METRIC,
+                now.withHour(9).withMinute(20), now.withHour(11).withMinute(15), now);
+
+        assertEquals(List.of(PREFIX + ":h:2026011509", PREFIX + ":h:2026011510", PREFIX + ":h:2026011511"), keys);
+    }
+
+    @Test
+    void emptyRangeHasNoKeys() {
+        assertTrue(cardinalityService.coveringKeys(METRIC, now, now, now).isEmpty());
+        assertTrue(cardinalityService.coveringKeys(METRIC, now, now.minusMinutes(5), now).isEmpty());
+    }
+
+    private long count(List<String> keys, String granularity) {
+        return keys.stream().filter(key -> key.contains(granularity)).count();
+    }
+}
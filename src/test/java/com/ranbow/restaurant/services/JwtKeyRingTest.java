@@ -0,0 +1,88 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JwtKeyRingTest {
+
+    @Test
+    void refusesSampleSecret() {
+        JwtKeyRing keyRing = keyRing("ranbow-restaurant-jwt-secret-key-change-in-production", false);
+
+        assertThrows(IllegalStateException.class, keyRing::init);
+    }
+
+    @Test
+    void refusesSecretShorterThan256Bits() {
+        JwtKeyRing keyRing = keyRing("0123456789abcdef0123456789abcde", false);
+
+        assertThrows(IllegalStateException.class, keyRing::init);
+    }
+
+    @Test
+    void refusesToStartWithoutAnyKey() {
+        JwtKeyRing keyRing = keyRing("", false);
+
+        assertThrows(IllegalStateException.class, keyRing::init);
+    }
+
+    @Test
+    void usesConfiguredSecret() {
+        JwtKeyRing keyRing = keyRing("0123456789abcdef0123456789abcdef", false);
+
+        keyRing.init();
+
+        assertEquals("k1", keyRing.getSigningKeyId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void generatesInitialKeyInRedisWhenNoSecretIsConfigured() {
+        Map<Object, Object> ring = new HashMap<>();
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(hashOperations.entries("ranbow:jwt:keys")).thenAnswer(invocation -> new HashMap<>(ring));
+        when(hashOperations.putIfAbsent(eq("ranbow:jwt:keys"), eq("k0"), anyString())).thenAnswer(invocation -> {
+            ring.putIfAbsent(invocation.getArgument(1), invocation.getArgument(2));
+            return true;
+        });
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+
+        JwtKeyRing keyRing = keyRing("", true);
+        ReflectionTestUtils.setField(keyRing, "stringRedisTemplate", redisTemplate);
+        keyRing.init();
+
+        assertEquals("k0", keyRing.getSigningKeyId());
+        assertNotNull(keyRing.getSigningKey());
+        assertEquals(1, ring.size());
+
+        // A second node finds the key instead of generating its own
+        JwtKeyRing secondNode = keyRing("", true);
+        ReflectionTestUtils.setField(secondNode, "stringRedisTemplate", redisTemplate);
+        secondNode.init();
+
+        assertEquals(keyRing.getSigningKey(), secondNode.getSigningKey());
+        verify(hashOperations, times(1)).putIfAbsent(eq("ranbow:jwt:keys"), eq("k0"), anyString());
+    }
+
+    private JwtKeyRing keyRing(String secret, boolean redisEnabled) {
+        JwtKeyRing keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(keyRing, "secret", secret);
+        ReflectionTestUtils.setField(keyRing, "keyId", "k1");
+        ReflectionTestUtils.setField(keyRing, "previousKeys", "");
+        ReflectionTestUtils.setField(keyRing, "redisEnabled", redisEnabled);
+        return keyRing;
+    }
+}
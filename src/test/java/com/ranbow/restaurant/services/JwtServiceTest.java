@@ -0,0 +1,144 @@
+package com.ranbow.restaurant.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "test-only-secret-0123456789abcdef0123456789abcdef";
+
+    private JwtKeyRing keyRing;
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() {
+        keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "secret", SECRET);
+        ReflectionTestUtils.setField(keyRing, "keyId", "k1");
+        ReflectionTestUtils.setField(keyRing, "previousKeys", "");
+        ReflectionTestUtils.setField(keyRing, "redisEnabled", false);
+        keyRing.reload();
+
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "keyRing", keyRing);
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheMaxEntries", 100);
+        ReflectionTestUtils.setField(jwtService, "streamTokenTtlSeconds", 300);
+        jwtService.init();
+    }
+
+    @Test
+    void validatesGeneratedToken() {
+        String token = jwtService.generateToken("user-1", "session-1", "ios");
+
+        JwtService.TokenInfo info = jwtService.validateToken(token);
+
+        assertNotNull(info);
+        assertEquals("user-1", info.getUserId());
+        assertEquals("session-1", info.getSessionId());
+        assertEquals("ios", info.getDeviceInfo());
+        assertFalse(info.isExpiringSoon());
+    }
+
+    @Test
+    void repeatedValidationIsServedFromCache() {
+        String token = jwtService.generateToken("user-1", "session-1", "ios");
+
+        JwtService.TokenInfo first = jwtService.validateToken(token);
+        JwtService.TokenInfo second = jwtService.validateToken(token);
+
+        assertSame(first, second);
+        assertEquals(1L, jwtService.getVerifiedCacheStats().get("hits"));
+        assertEquals(1L, jwtService.getVerifiedCacheStats().get("misses"));
+    }
+
+    @Test
+    void cachedTokenIsDroppedWhenItsKeyIsRetired() {
+        String token = jwtService.generateToken("user-1", "session-1", "ios");
+        assertEquals("k1", jwtService.validateToken(token).getKeyId());
+
+        // k1 離開密鑰環, 只剩新密鑰 k2
+        ReflectionTestUtils.setField(keyRing, "secret", "test-only-secret-fedcba9876543210fedcba9876543210");
+        ReflectionTestUtils.setField(keyRing, "keyId", "k2");
+        keyRing.reload();
+
+        assertEquals(1L, jwtService.getVerifiedCacheStats().get("evictions"));
+        assertNull(jwtService.validateToken(token));
+    }
+
+    @Test
+    void cachedTokenIsKeptWhileItsKeyStillVerifies() {
+        String token = jwtService.generateToken("user-1", "session-1", "ios");
+        JwtService.TokenInfo cached = jwtService.validateToken(token);
+
+        // 輪換後 k1 保留為驗證用舊密鑰
+        ReflectionTestUtils.setField(keyRing, "secret", "test-only-secret-fedcba9876543210fedcba9876543210");
+        ReflectionTestUtils.setField(keyRing, "keyId", "k2");
+        ReflectionTestUtils.setField(keyRing, "previousKeys", "k1:" + SECRET);
+        keyRing.reload();
+
+        assertEquals(0L, jwtService.getVerifiedCacheStats().get("evictions"));
+        assertSame(cached, jwtService.validateToken(token));
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        String token = jwtService.generateToken("user-1", "session-1", "ios");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(jwtService.validateToken(tampered));
+        assertNull(jwtService.validateToken(""));
+        assertNull(jwtService.validateToken(null));
+    }
+
+    @Test
+    void streamTokensAndBearerTokensAreNotInterchangeable() {
+        String streamToken = jwtService.generateStreamToken("user-1", "session-1");
+        String bearerToken = jwtService.generateToken("user-1", "session-1", "ios");
+
+        JwtService.TokenInfo info = jwtService.validateStreamToken(streamToken);
+        assertNotNull(info);
+        assertEquals("user-1", info.getUserId());
+        assertEquals("session-1", info.getSessionId());
+
+        assertNull(jwtService.validateToken(streamToken));
+        assertNull(jwtService.validateStreamToken(bearerToken));
+    }
+
+    /**
+     * Opt-in timing: mvn test -Dtest=JwtServiceTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void cachedValidationIsFasterThanSignatureCheck() {
+        int iterations = 20_000;
+        String token = jwtService.generateToken("user-1", "session-1", "ios");
+        String streamToken = jwtService.generateStreamToken("user-1", "session-1");
+
+        // 預熱 JIT
+        for (int i = 0; i < iterations; i++) {
+            jwtService.validateStreamToken(streamToken);
+            jwtService.validateToken(token);
+        }
+
+        // validateStreamToken 每次都驗證簽名, validateToken 命中已驗證快取
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertNotNull(jwtService.validateStreamToken(streamToken));
+        }
+        long uncachedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertNotNull(jwtService.validateToken(token));
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        System.out.printf("Token validation: signature check %.2f us/op, cached %.2f us/op%n",
+                uncachedNanos / 1000.0 / iterations, cachedNanos / 1000.0 / iterations);
+        assertTrue(cachedNanos < uncachedNanos);
+    }
+}
@@ -0,0 +1,174 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import com.ranbow.restaurant.config.WebSocketEventRelay;
+import com.ranbow.restaurant.dao.MenuDAO;
+import com.ranbow.restaurant.models.MenuCategory;
+import com.ranbow.restaurant.models.MenuItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MenuCatalogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MenuDAO menuDAO;
+    private WebSocketEventRelay eventRelay;
+    private MenuCatalog menuCatalog;
+
+    // 模擬 Redis 中的版本鍵
+    private long redisVersion = 10;
+    private boolean redisUp = true;
+
+    private WebSocketEventRelay.LocalDelivery relayDelivery;
+    private Runnable recoveryListener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        menuDAO = mock(MenuDAO.class);
+        eventRelay = mock(WebSocketEventRelay.class);
+
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.get("ranbow:menu:version")).thenAnswer(invocation -> String.valueOf(redisVersion));
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        // INCR, 結果不大於本節點版本時跳到其後 (與 NEXT_VERSION_SCRIPT 相同)
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of("ranbow:menu:version")), anyString()))
+            .thenAnswer(invocation -> {
+                long known = Long.parseLong(invocation.getArgument(2));
+                redisVersion = Math.max(redisVersion + 1, known + 1);
+                return redisVersion;
+            });
+
+        RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+        when(circuitBreaker.call(any())).thenAnswer(invocation -> {
+            if (!redisUp) {
+                throw new RedisCircuitBreaker.CircuitOpenException("open");
+            }
+            return ((Supplier<?>) invocation.getArgument(0)).get();
+        });
+
+        menuCatalog = new MenuCatalog();
+        ReflectionTestUtils.setField(menuCatalog, "menuDAO", menuDAO);
+        ReflectionTestUtils.setField(menuCatalog, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(menuCatalog, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(menuCatalog, "eventRelay", eventRelay);
+        ReflectionTestUtils.setField(menuCatalog, "objectMapper", objectMapper);
+        menuCatalog.init();
+
+        ArgumentCaptor<WebSocketEventRelay.LocalDelivery> delivery = ArgumentCaptor.forClass(WebSocketEventRelay.LocalDelivery.class);
+        verify(eventRelay).register(eq(WebSocketEventRelay.MENU_CHANNEL), delivery.capture());
+        relayDelivery = delivery.getValue();
+        ArgumentCaptor<Runnable> recovery = ArgumentCaptor.forClass(Runnable.class);
+        verify(circuitBreaker).onRecovery(recovery.capture());
+        recoveryListener = recovery.getValue();
+
+        menu("三杯雞飯");
+        assertEquals(10, menuCatalog.current().getVersion());
+    }
+
+    @Test
+    void writePublishesClusterVersion() {
+        menu("椒麻雞飯");
+        menuCatalog.invalidate();
+
+        assertEquals(11, menuCatalog.current().getVersion());
+        assertEquals("椒麻雞飯", firstName());
+        verify(eventRelay).publish(eq(WebSocketEventRelay.MENU_CHANNEL), anyMap(), argThat(event -> event.path("version").asLong() == 11));
+    }
+
+    @Test
+    void lostVersionKeyDoesNotReuseVersions() {
+        // Redis 重啟後版本鍵遺失
+        redisVersion = 0;
+        menu("椒麻雞飯");
+        menuCatalog.invalidate();
+
+        assertEquals(11, menuCatalog.current().getVersion());
+        assertEquals(11, redisVersion);
+    }
+
+    @Test
+    void localVersionIsReplacedWhenRedisRecovers() {
+        redisUp = false;
+        menu("椒麻雞飯");
+        menuCatalog.invalidate();
+
+        assertEquals(11, menuCatalog.current().getVersion());
+        assertEquals(true, menuCatalog.getStats().get("unsynced"));
+        verify(eventRelay, never()).publish(anyString(), anyMap(), any());
+
+        redisUp = true;
+        recoveryListener.run();
+
+        assertEquals(12, menuCatalog.current().getVersion());
+        assertEquals(false, menuCatalog.getStats().get("unsynced"));
+        verify(eventRelay).publish(eq(WebSocketEventRelay.MENU_CHANNEL), anyMap(), argThat(event -> event.path("version").asLong() == 12));
+    }
+
+    @Test
+    void collidingRemoteVersionTriggersResync() {
+        redisUp = false;
+        menu("椒麻雞飯");
+        menuCatalog.invalidate();
+        assertEquals(11, menuCatalog.current().getVersion());
+
+        // 另一個節點之後取得相同的版本 11, 內容不同
+        redisUp = true;
+        redisVersion = 11;
+        menu("鹽酥雞飯");
+        relayDelivery.deliver(Collections.emptyMap(), invalidation(11));
+
+        assertEquals(12, menuCatalog.current().getVersion());
+        assertEquals("鹽酥雞飯", firstName());
+        assertEquals(false, menuCatalog.getStats().get("unsynced"));
+    }
+
+    @Test
+    void olderOrEqualRemoteVersionIsIgnoredWhenSynced() {
+        menu("椒麻雞飯");
+        relayDelivery.deliver(Collections.emptyMap(), invalidation(10));
+
+        assertEquals(10, menuCatalog.current().getVersion());
+        assertEquals("三杯雞飯", firstName());
+
+        relayDelivery.deliver(Collections.emptyMap(), invalidation(12));
+
+        assertEquals(12, menuCatalog.current().getVersion());
+        assertEquals("椒麻雞飯", firstName());
+    }
+
+    private void menu(String name) {
+        MenuItem item = new MenuItem(name, "", new BigDecimal("150.00"), MenuCategory.MAIN_COURSE);
+        item.setItemId("main-1");
+        when(menuDAO.findAll()).thenReturn(List.of(item));
+    }
+
+    private String firstName() {
+        return menuCatalog.current().getItems().get(0).getName();
+    }
+
+    private ObjectNode invalidation(long version) {
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("type", "menu_invalidated");
+        event.put("version", version);
+        return event;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.models.MenuCategory;
+import com.ranbow.restaurant.models.MenuItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MenuSearchIndexTest {
+
+    private MenuCatalog menuCatalog;
+    private MenuSearchIndex searchIndex;
+
+    private MenuItem chickenRice;
+    private MenuItem beefNoodles;
+    private MenuItem latte;
+
+    @BeforeEach
+    void setUp() {
+        chickenRice = item("chicken-rice", "三杯雞飯", "台式三杯雞搭配白飯", MenuCategory.MAIN_COURSE);
+        beefNoodles = item("beef-noodles", "紅燒牛肉麵", "慢燉牛腱與手工麵條", MenuCategory.MAIN_COURSE);
+        latte = item("latte", "Iced Latte", "Espresso with cold milk", MenuCategory.BEVERAGE);
+
+        menuCatalog = mock(MenuCatalog.class);
+        searchIndex = new MenuSearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "menuCatalog", menuCatalog);
+        publish(1, chickenRice, beefNoodles, latte);
+    }
+
+    @Test
+    void matchesChineseBigramsInsideWords() {
+        assertEquals(List.of("beef-noodles"), ids(searchIndex.search("牛肉")));
+        assertEquals(List.of("chicken-rice"), ids(searchIndex.search("杯雞")));
+    }
+
+    @Test
+    void singleCharacterQueryMatchesUnigram() {
+        assertEquals(List.of("chicken-rice"), ids(searchIndex.search("雞")));
+        assertEquals(List.of("beef-noodles"), ids(searchIndex.search("麵")));
+    }
+
+    @Test
+    void allQueryBigramsMustMatch() {
+        // 牛肉 matches, 肉飯 does not: no item contains the whole phrase
+        assertTrue(searchIndex.search("牛肉飯").isEmpty());
+    }
+
+    @Test
+    void normalizesFullWidthAndCaseAndMatchesLastWordAsPrefix() {
+        assertEquals(List.of("latte"), ids(searchIndex.search("ＩＣＥＤ　lat")));
+        assertEquals(List.of("latte"), ids(searchIndex.search("espresso")));
+        assertEquals(List.of("latte"), ids(searchIndex.search("latte ic")));
+        assertTrue(searchIndex.search("mocha").isEmpty());
+    }
+
+    @Test
+    void nameMatchesRankAboveDescriptionMatches() {
+        MenuItem soup = item("soup", "雞湯", "清燉", MenuCategory.SOUP);
+        MenuItem salad = item("salad", "田園沙拉", "附雞胸肉", MenuCategory.SALAD);
+        publish(2, salad, soup);
+
+        assertEquals(List.of("soup", "salad"), ids(searchIndex.search("雞")));
+    }
+
+    @Test
+    void incrementalUpdateReindexesOnlyChangedItems() {
+        searchIndex.search("雞");
+        assertEquals(1L, searchIndex.getStats().get("fullBuilds"));
+
+        MenuItem renamed = item("chicken-rice", "椒麻雞飯", "泰式椒麻雞搭配白飯", MenuCategory.MAIN_COURSE);
+        MenuItem soldOut = item("beef-noodles", "紅燒牛肉麵", "慢燉牛腱與手工麵條", MenuCategory.MAIN_COURSE);
+        soldOut.setAvailable(false);
+        MenuItem added = item("tea", "珍珠奶茶", "古早味紅茶", MenuCategory.BEVERAGE);
+        publish(2, renamed, soldOut, latte, added);
+
+        assertEquals(List.of("chicken-rice"), ids(searchIndex.search("椒麻")));
+        assertTrue(searchIndex.search("三杯").isEmpty());
+        assertTrue(searchIndex.search("牛肉").isEmpty());
+        assertEquals(List.of("tea"), ids(searchIndex.search("奶茶")));
+        assertEquals(List.of("latte"), ids(searchIndex.search("latte")));
+        assertEquals(1L, searchIndex.getStats().get("fullBuilds"));
+        assertEquals(1L, searchIndex.getStats().get("incrementalUpdates"));
+        assertEquals(3, searchIndex.getStats().get("documents"));
+    }
+
+    @Test
+    void emptyOrSymbolOnlyQueryReturnsNothing() {
+        assertTrue(searchIndex.search("").isEmpty());
+        assertTrue(searchIndex.search("  !?  ").isEmpty());
+        assertTrue(searchIndex.search(null).isEmpty());
+    }
+
+    private void publish(long version, MenuItem... items) {
+        when(menuCatalog.current()).thenReturn(new MenuCatalog.Snapshot(version, List.of(items)));
+    }
+
+    private MenuItem item(String itemId, String name, String description, MenuCategory category) {
+        MenuItem item = new MenuItem(name, description, new BigDecimal("120.00"), category);
+        item.setItemId(itemId);
+        return item;
+    }
+
+    private List<String> ids(List<MenuItem> items) {
+        return items.stream().map(MenuItem::getItemId).toList();
+    }
+}
@@ -0,0 +1,150 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.dao.NotificationDAO;
+import com.ranbow.restaurant.dao.StaffDAO;
+import com.ranbow.restaurant.events.NotificationCreatedEvent;
+import com.ranbow.restaurant.models.Notification;
+import com.ranbow.restaurant.models.NotificationPriority;
+import com.ranbow.restaurant.models.NotificationType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationServiceTest {
+
+    private static final NotificationType TYPE = NotificationType.ORDER_STATUS_CHANGE;
+
+    private NotificationDAO notificationDAO;
+    private ApplicationEventPublisher eventPublisher;
+    private NotificationCoalescer notificationCoalescer;
+    private NotificationService notificationService;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        notificationDAO = mock(NotificationDAO.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+
+        notificationCoalescer = new NotificationCoalescer();
+        ReflectionTestUtils.setField(notificationCoalescer, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(notificationCoalescer, "enabled", true);
+        ReflectionTestUtils.setField(notificationCoalescer, "defaultWindowSeconds", 300L);
+
+        notificationService = new NotificationService();
+        ReflectionTestUtils.setField(notificationService, "notificationDAO", notificationDAO);
+        ReflectionTestUtils.setField(notificationService, "staffDAO", mock(StaffDAO.class));
+        ReflectionTestUtils.setField(notificationService, "notificationCoalescer", notificationCoalescer);
+        ReflectionTestUtils.setField(notificationService, "eventPublisher", eventPublisher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void unkeyedBroadcastUsesBatchInsert() {
+        notificationService.broadcastNotification(List.of("staff-1", "staff-2"), TYPE, "公告", "今日公休",
+                NotificationPriority.NORMAL);
+
+        verify(notificationDAO).broadcastNotification(List.of("staff-1", "staff-2"), TYPE, "公告", "今日公休",
+                NotificationPriority.NORMAL);
+        verify(notificationDAO, never()).save(any());
+    }
+
+    @Test
+    void failingRecipientDoesNotStopKeyedBroadcast() {
+        doThrow(new RuntimeException("connection reset"))
+                .when(notificationDAO).save(argThat(notification -> "staff-1".equals(notification.getRecipientStaffId())));
+
+        broadcast(List.of("staff-1", "staff-2", "staff-3"), NotificationPriority.NORMAL);
+
+        ArgumentCaptor<Notification> saved = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationDAO, times(3)).save(saved.capture());
+        verify(eventPublisher, times(2)).publishEvent(any(NotificationCreatedEvent.class));
+        assertEquals(List.of("staff-2", "staff-3"), saved.getAllValues().subList(1, 3).stream()
+                .map(Notification::getRecipientStaffId).toList());
+    }
+
+    @Test
+    void failedUpdateDoesNotCountRepeat() {
+        broadcast(List.of("staff-1"), NotificationPriority.NORMAL);
+        when(notificationDAO.updateCoalesced(any())).thenThrow(new RuntimeException("timeout")).thenReturn(true);
+
+        broadcast(List.of("staff-1"), NotificationPriority.EMERGENCY);
+        broadcast(List.of("staff-1"), NotificationPriority.NORMAL);
+
+        ArgumentCaptor<Notification> updated = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationDAO, times(2)).updateCoalesced(updated.capture());
+        Notification last = updated.getAllValues().get(1);
+        assertTrue(last.getMessage().endsWith("(x2)"));
+        assertEquals(NotificationPriority.NORMAL, last.getPriority());
+        verify(notificationDAO, times(1)).save(any());
+    }
+
+    @Test
+    void concurrentRepeatsInsertOneRow() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            saving.countDown();
+            releaseSave.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(notificationDAO).save(any());
+        when(notificationDAO.updateCoalesced(any())).thenReturn(true);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> broadcast(List.of("staff-1"), NotificationPriority.NORMAL), executor);
+        assertTrue(saving.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> broadcast(List.of("staff-1"), NotificationPriority.NORMAL), executor);
+        releaseSave.countDown();
+        first.get(1, TimeUnit.SECONDS);
+        second.get(1, TimeUnit.SECONDS);
+
+        verify(notificationDAO, times(1)).save(any());
+        verify(notificationDAO, times(1)).updateCoalesced(any());
+    }
+
+    @Test
+    void slowInsertDoesNotBlockOtherKeys() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            saving.countDown();
+            releaseSave.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(notificationDAO).save(argThat(notification -> "staff-1".equals(notification.getRecipientStaffId())));
+
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> broadcast(List.of("staff-1"), NotificationPriority.NORMAL), executor);
+        assertTrue(saving.await(1, TimeUnit.SECONDS));
+
+        // staff-2 的鍵落在另一把鎖上, 不必等待 staff-1 的資料庫寫入
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> broadcast(List.of("staff-2"), NotificationPriority.NORMAL));
+        assertEquals(1, notificationCoalescer.getPendingCount());
+
+        releaseSave.countDown();
+        slow.get(1, TimeUnit.SECONDS);
+        assertEquals(2, notificationCoalescer.getPendingCount());
+    }
+
+    private void broadcast(List<String> staffIds, NotificationPriority priority) {
+        notificationService.broadcastNotification(staffIds, TYPE, "訂單狀態更新", "訂單 order-1 已開始準備",
+                priority, "order-1");
+    }
+}
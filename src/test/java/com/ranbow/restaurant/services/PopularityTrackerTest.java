@@ -0,0 +1,109 @@
+package com.ranbow.restaurant.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularityTrackerTest {
+
+    private static final long MINUTE_MS = 60_000L;
+
+    // 2026-01-15 12:00:00 UTC, on a minute boundary
+    private static final long T0 = LocalDateTime.of(2026, 1, 15, 12, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Test
+    void keepsCountsUntilTheirBucketLeavesTheWindow() {
+        PopularityTracker.SlidingCounter counter = lastHour();
+        counter.add(line("latte", 2), T0, T0);
+        counter.add(line("latte", 1), T0 + 30 * MINUTE_MS, T0 + 30 * MINUTE_MS);
+
+        counter.expire(T0 + 59 * MINUTE_MS);
+        assertEquals(3, counter.quantityOf("latte"));
+
+        // The T0 bucket falls out after 60 minutes; the later one stays
+        counter.expire(T0 + 60 * MINUTE_MS);
+        assertEquals(1, counter.quantityOf("latte"));
+
+        counter.expire(T0 + 90 * MINUTE_MS);
+        assertEquals(0, counter.quantityOf("latte"));
+        assertEquals(0, counter.itemCount());
+    }
+
+    @Test
+    void reusedSlotDropsTheOldBucket() {
+        PopularityTracker.SlidingCounter counter = lastHour();
+        counter.add(line("latte", 5), T0, T0);
+
+        // Same slot one full ring later, without an explicit expire in between
+        counter.add(line("tea", 1), T0 + 60 * MINUTE_MS, T0 + 60 * MINUTE_MS);
+
+        assertEquals(0, counter.quantityOf("latte"));
+        assertEquals(1, counter.quantityOf("tea"));
+    }
+
+    @Test
+    void ignoresLinesOlderThanTheWindow() {
+        PopularityTracker.SlidingCounter counter = lastHour();
+        long now = T0 + 120 * MINUTE_MS;
+
+        counter.add(line("latte", 4), T0, now);
+        counter.add(line("tea", 1), now - 60 * MINUTE_MS, now);
+
+        assertEquals(0, counter.quantityOf("latte"));
+        assertEquals(0, counter.quantityOf("tea"));
+    }
+
+    @Test
+    void lateLineDoesNotOverwriteNewerBucket() {
+        PopularityTracker.SlidingCounter counter = lastHour();
+        long now = T0 + 70 * MINUTE_MS;
+        counter.add(line("tea", 1), T0 + 70 * MINUTE_MS, now);
+
+        // T0 + 10 maps to the same slot as T0 + 70 but is already outside the window
+        counter.add(line("latte", 3), T0 + 10 * MINUTE_MS, now);
+
+        assertEquals(1, counter.quantityOf("tea"));
+        assertEquals(0, counter.quantityOf("latte"));
+    }
+
+    @Test
+    void futureTimestampCountsInCurrentBucket() {
+        PopularityTracker.SlidingCounter counter = lastHour();
+        counter.add(line("latte", 2), T0 + 5 * MINUTE_MS, T0);
+
+        counter.expire(T0 + 59 * MINUTE_MS);
+        assertEquals(2, counter.quantityOf("latte"));
+        counter.expire(T0 + 60 * MINUTE_MS);
+        assertEquals(0, counter.quantityOf("latte"));
+    }
+
+    @Test
+    void calendarDayWindowResetsAtMidnight() {
+        // One bucket per UTC calendar day
+        PopularityTracker.SlidingCounter today = new PopularityTracker.SlidingCounter(1,
+            ts -> Math.floorDiv(ts, 86_400_000L));
+        long lateEvening = LocalDateTime.of(2026, 1, 15, 23, 50).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long nextMorning = LocalDateTime.of(2026, 1, 16, 8, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        today.add(line("latte", 2), lateEvening, lateEvening);
+        assertEquals(2, today.quantityOf("latte"));
+
+        // Yesterday's line arriving late is not counted for today
+        today.add(line("tea", 1), lateEvening, nextMorning);
+        assertEquals(0, today.quantityOf("tea"));
+
+        today.expire(nextMorning);
+        assertEquals(0, today.quantityOf("latte"));
+    }
+
+    private PopularityTracker.SlidingCounter lastHour() {
+        return new PopularityTracker.SlidingCounter(60, ts -> Math.floorDiv(ts, MINUTE_MS));
+    }
+
+    private PopularityTracker.Line line(String itemId, long quantity) {
+        return new PopularityTracker.Line(itemId, quantity, quantity * 12_000);
+    }
+}
@@ -0,0 +1,167 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionDataCodecTest {
+
+    private ObjectMapper objectMapper;
+    private SessionDataCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        codec = new SessionDataCodec();
+        ReflectionTestUtils.setField(codec, "objectMapper", objectMapper);
+    }
+
+    @Test
+    void roundTripsAllFields() {
+        SessionService.SessionData data = sample();
+
+        byte[] encoded = codec.encode(data);
+        SessionService.SessionData decoded = codec.decode(encoded);
+
+        assertEquals(SessionDataCodec.MAGIC, encoded[0] & 0xFF);
+        assertEquals(SessionDataCodec.VERSION, encoded[1]);
+        assertEquals(data.getUserId(), decoded.getUserId());
+        assertEquals(data.getSessionId(), decoded.getSessionId());
+        assertEquals(data.getDeviceInfo(), decoded.getDeviceInfo());
+        assertEquals(data.getIpAddress(), decoded.getIpAddress());
+        assertEquals(data.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(data.getLastAccess(), decoded.getLastAccess());
+        assertTrue(decoded.isActive());
+    }
+
+    @Test
+    void roundTripsNullsAndNonAsciiText() {
+        SessionService.SessionData data = new SessionService.SessionData();
+        data.setUserId("user-1");
+        data.setDeviceInfo("員工平板");
+        data.setActive(false);
+
+        SessionService.SessionData decoded = codec.decode(codec.encode(data));
+
+        assertEquals("user-1", decoded.getUserId());
+        assertNull(decoded.getSessionId());
+        assertEquals("員工平板", decoded.getDeviceInfo());
+        assertNull(decoded.getIpAddress());
+        assertNull(decoded.getCreatedAt());
+        assertNull(decoded.getLastAccess());
+        assertFalse(decoded.isActive());
+    }
+
+    @Test
+    void userIdIsTheFirstField() {
+        byte[] encoded = codec.encode(sample());
+
+        // Lua scripts read the userId straight after magic, version and the u16 length
+        int length = ((encoded[2] & 0xFF) << 8) | (encoded[3] & 0xFF);
+        assertEquals("3f0c6a9e-2b7d-4c1e-9a55-6d2f8e1b7c40",
+                new String(encoded, 4, length, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void readsLegacyJson() {
+        String legacy = """
+            {"userId":"user-1","sessionId":"session-1","deviceInfo":"Staff Portal",\
+            "ipAddress":"192.168.0.42","createdAt":"2026-01-15T12:00:00",\
+            "lastAccess":"2026-01-15T12:30:00","active":true}""";
+
+        SessionService.SessionData decoded = codec.decode(legacy.getBytes(StandardCharsets.UTF_8));
+
+        assertNotNull(decoded);
+        assertEquals("user-1", decoded.getUserId());
+        assertEquals("session-1", decoded.getSessionId());
+        assertEquals(LocalDateTime.of(2026, 1, 15, 12, 30), decoded.getLastAccess());
+        assertTrue(decoded.isActive());
+    }
+
+    @Test
+    void ignoresFieldsAppendedByNewerVersions() {
+        byte[] encoded = codec.encode(sample());
+        byte[] newer = Arrays.copyOf(encoded, encoded.length + 5);
+        newer[1] = (byte) (SessionDataCodec.VERSION + 1);
+
+        SessionService.SessionData decoded = codec.decode(newer);
+
+        assertNotNull(decoded);
+        assertEquals("a1b2c3d4-e5f6-4a7b-8c9d-0e1f2a3b4c5d", decoded.getSessionId());
+    }
+
+    @Test
+    void rejectsUnknownOrTruncatedValues() {
+        byte[] encoded = codec.encode(sample());
+
+        assertNull(codec.decode(null));
+        assertNull(codec.decode(new byte[0]));
+        assertNull(codec.decode(new byte[] {0x00, 0x01, 0x02}));
+        assertNull(codec.decode(Arrays.copyOf(encoded, encoded.length / 2)));
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() throws Exception {
+        SessionService.SessionData data = sample();
+
+        assertTrue(codec.encode(data).length < objectMapper.writeValueAsBytes(data).length);
+    }
+
+    /**
+     * Opt-in timing: mvn test -Dtest=SessionDataCodecTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void encodeAndDecodeLatencyComparedWithJson() throws Exception {
+        int iterations = 100_000;
+        SessionService.SessionData data = sample();
+
+        // 預熱 JIT
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(data), SessionService.SessionData.class);
+            codec.decode(codec.encode(data));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(data), SessionService.SessionData.class);
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(codec.encode(data));
+        }
+        long binaryNanos = System.nanoTime() - start;
+
+        System.out.printf("Session encode+decode: JSON %.2f us/op (%d bytes), binary %.2f us/op (%d bytes)%n",
+                jsonNanos / 1000.0 / iterations, objectMapper.writeValueAsBytes(data).length,
+                binaryNanos / 1000.0 / iterations, codec.encode(data).length);
+        assertEquals(data.getSessionId(), codec.decode(codec.encode(data)).getSessionId());
+    }
+
+    private SessionService.SessionData sample() {
+        SessionService.SessionData data = new SessionService.SessionData();
+        data.setUserId("3f0c6a9e-2b7d-4c1e-9a55-6d2f8e1b7c40");
+        data.setSessionId("a1b2c3d4-e5f6-4a7b-8c9d-0e1f2a3b4c5d");
+        data.setDeviceInfo("Staff Portal");
+        data.setIpAddress("192.168.0.42");
+        data.setCreatedAt(LocalDateTime.of(2026, 1, 15, 12, 0, 0, 123_456_789));
+        data.setLastAccess(LocalDateTime.of(2026, 1, 15, 12, 30));
+        data.setActive(true);
+        return data;
+    }
+}
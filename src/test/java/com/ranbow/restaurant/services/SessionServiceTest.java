@@ -0,0 +1,181 @@
+package com.ranbow.restaurant.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionServiceTest {
+
+    private RedisCircuitBreaker circuitBreaker;
+    private SessionRevocationFilter revocationFilter;
+    private SessionDataCodec codec;
+    private SessionService sessionService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        codec = new SessionDataCodec();
+        ReflectionTestUtils.setField(codec, "objectMapper", objectMapper);
+
+        revocationFilter = new SessionRevocationFilter();
+        ReflectionTestUtils.setField(revocationFilter, "expectedEntries", 1000);
+        ReflectionTestUtils.setField(revocationFilter, "falsePositiveRate", 0.001);
+
+        circuitBreaker = mock(RedisCircuitBreaker.class);
+
+        sessionService = new SessionService();
+        ReflectionTestUtils.setField(sessionService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(sessionService, "sessionDataCodec", codec);
+        ReflectionTestUtils.setField(sessionService, "cardinalityService", mock(CardinalityService.class));
+        ReflectionTestUtils.setField(sessionService, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(sessionService, "revocationFilter", revocationFilter);
+        ReflectionTestUtils.setField(sessionService, "nearCacheEnabled", true);
+        // 每次驗證都視為近端快取過期, 強制向 Redis 查詢
+        ReflectionTestUtils.setField(sessionService, "nearCacheTtlMs", 0L);
+        ReflectionTestUtils.setField(sessionService, "nearCacheMaxEntries", 100);
+        ReflectionTestUtils.setField(sessionService, "refreshThresholdSeconds", 1200L);
+        ReflectionTestUtils.setField(sessionService, "degradedModeEnabled", true);
+        ReflectionTestUtils.setField(sessionService, "degradedGraceMs", 60_000L);
+    }
+
+    @Test
+    void unknownSessionIsRejectedWhileRedisIsDown() {
+        redisDown();
+
+        assertNull(sessionService.validateSession(token("user-1", "never-seen")));
+    }
+
+    @Test
+    void recentlyValidatedSessionIsAcceptedWhileRedisIsDown() {
+        validateAgainstRedis("user-1", "session-1");
+        redisDown();
+
+        SessionService.SessionData degraded = sessionService.validateSession(token("user-1", "session-1"));
+
+        assertNotNull(degraded);
+        assertTrue(degraded.isDegraded());
+        assertEquals("user-1", degraded.getUserId());
+        assertEquals("10.0.0.5", degraded.getIpAddress());
+    }
+
+    @Test
+    void sessionValidatedBeforeGraceWindowIsRejected() throws InterruptedException {
+        ReflectionTestUtils.setField(sessionService, "degradedGraceMs", 0L);
+        validateAgainstRedis("user-1", "session-1");
+        Thread.sleep(5);
+        redisDown();
+
+        assertNull(sessionService.validateSession(token("user-1", "session-1")));
+    }
+
+    @Test
+    void revokedSessionIsRejectedWhileRedisIsDown() {
+        validateAgainstRedis("user-1", "session-1");
+        revocationFilter.add("session-1");
+        redisDown();
+
+        assertNull(sessionService.validateSession(token("user-1", "session-1")));
+    }
+
+    @Test
+    void tokenForAnotherUserIsRejectedWhileRedisIsDown() {
+        validateAgainstRedis("user-1", "session-1");
+        redisDown();
+
+        assertNull(sessionService.validateSession(token("user-2", "session-1")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void legacyIndexesAreMigratedOnce() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(sessionService, "stringRedisTemplate", stringRedisTemplate);
+        when(circuitBreaker.call(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        Cursor<String> legacyKeys = cursor("user:user-1:sessions", "user:user-2:sessions");
+        when(stringRedisTemplate.scan(any(ScanOptions.class))).thenReturn(legacyKeys);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(2L, 1L);
+
+        sessionService.migrateLegacyIndexes();
+        sessionService.migrateLegacyIndexes();
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+            eq(List.of("user:user-1:sessions", "user:user-1:session-index", "active:users:index")), eq("user-1"), anyString());
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+            eq(List.of("user:user-2:sessions", "user:user-2:session-index", "active:users:index")), eq("user-2"), anyString());
+        verify(stringRedisTemplate, times(1)).delete("active:users");
+        verify(legacyKeys).close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void legacyIndexMigrationIsRetriedAfterFailure() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(sessionService, "stringRedisTemplate", stringRedisTemplate);
+        redisDown();
+
+        sessionService.migrateLegacyIndexes();
+        verify(stringRedisTemplate, never()).delete(anyString());
+
+        // Redis 恢復後重試
+        reset(circuitBreaker);
+        when(circuitBreaker.call(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        Cursor<String> noLegacyKeys = cursor();
+        when(stringRedisTemplate.scan(any(ScanOptions.class))).thenReturn(noLegacyKeys);
+
+        sessionService.migrateLegacyIndexes();
+        verify(stringRedisTemplate).delete("active:users");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cursor<String> cursor(String... keys) {
+        Iterator<String> iterator = List.of(keys).iterator();
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void validateAgainstRedis(String userId, String sessionId) {
+        SessionService.SessionData data = new SessionService.SessionData();
+        data.setUserId(userId);
+        data.setSessionId(sessionId);
+        data.setDeviceInfo("iPhone");
+        data.setIpAddress("10.0.0.5");
+        data.setCreatedAt(LocalDateTime.now());
+        data.setLastAccess(LocalDateTime.now());
+        data.setActive(true);
+        // 管線結果: 會話值與剩餘存活時間 (30 分鐘, 高於續期門檻)
+        when(circuitBreaker.call(any())).thenReturn(List.of(codec.encode(data), 1_800_000L));
+
+        assertNotNull(sessionService.validateSession(token(userId, sessionId)));
+    }
+
+    private void redisDown() {
+        when(circuitBreaker.call(any())).thenThrow(new RedisCircuitBreaker.CircuitOpenException("open"));
+    }
+
+    private JwtService.TokenInfo token(String userId, String sessionId) {
+        return new JwtService.TokenInfo(userId, sessionId, "iPhone", new Date(System.currentTimeMillis() + 3_600_000L));
+    }
+}
@@ -0,0 +1,167 @@
+package com.ranbow.restaurant.services;
+
+import com.ranbow.restaurant.config.RedisCircuitBreaker;
+import com.ranbow.restaurant.models.MenuCategory;
+import com.ranbow.restaurant.models.MenuItem;
+import com.ranbow.restaurant.models.OrderItem;
+import com.ranbow.restaurant.models.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockServiceTest {
+
+    private static final String STOCK_KEY = "ranbow:menu:stock";
+    private static final String SOLD_OUT_KEY = "ranbow:menu:stock:soldout";
+    private static final String RESERVATION_KEY = "ranbow:menu:stock:order:order-1";
+
+    private StringRedisTemplate stringRedisTemplate;
+    private SetOperations<String, String> setOperations;
+    private MenuService menuService;
+    private StockService stockService;
+
+    // 模擬 Redis 售完集合
+    private final Set<String> soldOut = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        setOperations = mock(SetOperations.class);
+        when(setOperations.isMember(eq(SOLD_OUT_KEY), anyString())).thenAnswer(invocation -> soldOut.contains(invocation.getArgument(1)));
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+
+        RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+        when(circuitBreaker.call(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+
+        menuService = mock(MenuService.class);
+
+        stockService = new StockService();
+        ReflectionTestUtils.setField(stockService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(stockService, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(stockService, "menuService", menuService);
+        stockService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockService.shutdown();
+    }
+
+    @Test
+    void soldOutItemIsSwitchedOff() {
+        soldOut.add("cake");
+
+        stockService.applyAvailability("cake", false);
+
+        verify(menuService).setMenuItemAvailability("cake", false);
+    }
+
+    @Test
+    void outdatedSwitchIsSkipped() {
+        // 排入「恢復供應」後庫存又被訂完
+        soldOut.add("cake");
+
+        stockService.applyAvailability("cake", true);
+
+        verify(menuService, never()).setMenuItemAvailability(anyString(), anyBoolean());
+        assertEquals(1L, stockService.getStats().get("staleSwitches"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void queuedSwitchesEndInLatestState() {
+        // SET_STOCK_SCRIPT: 0 表示剛售完 (1), 大於 0 表示恢復供應 (-1)
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), eq("cake"), anyString())).thenAnswer(invocation -> {
+            long quantity = Long.parseLong(invocation.getArgument(3));
+            if (quantity == 0) {
+                return soldOut.add("cake") ? 1L : 0L;
+            }
+            return soldOut.remove("cake") ? -1L : 0L;
+        });
+
+        // 兩次切換都排入後才讓切換執行緒讀取售完集合
+        CountDownLatch bothQueued = new CountDownLatch(1);
+        when(setOperations.isMember(eq(SOLD_OUT_KEY), anyString())).thenAnswer(invocation -> {
+            bothQueued.await(1, TimeUnit.SECONDS);
+            return soldOut.contains(invocation.getArgument(1));
+        });
+
+        stockService.setStock("cake", 0);
+        stockService.setStock("cake", 5);
+        bothQueued.countDown();
+
+        verify(menuService, timeout(1000)).setMenuItemAvailability("cake", true);
+        verify(menuService, never()).setMenuItemAvailability("cake", false);
+        assertTrue(stockService.hasStock("cake", 5));
+    }
+
+    @Test
+    void onlyCancellingBeforePreparationReturnsStock() {
+        assertTrue(StockService.releasesStock(OrderStatus.PENDING));
+        assertTrue(StockService.releasesStock(OrderStatus.PENDING_PAYMENT));
+        assertTrue(StockService.releasesStock(OrderStatus.CONFIRMED));
+        assertFalse(StockService.releasesStock(OrderStatus.PREPARING));
+        assertFalse(StockService.releasesStock(OrderStatus.READY));
+        assertFalse(StockService.releasesStock(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cancelFromConfirmedReleasesReservation() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of(STOCK_KEY, RESERVATION_KEY, SOLD_OUT_KEY)), any(Object[].class)))
+            .thenReturn(List.of("cake", 3L, 0L));
+
+        stockService.cancel("order-1", OrderStatus.CONFIRMED);
+
+        assertEquals(3L, stockService.getStockLevels().get("cake"));
+        assertEquals(1L, stockService.getStats().get("releases"));
+        verify(stringRedisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cancelFromPreparingKeepsStockConsumed() {
+        when(stringRedisTemplate.delete(RESERVATION_KEY)).thenReturn(true);
+
+        stockService.cancel("order-1", OrderStatus.PREPARING);
+
+        verify(stringRedisTemplate).delete(RESERVATION_KEY);
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        assertEquals(1L, stockService.getStats().get("settlements"));
+        assertEquals(0L, stockService.getStats().get("releases"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reservationIsKeptWithoutExpiry() {
+        MenuItem cake = new MenuItem("巴斯克乳酪蛋糕", "", new BigDecimal("150.00"), MenuCategory.DESSERT);
+        cake.setItemId("cake");
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of(STOCK_KEY, RESERVATION_KEY, SOLD_OUT_KEY)), any(Object[].class)))
+            .thenReturn(List.of(1L, "cake", 4L, 0L));
+
+        stockService.reserve("order-1", List.of(new OrderItem(cake, 2, null)));
+
+        ArgumentCaptor<RedisScript<List>> script = ArgumentCaptor.forClass(RedisScript.class);
+        verify(stringRedisTemplate).execute(script.capture(), anyList(), eq("cake"), eq("2"));
+        assertFalse(script.getValue().getScriptAsString().contains("EXPIRE"));
+        assertEquals(4L, stockService.getStockLevels().get("cake"));
+    }
+}